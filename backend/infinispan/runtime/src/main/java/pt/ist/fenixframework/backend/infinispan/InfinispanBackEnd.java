@@ -2,7 +2,9 @@ package pt.ist.fenixframework.backend.infinispan;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 
 import org.infinispan.Cache;
@@ -17,6 +19,7 @@ import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 import pt.ist.fenixframework.core.DomainObjectAllocator;
 import pt.ist.fenixframework.core.Externalization;
@@ -59,6 +62,16 @@ public class InfinispanBackEnd implements BackEnd {
         return fromOid(new OID(externalId));
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return BackEnds.getDomainObjects(this, externalIds);
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        BackEnds.prefetchNothing(objects, rolePaths);
+    }
+
     @Override
     public TransactionManager getTransactionManager() {
         return this.transactionManager;
@@ -63,6 +63,12 @@ public abstract class JvstmClusterBackEnd extends JVSTMBackEnd {
         return ClusterUtils.obtainNewServerId();
     }
 
+    // the local commits store their values and the remote ones invalidate them (see ClusteredPersistentTransaction)
+    @Override
+    protected boolean storesCommittedValuesOffHeap() {
+        return true;
+    }
+
     @Override
     protected void initializeTransactionFactory() {
         jvstm.Transaction.setTransactionFactory(new jvstm.TransactionFactory() {
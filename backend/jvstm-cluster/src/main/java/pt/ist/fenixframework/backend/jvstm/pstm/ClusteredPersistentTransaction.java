@@ -222,6 +222,8 @@ public class ClusteredPersistentTransaction extends PersistentTransaction {
         int size = remoteCommit.getIds().length;
         for (int i = 0; i < size; i++) {
             String vboxId = remoteCommit.getIds()[i];
+            // the local copy of the previous value (if any) is now stale
+            OffHeapValueStore.invalidate(vboxId);
 
             JvstmClusterBackEnd backEnd = (JvstmClusterBackEnd) FenixFramework.getConfig().getBackEnd();
 
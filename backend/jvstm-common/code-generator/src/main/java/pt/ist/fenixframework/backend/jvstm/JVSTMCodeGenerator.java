@@ -8,8 +8,12 @@
 package pt.ist.fenixframework.backend.jvstm;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
+import pt.ist.fenixframework.backend.jvstm.pstm.VersionedSubject;
 import pt.ist.fenixframework.dml.CompilerArgs;
+import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 import pt.ist.fenixframework.dml.IndexesCodeGenerator;
 import pt.ist.fenixframework.dml.Role;
@@ -40,6 +44,55 @@ public class JVSTMCodeGenerator extends IndexesCodeGenerator {
         return JVSTMDomainObject.class.getName();
     }
 
+    @Override
+    protected boolean hasLongOids() {
+        return true;
+    }
+
+    @Override
+    protected void generateBaseClassBody(DomainClass domClass, PrintWriter out) {
+        super.generateBaseClassBody(domClass, out);
+
+        comment(out, "Slots By Name");
+        generateGetSlotNamed(domClass, out);
+        newline(out);
+    }
+
+    /*
+     * Generates the override of JVSTMDomainObject.getSlotNamed(String) that returns each box declared in this class directly,
+     * instead of searching for its field through reflection.  The names of the boxes declared in the superclasses are passed on
+     * to them.
+     */
+    protected void generateGetSlotNamed(DomainClass domClass, PrintWriter out) {
+        List<String> boxNames = new ArrayList<String>();
+        for (Slot slot : domClass.getSlotsList()) {
+            boxNames.add(slot.getName());
+        }
+        for (Role role : domClass.getRoleSlotsList()) {
+            if (role.getName() != null) {
+                boxNames.add(decideRoleVBoxName(role));
+            }
+        }
+        if (boxNames.isEmpty()) {
+            return;
+        }
+
+        newline(out);
+        println(out, "@Override");
+        printMethod(out, "public", VersionedSubject.class.getName(), "getSlotNamed", makeArg("String", "attrName"));
+        startMethodBody(out);
+        print(out, "switch (attrName)");
+        newBlock(out);
+        for (String boxName : boxNames) {
+            onNewline(out);
+            print(out, "case \"" + boxName + "\": return this." + boxName + ";");
+        }
+        onNewline(out);
+        print(out, "default: return super.getSlotNamed(attrName);");
+        closeBlock(out);
+        endMethodBody(out);
+    }
+
     @Override
     protected void generateSlot(Slot slot, PrintWriter out) {
         onNewline(out);
@@ -7,6 +7,9 @@
  */
 package pt.ist.fenixframework.backend.jvstm;
 
+import java.util.Collection;
+import java.util.List;
+
 import jvstm.ActiveTransactionsRecord;
 import jvstm.Transaction;
 
@@ -19,10 +22,12 @@ import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.FenixFramework;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstm.pstm.FenixFrameworkData;
 import pt.ist.fenixframework.backend.jvstm.pstm.NonPersistentTopLevelReadOnlyTransaction;
 import pt.ist.fenixframework.backend.jvstm.pstm.NonPersistentTopLevelTransaction;
+import pt.ist.fenixframework.backend.jvstm.pstm.OffHeapValueStore;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBox;
 import pt.ist.fenixframework.backend.jvstm.pstm.VBoxCache;
 import pt.ist.fenixframework.backend.jvstm.repository.NoRepository;
@@ -76,6 +81,16 @@ public class JVSTMBackEnd implements BackEnd {
         return fromOid(Long.parseLong(externalId, 16));
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return BackEnds.getDomainObjects(this, externalIds);
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        BackEnds.prefetchNothing(objects, rolePaths);
+    }
+
     @Override
     public JVSTMTransactionManager getTransactionManager() {
         return this.transactionManager;
@@ -85,11 +100,10 @@ public class JVSTMBackEnd implements BackEnd {
     public <T extends DomainObject> T fromOid(Object oid) {
         logger.debug("fromOid({})", oid);
 
-        AbstractDomainObject obj = SharedIdentityMap.getCache().lookup(oid);
+        long longOid = ((Long) oid).longValue();
+        AbstractDomainObject obj = SharedIdentityMap.getCache().lookup(longOid);
 
         if (obj == null) {
-            long longOid = ((Long) oid).longValue();
-
             if (logger.isDebugEnabled()) {
                 logger.debug("Object not found in IdentityMap: {}", Long.toHexString(longOid));
             }
@@ -114,6 +128,13 @@ public class JVSTMBackEnd implements BackEnd {
     }
 
     protected void localInit(JVSTMConfig jvstmConfig, int serverId, boolean firstNode) {
+        VBoxCache.getCache().setMaxRetainedBoxes(jvstmConfig.getMaxCachedObjects());
+        if (storesCommittedValuesOffHeap()) {
+            OffHeapValueStore.init(jvstmConfig.getOffHeapValuesSize());
+        } else if (jvstmConfig.getOffHeapValuesSize() > 0) {
+            logger.warn("The {} backend does not keep the committed values off-heap. Ignoring offHeapValuesSize.", getName());
+        }
+
         logger.info("initializeRepository()");
         this.newInstance = initializeRepository(jvstmConfig);
 
@@ -151,6 +172,16 @@ public class JVSTMBackEnd implements BackEnd {
         return 0;
     }
 
+    /**
+     * Whether the commits of this backend store their values in the {@link OffHeapValueStore} (see
+     * {@link pt.ist.fenixframework.backend.jvstm.pstm.PersistentTransaction}). The store can only be enabled when they do,
+     * because otherwise it would return values older than the ones committed. The default implementation returns
+     * <code>false</code>.
+     */
+    protected boolean storesCommittedValuesOffHeap() {
+        return false;
+    }
+
     // returns whether the repository is new, so that we know we need to create the DomainRoot
     protected boolean initializeRepository(JVSTMConfig jvstmConfig) {
         return this.repository.init(jvstmConfig);
@@ -220,6 +251,7 @@ public class JVSTMBackEnd implements BackEnd {
     @Override
     public void shutdown() {
         VBoxCache.getCache().shutdown();
+        OffHeapValueStore.shutdown();
     }
 
     public Repository getRepository() {
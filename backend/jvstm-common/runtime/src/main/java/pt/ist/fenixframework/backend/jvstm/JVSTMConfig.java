@@ -23,6 +23,14 @@ public class JVSTMConfig extends HibernateSearchConfig {
 
     protected JVSTMBackEnd backEnd;
 
+    /**
+     * This <strong>optional</strong> parameter specifies the size, in megabytes, of the memory outside of the Java heap where the
+     * most recent committed value of each box is kept, so that the boxes of objects that are allocated again can be reloaded
+     * from there, instead of from the repository. The default value for this parameter is <code>0</code>, which disables this
+     * store. Only the clustered backends (e.g. jvstmispn and jvstm-datagrid) support it: the others ignore this parameter.
+     */
+    protected int offHeapValuesSize = 0;
+
     /**
      * Subclasses of this config should set their own backEnd before calling this init. Otherwise, this method will set its own
      * backEnd (JVSTMBackEnd)
@@ -50,6 +58,18 @@ public class JVSTMConfig extends HibernateSearchConfig {
         super.init();
     }
 
+    protected void offHeapValuesSizeFromString(String value) {
+        try {
+            offHeapValuesSize = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    public int getOffHeapValuesSize() {
+        return this.offHeapValuesSize;
+    }
+
     @Override
     public JVSTMBackEnd getBackEnd() {
         return this.backEnd;
@@ -80,6 +80,10 @@ public abstract class JVSTMDomainObject extends AbstractDomainObjectAdapter {
         return null;
     }
 
+    /**
+     * Returns the box of the slot with the given name. The generated base classes override this method to return their boxes
+     * directly, so the search through reflection is only a fallback for the names that no class in the hierarchy declares.
+     */
     public VersionedSubject getSlotNamed(String attrName) {
         Class myClass = this.getClass();
         while (myClass != Object.class) {
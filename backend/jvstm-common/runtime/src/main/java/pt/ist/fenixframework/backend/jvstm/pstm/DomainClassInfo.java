@@ -3,8 +3,7 @@ package pt.ist.fenixframework.backend.jvstm.pstm;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -13,13 +12,20 @@ import org.slf4j.LoggerFactory;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.backend.jvstm.JVSTMBackEnd;
 import pt.ist.fenixframework.core.AbstractDomainObject;
+import pt.ist.fenixframework.core.KeyAllocator;
 import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
+/**
+ * The information about each domain class, namely the class id that goes into the OIDs of its instances. The infos are indexed
+ * by class id in an array, and each info loads its Java class only when it is first needed, so that the initialization does not
+ * load every domain class. The infos are found by Java class through a {@link ClassValue}, which caches the info of each class
+ * in the class itself.
+ */
 public class DomainClassInfo implements Serializable {
 
     private static final Logger logger = LoggerFactory.getLogger(DomainClassInfo.class);
-    private volatile static Map<Class<? extends AbstractDomainObject>, DomainClassInfo> classInfoMap;
+    private volatile static ClassValue<DomainClassInfo> classInfoByClass;
     private volatile static DomainClassInfo[] classInfoById;
     private volatile static long serverOidBase;
     private static int serverId = -1; // will be provided via DomainClassInfo.initializeClassInfos(...)
@@ -35,7 +41,7 @@ public class DomainClassInfo implements Serializable {
         logger.info("serverId: {}, serverOidBase: {}", serverId, Long.toHexString(serverOidBase));
 
         try {
-            Map<Class<? extends AbstractDomainObject>, DomainClassInfo> map =
+            final Map<String, DomainClassInfo> map =
                     importClassInfoMap(JVSTMBackEnd.getInstance().getRepository().getDomainClassInfos());
             ArrayList<DomainClassInfo> array = new ArrayList<DomainClassInfo>();
 
@@ -43,7 +49,7 @@ public class DomainClassInfo implements Serializable {
             int maxId = 0;
 
             for (DomainClassInfo classInfo : map.values()) {
-                logger.info("Existing domain class '{}' with id '{}'", classInfo.domainClassName,
+                logger.debug("Existing domain class '{}' with id '{}'", classInfo.domainClassName,
                         Long.toHexString(classInfo.classId));
                 maxId = Math.max(maxId, classInfo.classId);
                 addNewInfoToArray(array, classInfo);
@@ -53,7 +59,12 @@ public class DomainClassInfo implements Serializable {
 
             // the commit was ok, so finish the initialization by
             // assigning to the static variables
-            classInfoMap = Collections.unmodifiableMap(map);
+            classInfoByClass = new ClassValue<DomainClassInfo>() {
+                @Override
+                protected DomainClassInfo computeValue(Class<?> type) {
+                    return map.get(type.getName());
+                }
+            };
             classInfoById = new DomainClassInfo[maxId + 1];
             array.toArray(classInfoById);
         } catch (Exception e) {
@@ -62,22 +73,22 @@ public class DomainClassInfo implements Serializable {
         }
     }
 
-    private static int createAnyMissingRecords(Map<Class<? extends AbstractDomainObject>, DomainClassInfo> map,
-            ArrayList<DomainClassInfo> array, int maxId, DomainModel domainModel) throws ClassNotFoundException {
+    // the classes are compared by name, so that they are not loaded here
+    private static int createAnyMissingRecords(Map<String, DomainClassInfo> map, ArrayList<DomainClassInfo> array, int maxId,
+            DomainModel domainModel) {
         ArrayList<DomainClassInfo> newClasses = new ArrayList<DomainClassInfo>();
 
         for (DomainClass domClass : domainModel.getDomainClasses()) {
-            Class<? extends AbstractDomainObject> javaClass = findClass(domClass.getFullName());
-            if (!map.containsKey(javaClass)) {
+            String className = domClass.getFullName();
+            if (!map.containsKey(className)) {
                 // special case: record for DomainRoot must get class id = 0
-                int id = javaClass == DomainRoot.class ? 0 : ++maxId;
-                DomainClassInfo classInfo = new DomainClassInfo(javaClass, id);
+                int id = className.equals(DomainRoot.class.getName()) ? 0 : ++maxId;
+                DomainClassInfo classInfo = new DomainClassInfo(className, id);
                 addNewInfo(map, array, classInfo);
                 newClasses.add(classInfo);
 
                 if (logger.isInfoEnabled()) {
-                    logger.info("Registering new domain class '{}' with id '{}'", javaClass.getName(),
-                            Long.toHexString(classInfo.classId));
+                    logger.info("Registering new domain class '{}' with id '{}'", className, Long.toHexString(classInfo.classId));
                 }
             }
         }
@@ -97,13 +108,11 @@ public class DomainClassInfo implements Serializable {
 //        return map.values().toArray(new DomainClassInfo[map.size()]);
 //    }
 
-    private static Map<Class<? extends AbstractDomainObject>, DomainClassInfo> importClassInfoMap(
-            DomainClassInfo[] domainClassInfos) {
-        Map<Class<? extends AbstractDomainObject>, DomainClassInfo> map =
-                new IdentityHashMap<Class<? extends AbstractDomainObject>, DomainClassInfo>();
+    private static Map<String, DomainClassInfo> importClassInfoMap(DomainClassInfo[] domainClassInfos) {
+        Map<String, DomainClassInfo> map = new HashMap<String, DomainClassInfo>();
 
         for (DomainClassInfo info : domainClassInfos) {
-            map.put(info.domainClass, info);  // smf: could this use addNewInfoToMap()?
+            addNewInfoToMap(map, info);
         }
         return map;
     }
@@ -123,16 +132,13 @@ public class DomainClassInfo implements Serializable {
         }
     }
 
-    private static void addNewInfo(Map<Class<? extends AbstractDomainObject>, DomainClassInfo> map,
-            ArrayList<DomainClassInfo> array, DomainClassInfo info) {
+    private static void addNewInfo(Map<String, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
         addNewInfoToMap(map, info);
         addNewInfoToArray(array, info);
     }
 
-    private static void addNewInfoToMap(Map<Class<? extends AbstractDomainObject>, DomainClassInfo> map, DomainClassInfo info) {
-        if (info.domainClass != null) {
-            map.put(info.domainClass, info);
-        }
+    private static void addNewInfoToMap(Map<String, DomainClassInfo> map, DomainClassInfo info) {
+        map.put(info.domainClassName, info);
     }
 
     private static void addNewInfoToArray(ArrayList<DomainClassInfo> array, DomainClassInfo info) {
@@ -151,7 +157,7 @@ public class DomainClassInfo implements Serializable {
     }
 
     public static int mapClassToId(Class<? extends AbstractDomainObject> objClass) {
-        DomainClassInfo domainClassInfo = classInfoMap.get(objClass);
+        DomainClassInfo domainClassInfo = classInfoByClass.get(objClass);
         if (domainClassInfo == null) {
             throw new RuntimeException("Domain class not registered: " + objClass.getCanonicalName());
         }
@@ -159,10 +165,10 @@ public class DomainClassInfo implements Serializable {
     }
 
     private static Class<? extends AbstractDomainObject> mapIdToClass(int cid) {
-        if ((cid < 0) || (cid >= classInfoById.length)) {
+        if ((cid < 0) || (cid >= classInfoById.length) || (classInfoById[cid] == null)) {
             return null;
         } else {
-            return classInfoById[cid].domainClass;
+            return classInfoById[cid].getDomainClass();
         }
     }
 
@@ -176,21 +182,10 @@ public class DomainClassInfo implements Serializable {
     }
 
     public static long getNextOidFor(Class<? extends AbstractDomainObject> objClass) throws Exception {
-        int nextKey;
-        DomainClassInfo info = classInfoMap.get(objClass);
+        DomainClassInfo info = classInfoByClass.get(objClass);
+        int nextKey = info.nextKey();
         long oid;
 
-        synchronized (info) {
-            int lastKey = info.getLastKey();
-            if (lastKey == UNKNOWN_KEY) {  // not yet initialized from the persistent storage
-                lastKey = getLastKeyFor(info);
-                logger.debug("Initialize last used counter for class {}: {}", info.domainClassName, lastKey);
-            }
-
-            nextKey = lastKey + 1;
-            info.setLastKey(nextKey);
-        }
-
         // build the OID
         if ((DomainRoot.class == objClass) && (nextKey == 1)) {
             // this first DomainRoot instance is special and always takes a known value, regardless of the serverOidBase
@@ -226,31 +221,60 @@ public class DomainClassInfo implements Serializable {
     // the non-static part starts here
 
     public final String domainClassName;
-    public final transient Class<? extends AbstractDomainObject> domainClass;
     public final int classId;
-    /** The maximum object key used for objects of this class in this server */
-    private transient int lastKey = UNKNOWN_KEY;
+    // loaded on first use (see getDomainClass())
+    private transient volatile Class<? extends AbstractDomainObject> domainClass;
+    private transient volatile boolean domainClassResolved;
+    // created on first use, from the maximum object key stored for this class in this server
+    private transient volatile KeyAllocator keys;
 
     public DomainClassInfo(Class<? extends AbstractDomainObject> domainClass, int classId) {
         this(domainClass.getName(), domainClass, classId);
     }
 
     public DomainClassInfo(String domainClassName, int classId) {
-        this(domainClassName, findClass(domainClassName), classId);
+        this.domainClassName = domainClassName;
+        this.classId = classId;
     }
 
     public DomainClassInfo(String domainClassName, Class<? extends AbstractDomainObject> domainClass, int classId) {
-        this.domainClassName = domainClassName;
+        this(domainClassName, classId);
         this.domainClass = domainClass;
-        this.classId = classId;
+        this.domainClassResolved = true;
+    }
+
+    /** Returns the Java class of this domain class, loading it if needed, or <code>null</code> if it no longer exists */
+    public Class<? extends AbstractDomainObject> getDomainClass() {
+        if (!this.domainClassResolved) {
+            // concurrent threads may load the class at the same time, but they all get the same class
+            this.domainClass = findClass(this.domainClassName);
+            this.domainClassResolved = true;
+        }
+        return this.domainClass;
     }
 
+    /** Returns the maximum object key reserved for objects of this class in this server */
     public int getLastKey() {
-        return this.lastKey;
+        KeyAllocator keys = this.keys;
+        return keys == null ? UNKNOWN_KEY : keys.getLastKey();
     }
 
-    private void setLastKey(int lastKey) {
-        this.lastKey = lastKey;
+    // only the first key needs to lock, to load the last key from the persistent storage
+    private int nextKey() throws Exception {
+        KeyAllocator keys = this.keys;
+        if (keys == null) {
+            keys = initKeys();
+        }
+        return keys.nextKey();
+    }
+
+    private synchronized KeyAllocator initKeys() throws Exception {
+        if (this.keys == null) {
+            int lastKey = getLastKeyFor(this);
+            logger.debug("Initialize last used counter for class {}: {}", this.domainClassName, lastKey);
+            this.keys = new KeyAllocator(lastKey);
+        }
+        return this.keys;
     }
 
     // serialization code
@@ -0,0 +1,351 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.core.Externalization;
+
+/**
+ * Off-heap copy of the most recent committed value of each box, kept in its externalized form in direct buffers. When a box
+ * must be reloaded (e.g. its owner was GCed and allocated again), its value is decoded from here, if possible, instead of being
+ * fetched from the repository. Thus, the heap only needs to hold the objects that are in use (see the bound on the caches in
+ * {@link pt.ist.fenixframework.Config#getMaxCachedObjects()}), while the others stay in memory, outside of the GC's reach.
+ *
+ * The values are appended, together with the ids of their boxes, to a ring of fixed-size buffers: when the ring is full, the
+ * oldest buffer is reused, and the values that it held are forgotten. Only the index, from the hash of each box's id to the
+ * place and version of its value, is kept on the heap, in a few primitive arrays, which take up to 32 bytes per stored value.
+ *
+ * A stored value is only used by transactions whose number is not older than the value's version, because there is no newer
+ * committed version for them. The older transactions still go to the repository. This requires that the store sees every
+ * commit: the local commits store their values, and the remote commits must invalidate the values of the boxes they write.
+ */
+public final class OffHeapValueStore {
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapValueStore.class);
+
+    private static final int MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    // marks the empty slots of the index
+    private static final long NO_ADDRESS = -1L;
+
+    // null while the store is disabled
+    private static volatile OffHeapValueStore instance = null;
+
+    /**
+     * Enables the store, with the given capacity, or disables it, if the capacity is <code>0</code>. Any values stored
+     * previously are discarded.
+     */
+    public static synchronized void init(int capacityInMB) {
+        if (capacityInMB > 0) {
+            logger.info("Keeping the committed values off-heap, in up to {} MB", capacityInMB);
+            instance = new OffHeapValueStore(capacityInMB * 1024L * 1024L);
+        } else {
+            instance = null;
+        }
+    }
+
+    public static void shutdown() {
+        init(0);
+    }
+
+    /**
+     * Reloads the given box with its value from the store, if the store has a value that is recent enough for the current
+     * transaction.
+     *
+     * @return Whether the box was reloaded
+     */
+    public static boolean reload(VBox box) {
+        OffHeapValueStore store = instance;
+        if (store == null) {
+            return false;
+        }
+        int txNumber = jvstm.Transaction.current().getNumber();
+        VersionedValue value = store.read(box.getId(), txNumber);
+        if (value == null) {
+            return false;
+        }
+        List<VersionedValue> vvalues = new ArrayList<VersionedValue>(1);
+        vvalues.add(value);
+        box.mergeVersions(vvalues);
+        return true;
+    }
+
+    /** Stores the values of a local commit */
+    public static void store(Set<Map.Entry<jvstm.VBox, Object>> changes, int txNumber, Object nullObject) {
+        OffHeapValueStore store = instance;
+        if (store == null) {
+            return;
+        }
+        for (Map.Entry<jvstm.VBox, Object> entry : changes) {
+            Object value = entry.getValue();
+            store.write(((VBox) entry.getKey()).getId(), txNumber,
+                    Externalization.externalizeObject(value == nullObject ? null : value));
+        }
+    }
+
+    /** Forgets the value of the given box, which was written by a commit that this store did not see */
+    public static void invalidate(String vboxId) {
+        OffHeapValueStore store = instance;
+        if (store != null) {
+            store.remove(vboxId);
+        }
+    }
+
+    private final int bufferSize;
+    private final ByteBuffer[] buffers;
+    // the address of the first record of each buffer, and the offset where its records end
+    private final long[] bufferStart;
+    private final int[] bufferEnd;
+
+    // The index, from the id of each box to the address and version of the box's latest record, is a hash table with linear
+    // probing, kept in parallel arrays, so that it takes a few bytes per value.  The ids are only kept off-heap, in the records,
+    // so the boxes whose ids have the same hash are told apart by comparing the id in each record.  Guarded by the lock.
+    private int[] hashes = new int[INITIAL_INDEX_CAPACITY];
+    private long[] addresses = new long[INITIAL_INDEX_CAPACITY];
+    private int[] versions = new int[INITIAL_INDEX_CAPACITY];
+    private int size = 0;
+
+    // the reads copy the bytes of a value while holding the read lock, so that they are not overwritten meanwhile
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // the position in the sequence of all the bytes ever written where the next record goes.  Guarded by the write lock.
+    private long nextAddress = 0;
+
+    private OffHeapValueStore(long capacity) {
+        this(capacity, (int) Math.min(capacity, MAX_BUFFER_SIZE));
+    }
+
+    OffHeapValueStore(long capacity, int bufferSize) {
+        this.bufferSize = bufferSize;
+        int numBuffers = (int) ((capacity + bufferSize - 1) / bufferSize);
+        this.buffers = new ByteBuffer[numBuffers];
+        this.bufferStart = new long[numBuffers];
+        this.bufferEnd = new int[numBuffers];
+        Arrays.fill(this.addresses, NO_ADDRESS);
+    }
+
+    private int bufferOf(long address) {
+        return (int) ((address / this.bufferSize) % this.buffers.length);
+    }
+
+    private int offsetOf(long address) {
+        return (int) (address % this.bufferSize);
+    }
+
+    private ByteBuffer bufferAt(long address) {
+        ByteBuffer buffer = this.buffers[bufferOf(address)].duplicate();
+        buffer.position(offsetOf(address));
+        return buffer;
+    }
+
+    // Each record holds the length and the chars of the box's id, followed by the length and the bytes of the value
+    private static int recordLength(String vboxId, byte[] bytes) {
+        return 4 + 2 * vboxId.length() + 4 + bytes.length;
+    }
+
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    VersionedValue read(String vboxId, int maxVersion) {
+        byte[] bytes;
+        int version;
+        this.lock.readLock().lock();
+        try {
+            int slot = find(vboxId, spread(vboxId.hashCode()));
+            if (slot < 0 || this.versions[slot] > maxVersion) {
+                return null;
+            }
+            version = this.versions[slot];
+            ByteBuffer buffer = bufferAt(this.addresses[slot]);
+            buffer.position(buffer.position() + 4 + 2 * vboxId.length());
+            bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return new VersionedValue(Externalization.internalizeObject(bytes), version);
+    }
+
+    void write(String vboxId, int version, byte[] bytes) {
+        int hash = spread(vboxId.hashCode());
+        int recordLength = recordLength(vboxId, bytes);
+        this.lock.writeLock().lock();
+        try {
+            if (recordLength > this.bufferSize) {
+                // the previous value, if any, is no longer the latest one
+                int slot = find(vboxId, hash);
+                if (slot >= 0) {
+                    delete(slot);
+                }
+                return;
+            }
+
+            long address = this.nextAddress;
+            // records do not span buffers, so a record that does not fit in the rest of the current buffer goes to the next one
+            if (offsetOf(address) + recordLength > this.bufferSize) {
+                address += this.bufferSize - offsetOf(address);
+            }
+            if (offsetOf(address) == 0) {
+                startBuffer(address);
+            }
+
+            ByteBuffer buffer = bufferAt(address);
+            buffer.putInt(vboxId.length());
+            for (int i = 0; i < vboxId.length(); i++) {
+                buffer.putChar(vboxId.charAt(i));
+            }
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+            this.bufferEnd[bufferOf(address)] = buffer.position();
+            this.nextAddress = address + recordLength;
+
+            int slot = find(vboxId, hash);
+            if (slot >= 0) {
+                this.addresses[slot] = address;
+                this.versions[slot] = version;
+            } else {
+                insert(hash, address, version);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String vboxId) {
+        int hash = spread(vboxId.hashCode());
+        this.lock.writeLock().lock();
+        try {
+            int slot = find(vboxId, hash);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // starts writing to the buffer of the given address, forgetting the values that it held.  Called with the write lock held.
+    private void startBuffer(long address) {
+        int bufferIndex = bufferOf(address);
+        if (this.buffers[bufferIndex] == null) {
+            this.buffers[bufferIndex] = ByteBuffer.allocateDirect(this.bufferSize);
+        } else {
+            ByteBuffer buffer = this.buffers[bufferIndex].duplicate();
+            buffer.position(0);
+            while (buffer.position() < this.bufferEnd[bufferIndex]) {
+                long recordAddress = this.bufferStart[bufferIndex] + buffer.position();
+                // the same hash as the one of the id's String
+                int hashCode = 0;
+                for (int i = buffer.getInt(); i > 0; i--) {
+                    hashCode = 31 * hashCode + buffer.getChar();
+                }
+                int valueLength = buffer.getInt();
+                buffer.position(buffer.position() + valueLength);
+                // unless a later record of the same box replaced this one
+                removeRecord(spread(hashCode), recordAddress);
+            }
+        }
+        this.bufferStart[bufferIndex] = address;
+        this.bufferEnd[bufferIndex] = 0;
+    }
+
+    // returns the slot of the index that holds the given box, or -1.  Called with the lock held.
+    private int find(String vboxId, int hash) {
+        int mask = this.hashes.length - 1;
+        for (int slot = hash & mask; this.addresses[slot] != NO_ADDRESS; slot = (slot + 1) & mask) {
+            if (this.hashes[slot] == hash && isRecordOf(this.addresses[slot], vboxId)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isRecordOf(long address, String vboxId) {
+        ByteBuffer buffer = bufferAt(address);
+        if (buffer.getInt() != vboxId.length()) {
+            return false;
+        }
+        for (int i = 0; i < vboxId.length(); i++) {
+            if (buffer.getChar() != vboxId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeRecord(int hash, long address) {
+        int mask = this.hashes.length - 1;
+        for (int slot = hash & mask; this.addresses[slot] != NO_ADDRESS; slot = (slot + 1) & mask) {
+            if (this.addresses[slot] == address) {
+                delete(slot);
+                return;
+            }
+        }
+    }
+
+    private void insert(int hash, long address, int version) {
+        if (2 * (this.size + 1) > this.hashes.length) {
+            resize(2 * this.hashes.length);
+        }
+        int mask = this.hashes.length - 1;
+        int slot = hash & mask;
+        while (this.addresses[slot] != NO_ADDRESS) {
+            slot = (slot + 1) & mask;
+        }
+        this.hashes[slot] = hash;
+        this.addresses[slot] = address;
+        this.versions[slot] = version;
+        this.size++;
+    }
+
+    // empties the slot, moving back the following entries of the same run that may go there, so that no probe stops short
+    private void delete(int slot) {
+        int mask = this.hashes.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; this.addresses[next] != NO_ADDRESS; next = (next + 1) & mask) {
+            int home = this.hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.hashes[hole] = this.hashes[next];
+                this.addresses[hole] = this.addresses[next];
+                this.versions[hole] = this.versions[next];
+                hole = next;
+            }
+        }
+        this.addresses[hole] = NO_ADDRESS;
+        this.size--;
+    }
+
+    private void resize(int capacity) {
+        int[] oldHashes = this.hashes;
+        long[] oldAddresses = this.addresses;
+        int[] oldVersions = this.versions;
+        this.hashes = new int[capacity];
+        this.addresses = new long[capacity];
+        this.versions = new int[capacity];
+        Arrays.fill(this.addresses, NO_ADDRESS);
+        this.size = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldAddresses[i] != NO_ADDRESS) {
+                insert(oldHashes[i], oldAddresses[i], oldVersions[i]);
+            }
+        }
+    }
+}
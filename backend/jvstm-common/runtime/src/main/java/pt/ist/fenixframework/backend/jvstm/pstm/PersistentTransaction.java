@@ -81,6 +81,7 @@ public class PersistentTransaction extends ConsistentTopLevelTransaction impleme
         Cons<VBoxBody> newBodies = Cons.empty();
 
         JVSTMBackEnd.getInstance().getRepository().persistChanges(boxesWritten.entrySet(), newTxNumber, NULL_VALUE);
+        OffHeapValueStore.store(boxesWritten.entrySet(), newTxNumber, NULL_VALUE);
 
         for (Map.Entry<jvstm.VBox, Object> entry : boxesWritten.entrySet()) {
             VBox vbox = (VBox) entry.getKey();
@@ -28,7 +28,9 @@ class PrimitiveBox<E> extends OwnedVBox<E> {
             logger.debug("Reload PrimitiveVBox: slot {} for id {}", this.slotName, this.ownerObj.getExternalId());
         }
 
-        JVSTMBackEnd.getInstance().getRepository().reloadPrimitiveAttribute(this);
+        if (!OffHeapValueStore.reload(this)) {
+            JVSTMBackEnd.getInstance().getRepository().reloadPrimitiveAttribute(this);
+        }
     }
 
 }
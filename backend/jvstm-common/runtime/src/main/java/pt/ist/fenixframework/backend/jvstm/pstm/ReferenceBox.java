@@ -33,6 +33,8 @@ class ReferenceBox<E> extends OwnedVBox<E> {
             logger.debug("Reload ReferenceVBox: slot {} for id {}", this.slotName, this.ownerObj.getExternalId());
         }
 
-        JVSTMBackEnd.getInstance().getRepository().reloadReferenceAttribute(this);
+        if (!OffHeapValueStore.reload(this)) {
+            JVSTMBackEnd.getInstance().getRepository().reloadReferenceAttribute(this);
+        }
     }
 }
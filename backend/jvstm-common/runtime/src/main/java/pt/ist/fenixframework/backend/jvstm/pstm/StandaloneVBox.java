@@ -39,6 +39,10 @@ public class StandaloneVBox<E> extends VBox<E> {
     protected void doReload() {
         logger.debug("Reload StandaloneVBox: {}", this.getId());
 
+        if (OffHeapValueStore.reload(this)) {
+            return;
+        }
+
         try {
             JVSTMBackEnd.getInstance().getRepository().reloadAttribute(this);
         } catch (PersistenceException e) {
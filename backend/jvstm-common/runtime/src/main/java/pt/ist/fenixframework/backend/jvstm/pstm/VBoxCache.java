@@ -2,14 +2,26 @@ package pt.ist.fenixframework.backend.jvstm.pstm;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 
+import pt.ist.fenixframework.core.ClockRetention;
+
+/**
+ * The cache of the {@link StandaloneVBox}es. As the {@link pt.ist.fenixframework.core.SharedIdentityMap}, it keeps the boxes
+ * softly referenced, unless the number of retained boxes is bounded (see {@link #setMaxRetainedBoxes(int)}).
+ */
 public class VBoxCache {
     private final static VBoxCache instance = new VBoxCache();
 
     private static final ReferenceQueue<StandaloneVBox> refQueue = new ReferenceQueue<StandaloneVBox>();
 
+    // As in the SharedIdentityMap, each call to cache() removes at most this number of GCed entries, and lookups remove none
+    private static final int MAX_GCED_ENTRIES_PER_CALL = 64;
+
     private final ConcurrentHashMap<String, CacheEntry> cache;
+    // null while the number of retained boxes is unbounded
+    private volatile ClockRetention<StandaloneVBox> retention = null;
 
     public VBoxCache() {
         this.cache = new ConcurrentHashMap<String, CacheEntry>();
@@ -23,16 +35,45 @@ public class VBoxCache {
         return this.cache.size();
     }
 
+    /**
+     * Bounds the number of boxes that this cache keeps when they are not reachable otherwise. Only the boxes cached after this
+     * call are subject to the bound.
+     *
+     * @param maxBoxes The maximum number of boxes retained, or <code>0</code> to leave it to the GC (the default)
+     */
+    public synchronized void setMaxRetainedBoxes(int maxBoxes) {
+        ClockRetention<StandaloneVBox> previous = this.retention;
+        if (previous != null) {
+            previous.clear();
+        }
+        this.retention = maxBoxes > 0 ? new ClockRetention<StandaloneVBox>(maxBoxes) : null;
+    }
+
+    /** Returns the retention that bounds the number of cached boxes (with its counters), or <code>null</code> if there is none */
+    public ClockRetention<StandaloneVBox> getRetention() {
+        return this.retention;
+    }
+
     public StandaloneVBox cache(StandaloneVBox vbox) {
         processQueue();
+        ClockRetention<StandaloneVBox> retention = this.retention;
         String key = vbox.getId();
-        CacheEntry newEntry = new CacheEntry(vbox, key, this.refQueue);
-
-        return cacheNewEntry(newEntry, vbox);
+        CacheEntry newEntry =
+                retention != null ? new WeakCacheEntry(vbox, key, this.refQueue) : new SoftCacheEntry(vbox, key, this.refQueue);
+
+        StandaloneVBox cached = cacheNewEntry(newEntry, vbox);
+        if (retention != null) {
+            CacheEntry entry = this.cache.get(key);
+            // the entries created before the retention was set are soft references, and are left alone
+            if (entry instanceof ClockRetention.Owner) {
+                retention.admit((ClockRetention.Owner) entry, cached);
+            }
+        }
+        return cached;
     }
 
     private StandaloneVBox cacheNewEntry(CacheEntry newEntry, StandaloneVBox vbox) {
-        CacheEntry entryInCache = putIfAbsent(this.cache, newEntry.key, newEntry);
+        CacheEntry entryInCache = putIfAbsent(this.cache, newEntry.key(), newEntry);
 
         if (entryInCache == newEntry) {
             return vbox;
@@ -49,29 +90,37 @@ public class VBoxCache {
     }
 
     public StandaloneVBox lookup(String key) {
-        processQueue();
         CacheEntry entry = this.cache.get(key);
+        StandaloneVBox result = null;
         if (entry != null) {
-            StandaloneVBox result = entry.get();
-            if (result != null) {
-                return result;
-            } else {
+            result = entry.get();
+            if (result == null) {
                 removeEntry(entry);
-                return null;
             }
-        } else {
-            return null;
         }
+        ClockRetention<StandaloneVBox> retention = this.retention;
+        if (retention != null) {
+            if (result == null) {
+                retention.miss();
+            } else if (entry instanceof ClockRetention.Owner) {
+                retention.hit((ClockRetention.Owner) entry, result);
+            }
+        }
+        return result;
     }
 
     private void removeEntry(CacheEntry entry) {
-        this.cache.remove(entry.key, entry);
+        this.cache.remove(entry.key(), entry);
     }
 
     /**
      * This method is invoked when shutting down. It clears the cache contents.
      */
     public void shutdown() {
+        ClockRetention<StandaloneVBox> retention = this.retention;
+        if (retention != null) {
+            retention.clear();
+        }
         this.cache.clear();
     }
 
@@ -88,19 +137,57 @@ public class VBoxCache {
     }
 
     private void processQueue() {
-        CacheEntry gcedEntry = (CacheEntry) refQueue.poll();
-        while (gcedEntry != null) {
+        for (int i = 0; i < MAX_GCED_ENTRIES_PER_CALL; i++) {
+            CacheEntry gcedEntry = (CacheEntry) refQueue.poll();
+            if (gcedEntry == null) {
+                return;
+            }
             removeEntry(gcedEntry);
-            gcedEntry = (CacheEntry) refQueue.poll();
         }
     }
 
-    private static class CacheEntry extends SoftReference<StandaloneVBox> {
+    private interface CacheEntry {
+        String key();
+
+        StandaloneVBox get();
+    }
+
+    private static class SoftCacheEntry extends SoftReference<StandaloneVBox> implements CacheEntry {
         private final String key;
 
-        CacheEntry(StandaloneVBox vbox, String key, ReferenceQueue q) {
+        SoftCacheEntry(StandaloneVBox vbox, String key, ReferenceQueue q) {
             super(vbox, q);
             this.key = key;
         }
+
+        @Override
+        public String key() {
+            return this.key;
+        }
+    }
+
+    private static class WeakCacheEntry extends WeakReference<StandaloneVBox> implements CacheEntry, ClockRetention.Owner {
+        private final String key;
+        private int retentionSlot = -1;
+
+        WeakCacheEntry(StandaloneVBox vbox, String key, ReferenceQueue q) {
+            super(vbox, q);
+            this.key = key;
+        }
+
+        @Override
+        public String key() {
+            return this.key;
+        }
+
+        @Override
+        public int getRetentionSlot() {
+            return this.retentionSlot;
+        }
+
+        @Override
+        public void setRetentionSlot(int slot) {
+            this.retentionSlot = slot;
+        }
     }
 }
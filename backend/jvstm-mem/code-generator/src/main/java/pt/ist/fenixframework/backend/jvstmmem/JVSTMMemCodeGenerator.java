@@ -155,6 +155,11 @@ public class JVSTMMemCodeGenerator extends JVSTMCodeGenerator {
     protected void generateRoleSlotMethodsMultStarInternalGetter(String getterName, Role role, PrintWriter out) {
     }
 
+    // The JVSTMMemDomainObject does not look up its slots by name
+    @Override
+    protected void generateGetSlotNamed(DomainClass domClass, PrintWriter out) {
+    }
+
     @Override
     protected void generateGetterBody(String slotName, String typeName, PrintWriter out) {
         // call the DAP CodeGen which is overridden in this method
@@ -1,21 +1,26 @@
 package pt.ist.fenixframework.backend.jvstmmem;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainRoot;
+import pt.ist.fenixframework.core.KeyAllocator;
 import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
+/**
+ * The information about each domain class, namely the class id that goes into the OIDs of its instances. The infos are indexed
+ * by class id in an array, and are found by Java class through a {@link ClassValue}. Each info loads its Java class only when it
+ * is first needed, so that the initialization does not load every domain class.
+ */
 public class DomainClassInfo {
 
     private static final Logger logger = LoggerFactory.getLogger(DomainClassInfo.class);
-    private volatile static Map<Class, DomainClassInfo> classInfoMap;
+    private volatile static ClassValue<DomainClassInfo> classInfoByClass;
     private volatile static DomainClassInfo[] classInfoById;
     private volatile static long serverOidBase;
 
@@ -23,42 +28,39 @@ public class DomainClassInfo {
         serverOidBase = (long) serverId << 48;  // the server id provides de 16 most significant bits of the OID
 
         int maxId = 0;
-        Map<Class, DomainClassInfo> map = new IdentityHashMap<Class, DomainClassInfo>();
+        final Map<String, DomainClassInfo> map = new HashMap<String, DomainClassInfo>();
         ArrayList<DomainClassInfo> array = new ArrayList<DomainClassInfo>();
 
         // special case: create record for DomainRoot (must get class id = 0)
-        addNewInfo(map, array, new DomainClassInfo(DomainRoot.class, 0));
+        addNewInfo(map, array, new DomainClassInfo(DomainRoot.class.getName(), 0));
 
-        // create all other records, skipping DomainRoot of course
+        // create all other records, skipping DomainRoot of course.  The classes are compared by name, so that they are not
+        // loaded here.
         for (DomainClass domClass : model.getDomainClasses()) {
-            Class javaClass;
-            try {
-                javaClass = Class.forName(domClass.getFullName());
-            } catch (ClassNotFoundException e) {
-                throw new ExceptionInInitializerError(e);
-            }
-
-            if (javaClass != DomainRoot.class && !map.containsKey(javaClass)) {
-                DomainClassInfo classInfo = new DomainClassInfo(javaClass, ++maxId);
+            String className = domClass.getFullName();
+            if (!map.containsKey(className)) {
+                DomainClassInfo classInfo = new DomainClassInfo(className, ++maxId);
                 addNewInfo(map, array, classInfo);
-
             }
         }
 
         // finish the initialization by assigning to the static variables
-        classInfoMap = Collections.unmodifiableMap(map);
+        classInfoByClass = new ClassValue<DomainClassInfo>() {
+            @Override
+            protected DomainClassInfo computeValue(Class<?> type) {
+                return map.get(type.getName());
+            }
+        };
         classInfoById = new DomainClassInfo[maxId + 1];
         array.toArray(classInfoById);
     }
 
-    private static void addNewInfo(Map<Class, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
+    private static void addNewInfo(Map<String, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
         if (logger.isDebugEnabled()) {
-            logger.debug("Registering new domain class '" + info.domainClass.getName() + "' with id " + info.classId);
+            logger.debug("Registering new domain class '" + info.domainClassName + "' with id " + info.classId);
         }
 
-        if (info.domainClass != null) {
-            map.put(info.domainClass, info);
-        }
+        map.put(info.domainClassName, info);
 
         int index = info.classId;
         int size = array.size();
@@ -75,7 +77,7 @@ public class DomainClassInfo {
     }
 
     public static int mapClassToId(Class objClass) {
-        DomainClassInfo domainClassInfo = classInfoMap.get(objClass);
+        DomainClassInfo domainClassInfo = classInfoByClass.get(objClass);
         if (domainClassInfo == null) {
             throw new RuntimeException("Domain class not registered: " + objClass.getCanonicalName());
         }
@@ -86,7 +88,7 @@ public class DomainClassInfo {
         if ((cid < 0) || (cid >= classInfoById.length)) {
             return null;
         } else {
-            return classInfoById[cid].domainClass;
+            return classInfoById[cid].getDomainClass();
         }
     }
 
@@ -105,14 +107,8 @@ public class DomainClassInfo {
     }
 
     public static long getNextOidFor(Class objClass) {
-        int nextKey;
-        DomainClassInfo info = classInfoMap.get(objClass);
-
-        synchronized (info) {
-            int lastKey = info.getLastKey();
-            nextKey = lastKey + 1;
-            info.setLastKey(nextKey);
-        }
+        DomainClassInfo info = classInfoByClass.get(objClass);
+        int nextKey = info.nextKey();
 
         if (logger.isDebugEnabled()) {
             StringBuilder message = new StringBuilder();
@@ -143,22 +139,45 @@ public class DomainClassInfo {
 
     // the non-static part starts here
 
-    public final transient Class domainClass;
+    public final String domainClassName;
     public final int classId;
-    /** The maximum object key used for objects of this class in this server */
-    private transient int lastKey = 0;
+    // loaded on first use (see getDomainClass())
+    private transient volatile Class domainClass;
+    /** Hands out the object keys for objects of this class in this server */
+    private transient volatile KeyAllocator keys = new KeyAllocator(0);
 
-    public DomainClassInfo(Class domainClass, int classId) {
-        this.domainClass = domainClass;
+    public DomainClassInfo(String domainClassName, int classId) {
+        this.domainClassName = domainClassName;
         this.classId = classId;
     }
 
+    /** Returns the Java class of this domain class, loading it if needed */
+    public Class getDomainClass() {
+        Class domainClass = this.domainClass;
+        if (domainClass == null) {
+            // concurrent threads may load the class at the same time, but they all get the same class
+            try {
+                domainClass = Class.forName(this.domainClassName);
+            } catch (ClassNotFoundException e) {
+                // every class of the domain model must exist
+                throw new Error(e);
+            }
+            this.domainClass = domainClass;
+        }
+        return domainClass;
+    }
+
     protected int getLastKey() {
-        return this.lastKey;
+        return this.keys.getLastKey();
     }
 
+    // must be called before handing out any key, as the keys reserved so far are dropped
     protected void setLastKey(int lastKey) {
-        this.lastKey = lastKey;
+        this.keys = new KeyAllocator(lastKey);
+    }
+
+    private int nextKey() {
+        return this.keys.nextKey();
     }
 
 }
@@ -1,9 +1,13 @@
 package pt.ist.fenixframework.backend.jvstmmem;
 
+import java.util.Collection;
+import java.util.List;
+
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.core.SharedIdentityMap;
 
 public class JVSTMMemBackEnd implements BackEnd {
@@ -26,6 +30,16 @@ public class JVSTMMemBackEnd implements BackEnd {
         return fromOid(Long.parseLong(externalId));
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return BackEnds.getDomainObjects(this, externalIds);
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        BackEnds.prefetchNothing(objects, rolePaths);
+    }
+
     @Override
     public DomainRoot getDomainRoot() {
         DomainRoot root = fromOid(1L);
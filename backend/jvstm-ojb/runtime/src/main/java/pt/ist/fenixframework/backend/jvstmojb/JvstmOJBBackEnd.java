@@ -1,5 +1,10 @@
 package pt.ist.fenixframework.backend.jvstmojb;
 
+import java.util.Collection;
+import java.util.List;
+
+import jvstm.Transaction;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,8 +12,11 @@ import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.DomainClassInfo;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.OneBoxDomainObject;
+import pt.ist.fenixframework.backend.jvstmojb.pstm.RelationPrefetcher;
+import pt.ist.fenixframework.backend.jvstmojb.pstm.TransactionSupport;
 import pt.ist.fenixframework.backend.jvstmojb.repository.DbUtil;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 import pt.ist.fenixframework.core.DomainObjectAllocator;
@@ -39,10 +47,11 @@ public class JvstmOJBBackEnd implements BackEnd {
     public <T extends DomainObject> T fromOid(Object oid) {
         logger.trace("fromOid({})", oid);
 
-        AbstractDomainObject obj = SharedIdentityMap.getCache().lookup(oid);
+        long longOid = ((Long) oid).longValue();
+        AbstractDomainObject obj = SharedIdentityMap.getCache().lookup(longOid);
 
         if (obj == null) {
-            obj = allocator.allocateObject(DomainClassInfo.mapOidToClass(((Long) oid).longValue()), oid);
+            obj = allocator.allocateObject(DomainClassInfo.mapOidToClass(longOid), oid);
             obj = SharedIdentityMap.getCache().cache(obj);
         }
 
@@ -62,6 +71,21 @@ public class JvstmOJBBackEnd implements BackEnd {
         }
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        List<T> objects = BackEnds.getDomainObjects(this, externalIds);
+        // load the objects now, with a query per class, instead of a query per object as each one is read
+        if (Transaction.current() != null) {
+            TransactionSupport.loadObjects(objects);
+        }
+        return objects;
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        RelationPrefetcher.prefetch(objects, rolePaths);
+    }
+
     @Override
     public DomainRoot getDomainRoot() {
         return domainRoot;
@@ -1,12 +1,15 @@
 package pt.ist.fenixframework.backend.jvstmojb;
 
+import java.io.File;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import pt.ist.fenixframework.ConfigError;
 import pt.ist.fenixframework.DomainFenixFrameworkRoot;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.backend.jvstmojb.ojb.MetadataManager;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.DomainClassInfo;
+import pt.ist.fenixframework.backend.jvstmojb.pstm.HotSetSnapshot;
 import pt.ist.fenixframework.backend.jvstmojb.pstm.TransactionSupport;
 import pt.ist.fenixframework.backend.jvstmojb.repository.DbUtil;
 import pt.ist.fenixframework.backend.jvstmojb.repository.DbUtil.DBLockedCommand;
@@ -130,6 +133,46 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
      */
     protected boolean updateRepositoryStructureIfNeeded = false;
 
+    /**
+     * This <strong>optional</strong> parameter specifies the local file where
+     * the OIDs of the cached objects are periodically saved. When the
+     * framework is initialized, the objects in this file are loaded in bulk,
+     * so that a server that is restarted does not have to load them one at a
+     * time. Only when <code>maxCachedObjects</code> is set are these the most
+     * used objects, i.e., those that the cache retains; otherwise, they are
+     * the first cached objects found, up to a fixed limit. The default value
+     * for this parameter is <code>null</code>, which disables these snapshots.
+     */
+    protected String hotSetSnapshotFile = null;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the number of
+     * seconds between the snapshots of the cached objects (see
+     * <code>hotSetSnapshotFile</code>). The default value for this parameter
+     * is <code>300</code>.
+     */
+    protected int hotSetSnapshotInterval = 300;
+
+    /**
+     * This <strong>optional</strong> parameter specifies, in milliseconds,
+     * how old the most recent version known by this server may be for a new
+     * transaction to start from it. A background thread reads the changes
+     * committed by other servers twice within this period, so that most
+     * transactions start without querying the database. A transaction that
+     * must read from the database then reads the changes that it missed
+     * first, and restarts if they invalidate what it already read. The
+     * default value for this parameter is <code>500</code>.
+     */
+    protected int maxTransactionStaleness = 500;
+
+    /**
+     * This <strong>optional</strong> parameter specifies whether every
+     * transaction must read the changes committed by other servers when it
+     * starts, as was always the case before <code>maxTransactionStaleness</code>.
+     * The default value for this parameter is <code>false</code>.
+     */
+    protected boolean strictTransactionFreshness = false;
+
     /*
      * Initialization methods
      */
@@ -154,6 +197,10 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
                 DomainFenixFrameworkRoot.bootstrap();
             }
         });
+
+        if (hotSetSnapshotFile != null) {
+            new HotSetSnapshot(new File(hotSetSnapshotFile), hotSetSnapshotInterval, backEnd.getTransactionManager()).start();
+        }
     }
 
     @Override
@@ -185,6 +232,8 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
         this.dbAlias = value;
         StringBuilder encodingParams = new StringBuilder();
         encodingParams.append("useUnicode=true&characterEncoding=UTF-8&clobCharacterEncoding=UTF-8&characterSetResults=UTF-8");
+        // send each batch of inserts as a multi-row INSERT, and each batch of updates in a single round trip
+        encodingParams.append("&rewriteBatchedStatements=true");
 
         int questionMarkIndex = this.dbAlias.indexOf('?');
 
@@ -210,6 +259,30 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
         updateRepositoryStructureIfNeeded = Boolean.parseBoolean(value);
     }
 
+    protected void hotSetSnapshotFileFromString(String value) {
+        hotSetSnapshotFile = value;
+    }
+
+    protected void hotSetSnapshotIntervalFromString(String value) {
+        try {
+            hotSetSnapshotInterval = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    protected void maxTransactionStalenessFromString(String value) {
+        try {
+            maxTransactionStaleness = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    protected void strictTransactionFreshnessFromString(String value) {
+        strictTransactionFreshness = Boolean.parseBoolean(value);
+    }
+
     /*
      * Public Getters
      */
@@ -247,4 +320,20 @@ public class JvstmOJBConfig extends ConsistencyPredicatesConfig {
         return updateRepositoryStructureIfNeeded;
     }
 
+    public String getHotSetSnapshotFile() {
+        return hotSetSnapshotFile;
+    }
+
+    public int getHotSetSnapshotInterval() {
+        return hotSetSnapshotInterval;
+    }
+
+    public int getMaxTransactionStaleness() {
+        return maxTransactionStaleness;
+    }
+
+    public boolean isStrictTransactionFreshness() {
+        return strictTransactionFreshness;
+    }
+
 }
@@ -51,6 +51,18 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
         transactions.set(new JvstmOJBTransaction(underlying));
     }
 
+    // Begins a transaction that reads the changes committed by other servers right away, instead of on its first database
+    // access.  The restarted transactions use it, so that they do not start again from the same stale version.
+    void beginSynchronizedWithDb(boolean readOnly) throws NotSupportedException, SystemException {
+        begin(readOnly);
+        try {
+            getTransaction().getUnderlyingTransaction().synchronizeWithDbNow();
+        } catch (RuntimeException | Error e) {
+            rollback();
+            throw e;
+        }
+    }
+
     @Override
     public JvstmOJBTransaction getTransaction() {
         return transactions.get();
@@ -154,11 +166,25 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
             return command.call();
         }
 
-        begin(true);
-        try {
-            return command.call();
-        } finally {
-            commit();
+        boolean restarted = false;
+        while (true) {
+            if (restarted) {
+                beginSynchronizedWithDb(true);
+            } else {
+                begin(true);
+            }
+            try {
+                return command.call();
+            } catch (CommitException e) {
+                // The transaction read the database only after other servers committed changes to what it already read.  It
+                // restarts once, synchronized with the database from the start, so that this cannot happen again.
+                if (restarted) {
+                    throw e;
+                }
+                restarted = true;
+            } finally {
+                commit();
+            }
         }
     }
 
@@ -201,7 +227,11 @@ public class JvstmOJBTransactionManager extends AbstractTransactionManager {
                 tries++;
                 try {
                     try {
-                        begin(readOnly);
+                        if (tries > 1) {
+                            beginSynchronizedWithDb(readOnly);
+                        } else {
+                            begin(readOnly);
+                        }
                         if (readOnly) {
                             // Mark the transaction as being speculative read-only
                             getTransaction().setSpeculative(true);
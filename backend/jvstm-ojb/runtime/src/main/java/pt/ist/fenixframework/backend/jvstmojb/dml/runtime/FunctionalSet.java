@@ -3,68 +3,359 @@ package pt.ist.fenixframework.backend.jvstmojb.dml.runtime;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import jvstm.util.Cons;
-
+/**
+ * Immutable set, where each change returns a new set that shares most of its structure with the previous one. This is what
+ * allows the {@link pt.ist.fenixframework.backend.jvstmojb.pstm.RelationList} to keep each version of its elements in a VBox.
+ *
+ * The elements are kept in a hash array mapped trie: each node consumes 5 bits of the hash of the elements, and keeps only the
+ * slots that are in use, as indicated by its bitmap. Each slot holds either an element or a sub-node. Elements whose hashes
+ * are equal end up in a collision node, below the last level of the trie. Thus, contains, add and remove visit at most
+ * log32(n) nodes, and only copy those nodes. Each node also keeps the number of elements below it, so that get(index) does not
+ * have to go through the elements that come before the given index.
+ *
+ * The iteration order is the order of the hashes of the elements, not the order in which they were added.
+ */
 public final class FunctionalSet<E> {
-    public static final FunctionalSet EMPTY = new FunctionalSet(0, Cons.empty());
+    public static final FunctionalSet EMPTY = new FunctionalSet(BitmapNode.EMPTY);
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    private static final int HASH_BITS = 32;
+
+    private final Node root;
 
-    protected final int size;
-    protected final Cons<E> elems;
+    private FunctionalSet(Node root) {
+        this.root = root;
+    }
 
-    protected FunctionalSet(int size, Cons<E> elems) {
-        this.size = size;
-        this.elems = elems;
+    private static int hash(Object obj) {
+        // spread the higher bits, which are otherwise only used in the deepest levels of the trie
+        int h = obj.hashCode();
+        return h ^ (h >>> 16);
     }
 
     public int size() {
-        return size;
+        return root.size;
     }
 
     public E get(int index) {
-        if (index > (size - 1)) {
+        if (index < 0 || index > (size() - 1)) {
             throw new NoSuchElementException();
         } else {
-            Cons<E> iter = elems;
-            while (index-- > 0) {
-                iter = iter.rest();
-            }
-            return iter.first();
+            return (E) root.get(index);
         }
     }
 
+    /**
+     * Adds an element that is known not to be in this set. It is kept for the loading of the elements from the database, and is
+     * now the same as {@link #add(Object)}.
+     */
     public FunctionalSet<E> addUnique(E obj) {
-        return makeFunctionalSet(size + 1, elems.cons(obj));
+        return add(obj);
     }
 
     public FunctionalSet<E> add(E obj) {
-        if (elems.contains(obj)) {
-            return this;
-        } else {
-            return addUnique(obj);
-        }
+        return makeFunctionalSet(root.add(obj, hash(obj), 0));
     }
 
     public FunctionalSet<E> remove(Object obj) {
-        if (!elems.contains(obj)) {
+        if (obj == null) {
             return this;
-        } else {
-            return removeExisting(obj);
         }
-    }
-
-    private FunctionalSet<E> removeExisting(Object obj) {
-        return makeFunctionalSet(size - 1, elems.removeFirst(obj));
+        return makeFunctionalSet(root.remove(obj, hash(obj), 0));
     }
 
     public boolean contains(Object obj) {
-        return elems.contains(obj);
+        return obj != null && root.contains(obj, hash(obj), 0);
     }
 
     public Iterator<E> iterator() {
-        return elems.iterator();
+        return new TrieIterator<E>(root);
+    }
+
+    private FunctionalSet<E> makeFunctionalSet(Node newRoot) {
+        return newRoot == root ? this : new FunctionalSet<E>(newRoot);
+    }
+
+    // Nodes are never changed.  The operations that change them return a copy, or the same node if there was nothing to change.
+    private static abstract class Node {
+        // the number of elements below this node
+        final int size;
+
+        Node(int size) {
+            this.size = size;
+        }
+
+        abstract boolean contains(Object obj, int hash, int shift);
+
+        abstract Node add(Object obj, int hash, int shift);
+
+        abstract Node remove(Object obj, int hash, int shift);
+
+        abstract Object get(int index);
+
+        // the number of slots of this node, which are either elements or sub-nodes
+        abstract int slotCount();
+
+        abstract Object getSlot(int slot);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0], 0);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots, int size) {
+            super(size);
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        // creates the node that holds two different elements, which had to share the same slot in the level above
+        static Node makeNode(Object obj1, int hash1, Object obj2, int hash2, int shift) {
+            if (shift >= HASH_BITS) {
+                return new CollisionNode(new Object[] { obj1, obj2 });
+            }
+            int index1 = (hash1 >>> shift) & LEVEL_MASK;
+            int index2 = (hash2 >>> shift) & LEVEL_MASK;
+            if (index1 == index2) {
+                return new BitmapNode(1 << index1, new Object[] { makeNode(obj1, hash1, obj2, hash2, shift + BITS_PER_LEVEL) },
+                        2);
+            }
+            // the slots are ordered by index (comparing the bits themselves would fail for the sign bit)
+            Object[] slots = (index1 < index2) ? new Object[] { obj1, obj2 } : new Object[] { obj2, obj1 };
+            return new BitmapNode((1 << index1) | (1 << index2), slots, 2);
+        }
+
+        private static int bitFor(int hash, int shift) {
+            return 1 << ((hash >>> shift) & LEVEL_MASK);
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        boolean contains(Object obj, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return false;
+            }
+            Object slot = slots[indexOf(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).contains(obj, hash, shift + BITS_PER_LEVEL);
+            }
+            return obj.equals(slot);
+        }
+
+        @Override
+        Node add(Object obj, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            int index = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = obj;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots, size + 1);
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Node) {
+                Node subNode = (Node) slot;
+                Node newSubNode = subNode.add(obj, hash, shift + BITS_PER_LEVEL);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                newSlot = newSubNode;
+            } else if (obj.equals(slot)) {
+                return this;
+            } else {
+                newSlot = makeNode(slot, hash(slot), obj, hash, shift + BITS_PER_LEVEL);
+            }
+            return new BitmapNode(bitmap, replaceSlot(index, newSlot), size + 1);
+        }
+
+        @Override
+        Node remove(Object obj, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = indexOf(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node subNode = (Node) slot;
+                Node newSubNode = subNode.remove(obj, hash, shift + BITS_PER_LEVEL);
+                if (newSubNode == subNode) {
+                    return this;
+                }
+                // a sub-node with a single element is replaced by that element, to keep the trie as shallow as possible
+                Object newSlot = newSubNode.size == 1 ? newSubNode.get(0) : newSubNode;
+                return new BitmapNode(bitmap, replaceSlot(index, newSlot), size - 1);
+            } else if (obj.equals(slot)) {
+                Object[] newSlots = new Object[slots.length - 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+                return new BitmapNode(bitmap & ~bit, newSlots, size - 1);
+            } else {
+                return this;
+            }
+        }
+
+        private Object[] replaceSlot(int index, Object newSlot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = newSlot;
+            return newSlots;
+        }
+
+        @Override
+        Object get(int index) {
+            for (Object slot : slots) {
+                if (slot instanceof Node) {
+                    Node subNode = (Node) slot;
+                    if (index < subNode.size) {
+                        return subNode.get(index);
+                    }
+                    index -= subNode.size;
+                } else if (index == 0) {
+                    return slot;
+                } else {
+                    index--;
+                }
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        int slotCount() {
+            return slots.length;
+        }
+
+        @Override
+        Object getSlot(int slot) {
+            return slots[slot];
+        }
+    }
+
+    // holds the elements whose hashes are all equal, below the last level of the trie
+    private static final class CollisionNode extends Node {
+        private final Object[] elems;
+
+        CollisionNode(Object[] elems) {
+            super(elems.length);
+            this.elems = elems;
+        }
+
+        private int indexOf(Object obj) {
+            for (int i = 0; i < elems.length; i++) {
+                if (obj.equals(elems[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        boolean contains(Object obj, int hash, int shift) {
+            return indexOf(obj) >= 0;
+        }
+
+        @Override
+        Node add(Object obj, int hash, int shift) {
+            if (indexOf(obj) >= 0) {
+                return this;
+            }
+            Object[] newElems = new Object[elems.length + 1];
+            System.arraycopy(elems, 0, newElems, 0, elems.length);
+            newElems[elems.length] = obj;
+            return new CollisionNode(newElems);
+        }
+
+        @Override
+        Node remove(Object obj, int hash, int shift) {
+            int index = indexOf(obj);
+            if (index < 0) {
+                return this;
+            }
+            Object[] newElems = new Object[elems.length - 1];
+            System.arraycopy(elems, 0, newElems, 0, index);
+            System.arraycopy(elems, index + 1, newElems, index, elems.length - index - 1);
+            return new CollisionNode(newElems);
+        }
+
+        @Override
+        Object get(int index) {
+            return elems[index];
+        }
+
+        @Override
+        int slotCount() {
+            return elems.length;
+        }
+
+        @Override
+        Object getSlot(int slot) {
+            return elems[slot];
+        }
     }
 
-    protected FunctionalSet<E> makeFunctionalSet(int size, Cons<E> elems) {
-        return new FunctionalSet<E>(size, elems);
+    // Depth-first traversal of the trie, keeping the path from the root to the current node
+    private static final class TrieIterator<E> implements Iterator<E> {
+        // the trie has at most one level for each 5 bits of the hash, plus the level of the collision nodes
+        private final Node[] nodes = new Node[HASH_BITS / BITS_PER_LEVEL + 2];
+        private final int[] positions = new int[nodes.length];
+        private int depth = 0;
+        private E next;
+
+        TrieIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        // finds the next element, or leaves next as null if there is none
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int position = positions[depth];
+                if (position >= node.slotCount()) {
+                    depth--;
+                    continue;
+                }
+                positions[depth]++;
+                Object slot = node.getSlot(position);
+                if (slot instanceof Node) {
+                    depth++;
+                    nodes[depth] = (Node) slot;
+                    positions[depth] = 0;
+                } else {
+                    next = (E) slot;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            E result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 }
@@ -3,12 +3,14 @@ package pt.ist.fenixframework.backend.jvstmojb.ojb;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 import org.apache.ojb.broker.Identity;
 import org.apache.ojb.broker.PersistenceBroker;
 import org.apache.ojb.broker.PersistenceBrokerException;
 import org.apache.ojb.broker.PersistenceBrokerSQLException;
 import org.apache.ojb.broker.accesslayer.JdbcAccessImpl;
+import org.apache.ojb.broker.accesslayer.LookupException;
 import org.apache.ojb.broker.metadata.ClassDescriptor;
 import org.apache.ojb.broker.util.logging.Logger;
 
@@ -17,6 +19,9 @@ import pt.ist.fenixframework.backend.jvstmojb.pstm.AbstractDomainObject;
 
 public class FenixJdbcAccessImpl extends JdbcAccessImpl {
 
+    /** The maximum number of objects materialized by each query of {@link #materializeObjects} */
+    public static final int MAX_OIDS_PER_QUERY = 500;
+
     public FenixJdbcAccessImpl(PersistenceBroker broker) {
         super(broker);
     }
@@ -68,6 +73,48 @@ public class FenixJdbcAccessImpl extends JdbcAccessImpl {
         }
     }
 
+    /**
+     * Materializes the domain objects with the given OIDs, which must all be kept in the table of the given class descriptor,
+     * with a single query for each {@link #MAX_OIDS_PER_QUERY} objects. The OIDs of objects that no longer exist are ignored.
+     */
+    public void materializeObjects(ClassDescriptor cld, List<Long> oids) throws PersistenceBrokerException {
+        for (int start = 0; start < oids.size(); start += MAX_OIDS_PER_QUERY) {
+            materializeObjectsWithSingleQuery(cld, oids.subList(start, Math.min(oids.size(), start + MAX_OIDS_PER_QUERY)));
+        }
+    }
+
+    private void materializeObjectsWithSingleQuery(ClassDescriptor cld, List<Long> oids) throws PersistenceBrokerException {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM ").append(cld.getFullTableName()).append(" WHERE OID IN (");
+        for (int i = 0; i < oids.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(")");
+
+        ResultSet rs = null;
+        PreparedStatement stmt = null;
+        try {
+            stmt = broker.serviceConnectionManager().getConnection().prepareStatement(sql.toString());
+            for (int i = 0; i < oids.size(); i++) {
+                stmt.setLong(i + 1, oids.get(i));
+            }
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                readObjectFromRs(rs);
+            }
+        } catch (LookupException e) {
+            throw new PersistenceBrokerException(e);
+        } catch (SQLException e) {
+            if (logger.isEnabledFor(Logger.ERROR)) {
+                logger.error("SQLException during the execution of materializeObjects (for a " + cld.getClassOfObject().getName()
+                        + "): " + e.getMessage(), e);
+            }
+            throw new PersistenceBrokerSQLException(e);
+        } finally {
+            broker.serviceStatementManager().closeResources(stmt, rs);
+        }
+    }
+
     public static AbstractDomainObject readObjectFromRs(ResultSet rs) {
         // this method tries to load the object from its OID
         // see whether the OID column in the resultSet is already filled
@@ -61,7 +61,9 @@ public class MetadataManager {
         jcd.setUserName(config.getDbUsername());
         jcd.setPassWord(config.getDbPassword());
         jcd.setEagerRelease(false);
-        jcd.setBatchMode(false);
+        // only allows the batch mode: each broker starts without it, and
+        // DBChanges enables it while writing the objects of a commit
+        jcd.setBatchMode(true);
         jcd.setUseAutoCommit(2);
         jcd.setIgnoreAutoCommitExceptions(false);
 
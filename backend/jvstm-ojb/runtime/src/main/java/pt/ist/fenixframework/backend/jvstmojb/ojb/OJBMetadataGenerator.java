@@ -136,7 +136,7 @@ public class OJBMetadataGenerator {
             for (Role role : dClass.getRoleSlotsList()) {
                 String roleName = role.getName();
                 if ((role.getMultiplicityUpper() == 1) && (roleName != null)) {
-                    String foreignOidField = "oid" + StringUtils.capitalize(roleName);
+                    String foreignOidField = foreignOidFieldName(roleName);
                     addFieldDescriptor(domainModel, foreignOidField, "Long", fieldID++, classDescriptor, persistentFieldClass);
                 }
             }
@@ -146,6 +146,13 @@ public class OJBMetadataGenerator {
 
     }
 
+    /**
+     * The name of the field that keeps the OID of the object related through the to-one role with the given name.
+     */
+    public static String foreignOidFieldName(String roleName) {
+        return "oid" + StringUtils.capitalize(roleName);
+    }
+
     protected static void addPrimaryFieldDescriptor(DomainModel domainModel, String slotName, String slotType, int fieldID,
             ClassDescriptor classDescriptor, Class<?> persistentFieldClass) throws Exception {
         FieldDescriptor fieldDescriptor = new FieldDescriptor(classDescriptor, fieldID);
@@ -205,7 +212,7 @@ public class OJBMetadataGenerator {
 
                         if (role.getOtherRole().getMultiplicityUpper() == 1) {
 
-                            String fkField = "oid" + StringUtils.capitalize(role.getOtherRole().getName());
+                            String fkField = foreignOidFieldName(role.getOtherRole().getName());
 
                             ClassDescriptor otherClassDescriptor = ojbMetadata.get(((DomainClass) role.getType()).getFullName());
 
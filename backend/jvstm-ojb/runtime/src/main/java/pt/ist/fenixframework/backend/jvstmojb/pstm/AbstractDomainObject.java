@@ -110,6 +110,11 @@ public abstract class AbstractDomainObject extends AbstractDomainObjectAdapter {
         return null;
     }
 
+    // whether the slots of this object are loaded for the given transaction, which are all loaded along with the meta object
+    boolean isLoadedIn(FenixTransaction tx) {
+        return tx.isBoxValueLoaded(domainMetaObject);
+    }
+
     Object getCurrentValueFor(String attrName) {
         return getSlotNamed(attrName).getCurrentValue(this, attrName);
     }
@@ -0,0 +1,133 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ojb.broker.Identity;
+import org.apache.ojb.broker.PersistenceBroker;
+import org.apache.ojb.broker.metadata.ClassDescriptor;
+
+import pt.ist.fenixframework.backend.jvstmojb.ojb.FenixJdbcAccessImpl;
+
+/**
+ * Keeps the objects that a transaction is expected to read soon (e.g. the elements of a relation that it is iterating), but
+ * that are not loaded yet. When the transaction must load one of them, the other pending objects of the same class are loaded
+ * along with it, with a single query, instead of a query per object as each one is read.
+ *
+ * At most {@link #MAX_BATCH_SIZE} objects of each class are kept, the oldest being dropped first, so that the objects of an
+ * iteration that stopped early do not pile up until the transaction ends.
+ *
+ * The objects are loaded by the transaction that needs them, through its own DB connection, so all of them get the values of
+ * that transaction's version, as if they were loaded one at a time.
+ */
+class BatchLoader {
+
+    /** The maximum number of objects loaded together, so that each load is a single query */
+    static final int MAX_BATCH_SIZE = FenixJdbcAccessImpl.MAX_OIDS_PER_QUERY;
+
+    private final FenixTransaction tx;
+    private final Map<Class<?>, Set<AbstractDomainObject>> pendingByClass = new HashMap<Class<?>, Set<AbstractDomainObject>>();
+
+    BatchLoader(FenixTransaction tx) {
+        this.tx = tx;
+    }
+
+    /** Adds the given object to the pending objects, unless it is loaded already */
+    void addPending(AbstractDomainObject obj) {
+        if (obj.isLoadedIn(tx)) {
+            return;
+        }
+        Set<AbstractDomainObject> pending = pendingByClass.get(obj.getClass());
+        if (pending == null) {
+            pending = new LinkedHashSet<AbstractDomainObject>();
+            pendingByClass.put(obj.getClass(), pending);
+        }
+        if (pending.add(obj) && pending.size() > MAX_BATCH_SIZE) {
+            Iterator<AbstractDomainObject> oldest = pending.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /** Removes the given object from the pending objects, if it is there */
+    void removePending(AbstractDomainObject obj) {
+        Set<AbstractDomainObject> pending = pendingByClass.get(obj.getClass());
+        if (pending != null && pending.remove(obj) && pending.isEmpty()) {
+            pendingByClass.remove(obj.getClass());
+        }
+    }
+
+    /**
+     * Loads those of the given objects that are not loaded yet, with a single query for each {@link #MAX_BATCH_SIZE} objects of
+     * the same class. The broker is only needed if some object must be loaded.
+     */
+    void loadAll(Iterable<? extends AbstractDomainObject> objects) {
+        Map<Class<?>, Set<Long>> oidsByClass = new HashMap<Class<?>, Set<Long>>();
+        for (AbstractDomainObject obj : objects) {
+            if (obj.isLoadedIn(tx)) {
+                continue;
+            }
+            removePending(obj);
+            Set<Long> oids = oidsByClass.get(obj.getClass());
+            if (oids == null) {
+                oids = new LinkedHashSet<Long>();
+                oidsByClass.put(obj.getClass(), oids);
+            }
+            oids.add(obj.getOid());
+        }
+        if (oidsByClass.isEmpty()) {
+            return;
+        }
+
+        PersistenceBroker pb = tx.getOJBBroker();
+        for (Map.Entry<Class<?>, Set<Long>> entry : oidsByClass.entrySet()) {
+            materializeObjects(pb, entry.getKey(), new ArrayList<Long>(entry.getValue()));
+        }
+    }
+
+    /** Loads the given object, along with up to {@link #MAX_BATCH_SIZE} - 1 pending objects of the same class */
+    void load(PersistenceBroker pb, AbstractDomainObject obj) {
+        List<Long> oids = new ArrayList<Long>();
+        oids.add(obj.getOid());
+
+        Set<AbstractDomainObject> pending = pendingByClass.get(obj.getClass());
+        if (pending != null) {
+            pending.remove(obj);
+            Iterator<AbstractDomainObject> iter = pending.iterator();
+            while (iter.hasNext() && oids.size() < MAX_BATCH_SIZE) {
+                AbstractDomainObject other = iter.next();
+                iter.remove();
+                // it may have been loaded since it was added
+                if (!other.isLoadedIn(tx)) {
+                    oids.add(other.getOid());
+                }
+            }
+            if (pending.isEmpty()) {
+                pendingByClass.remove(obj.getClass());
+            }
+        }
+
+        if (oids.size() == 1) {
+            materializeObject(pb, obj);
+        } else {
+            materializeObjects(pb, obj.getClass(), oids);
+        }
+    }
+
+    // the two ways of loading objects, with the query by primary key of OJB for a single object and with an IN query otherwise
+
+    void materializeObject(PersistenceBroker pb, AbstractDomainObject obj) {
+        ClassDescriptor cld = pb.getClassDescriptor(obj.getClass());
+        pb.serviceJdbcAccess().materializeObject(cld, new Identity(obj, pb));
+    }
+
+    void materializeObjects(PersistenceBroker pb, Class<?> objClass, List<Long> oids) {
+        ClassDescriptor cld = pb.getClassDescriptor(objClass);
+        ((FenixJdbcAccessImpl) pb.serviceJdbcAccess()).materializeObjects(cld, oids);
+    }
+}
@@ -1,11 +1,14 @@
 package pt.ist.fenixframework.backend.jvstmojb.pstm;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -13,12 +16,10 @@ import jvstm.CommitException;
 
 import org.apache.ojb.broker.OptimisticLockException;
 import org.apache.ojb.broker.PersistenceBroker;
+import org.apache.ojb.broker.accesslayer.ConnectionManagerIF;
 import org.apache.ojb.broker.accesslayer.LookupException;
-import org.apache.ojb.broker.core.ValueContainer;
 import org.apache.ojb.broker.metadata.ClassDescriptor;
 import org.apache.ojb.broker.metadata.CollectionDescriptor;
-import org.apache.ojb.broker.metadata.JdbcType;
-import org.apache.ojb.broker.util.JdbcTypesHelper;
 import org.apache.ojb.broker.util.ObjectModificationDefaultImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,8 @@ class DBChanges {
     private static final int MIN_BUFFER_CAPACITY = 256;
     private static final int MAX_BUFFER_CAPACITY = 10000;
     private static final int BUFFER_THRESHOLD = 256;
+    // the maximum number of m-to-n tuples inserted or deleted by each statement
+    private static final int MAX_TUPLES_PER_STATEMENT = 500;
 
     private Set<AttrChangeLog> attrChangeLogs = null;
     private Set<AbstractDomainObject> newObjs = null;
@@ -183,27 +186,37 @@ class DBChanges {
     }
 
     void makePersistent(PersistenceBroker pb, int txNumber) throws SQLException, LookupException {
-        Connection conn = pb.serviceConnectionManager().getConnection();
-
-        // store new objects
-        if (newObjs != null) {
-            for (Object obj : newObjs) {
-                pb.store(obj, ObjectModificationDefaultImpl.INSERT);
-            }
-        }
+        ConnectionManagerIF connectionManager = pb.serviceConnectionManager();
+        Connection conn = connectionManager.getConnection();
 
         boolean foundOptimisticException = false;
 
-        // update objects
-        if (objsToStore != null) {
-            for (Object obj : objsToStore) {
-                try {
-                    pb.store(obj, ObjectModificationDefaultImpl.UPDATE);
-                } catch (OptimisticLockException ole) {
-                    pb.removeFromCache(obj);
-                    foundOptimisticException = true;
+        // the inserts and the updates are batched, with a prepared statement
+        // per table, and sent together once all the objects are stored
+        connectionManager.setBatchMode(true);
+        try {
+            // store new objects
+            if (newObjs != null) {
+                for (Object obj : newObjs) {
+                    pb.store(obj, ObjectModificationDefaultImpl.INSERT);
+                }
+            }
+
+            // update objects
+            if (objsToStore != null) {
+                for (Object obj : objsToStore) {
+                    try {
+                        pb.store(obj, ObjectModificationDefaultImpl.UPDATE);
+                    } catch (OptimisticLockException ole) {
+                        pb.removeFromCache(obj);
+                        foundOptimisticException = true;
+                    }
                 }
             }
+
+            connectionManager.executeBatch();
+        } finally {
+            connectionManager.setBatchMode(false);
         }
 
         if (foundOptimisticException) {
@@ -229,9 +242,7 @@ class DBChanges {
 
         // write m-to-n tuples
         if (mToNTuples != null) {
-            for (RelationTupleInfo info : mToNTuples.values()) {
-                updateMtoNRelation(pb, info);
-            }
+            writeMtoNTuples(pb, conn);
         }
 
         // write change logs
@@ -307,11 +318,28 @@ class DBChanges {
         }
     }
 
-    private static JdbcType OID_JDBC_TYPE = JdbcTypesHelper.getJdbcTypeByName("BIGINT");
-    private final static String[] EMPTY_ARRAY = new String[0];
+    // Groups the m-to-n tuples by indirection table and writes each group
+    // with a few multi-row statements.  The indirection tables have a
+    // primary key over both columns, so an INSERT ... ON DUPLICATE KEY
+    // UPDATE that leaves the row as it is keeps the Set semantics of the
+    // relation when the same tuple is added more than once, without
+    // deleting it first.  Unlike INSERT IGNORE, it still fails on any
+    // other error, such as a value that does not fit its column.
+    private void writeMtoNTuples(PersistenceBroker pb, Connection conn) throws SQLException {
+        Map<String, IndirectionTableChanges> changesByTable = new HashMap<String, IndirectionTableChanges>();
+
+        for (RelationTupleInfo tupleInfo : mToNTuples.values()) {
+            addMtoNTuple(pb, tupleInfo, changesByTable);
+        }
+
+        for (IndirectionTableChanges changes : changesByTable.values()) {
+            changes.write(conn);
+        }
+    }
 
     // copied and adapted from OJB's MtoNBroker
-    protected void updateMtoNRelation(PersistenceBroker pb, RelationTupleInfo tupleInfo) {
+    private static void addMtoNTuple(PersistenceBroker pb, RelationTupleInfo tupleInfo,
+            Map<String, IndirectionTableChanges> changesByTable) {
         AbstractDomainObject obj1 = tupleInfo.obj1;
         AbstractDomainObject obj2 = tupleInfo.obj2;
 
@@ -327,28 +355,61 @@ class DBChanges {
             obj2 = tupleInfo.obj1;
         }
 
-        String[] oidColumns = new String[2];
-        oidColumns[0] = cod.getFksToThisClass()[0];
-        oidColumns[1] = cod.getFksToItemClass()[0];
+        String table = cod.getIndirectionTable();
+        IndirectionTableChanges changes = changesByTable.get(table);
+        if (changes == null) {
+            changes = new IndirectionTableChanges(table, cod.getFksToThisClass()[0], cod.getFksToItemClass()[0]);
+            changesByTable.put(table, changes);
+        }
+
+        List<Long> tuples = tupleInfo.remove ? changes.removed : changes.added;
+        tuples.add(obj1.getOid());
+        tuples.add(obj2.getOid());
+    }
 
-        ValueContainer[] oidValues = new ValueContainer[2];
-        oidValues[0] = new ValueContainer(obj1.getOid(), OID_JDBC_TYPE);
-        oidValues[1] = new ValueContainer(obj2.getOid(), OID_JDBC_TYPE);
+    private static class IndirectionTableChanges {
+        final String table;
+        final String column1;
+        final String column2;
+        // the OIDs of each tuple, one after the other
+        final List<Long> added = new ArrayList<Long>();
+        final List<Long> removed = new ArrayList<Long>();
+
+        IndirectionTableChanges(String table, String column1, String column2) {
+            this.table = table;
+            this.column1 = column1;
+            this.column2 = column2;
+        }
 
-        String table = cod.getIndirectionTable();
+        void write(Connection conn) throws SQLException {
+            // each tuple is either added or removed, so the order of the statements does not matter
+            String deletePrefix = "DELETE FROM `" + table + "` WHERE (" + column1 + "," + column2 + ") IN (";
+            executeForTuples(conn, deletePrefix, ")", removed);
 
-        // always remove the tuple
-        String sqlStmt = pb.serviceSqlGenerator().getDeleteMNStatement(table, oidColumns, null);
-        pb.serviceJdbcAccess().executeUpdateSQL(sqlStmt, cld1, oidValues, null);
-
-        // if it was not to remove but to add, then add it
-        // this "delete-first, add-after" serves to ensure that we can add
-        // multiple times
-        // the same tuple to a relation and still have the Set semantics for the
-        // relation.
-        if (!tupleInfo.remove) {
-            sqlStmt = pb.serviceSqlGenerator().getInsertMNStatement(table, oidColumns, EMPTY_ARRAY);
-            pb.serviceJdbcAccess().executeUpdateSQL(sqlStmt, cld1, oidValues, null);
+            String insertPrefix = "INSERT INTO `" + table + "` (" + column1 + "," + column2 + ") VALUES ";
+            String insertSuffix = " ON DUPLICATE KEY UPDATE " + column1 + "=" + column1;
+            executeForTuples(conn, insertPrefix, insertSuffix, added);
+        }
+
+        private static void executeForTuples(Connection conn, String prefix, String suffix, List<Long> oids) throws SQLException {
+            int maxOids = MAX_TUPLES_PER_STATEMENT * 2;
+            for (int start = 0; start < oids.size(); start += maxOids) {
+                List<Long> chunk = oids.subList(start, Math.min(oids.size(), start + maxOids));
+
+                StringBuilder sql = new StringBuilder(prefix.length() + suffix.length() + chunk.size() * 3);
+                sql.append(prefix);
+                for (int i = 0; i < chunk.size(); i += 2) {
+                    sql.append(i == 0 ? "(?,?)" : ",(?,?)");
+                }
+                sql.append(suffix);
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setLong(i + 1, chunk.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+            }
         }
     }
 
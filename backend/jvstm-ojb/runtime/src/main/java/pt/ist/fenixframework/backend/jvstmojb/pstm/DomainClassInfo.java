@@ -5,7 +5,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,10 +20,15 @@ import pt.ist.fenixframework.backend.jvstmojb.repository.ServerId;
 import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
+/**
+ * The information about each domain class, namely the class id that goes into the OIDs of its instances. The infos are indexed
+ * by class id in an array, and are found by Java class through a {@link ClassValue}. Each info loads its Java class only when it
+ * is first needed, so that the initialization does not load every domain class.
+ */
 public class DomainClassInfo {
 
     private static final Logger logger = LoggerFactory.getLogger(DomainClassInfo.class);
-    private volatile static Map<Class, DomainClassInfo> classInfoMap;
+    private volatile static ClassValue<DomainClassInfo> classInfoByClass;
     private volatile static DomainClassInfo[] classInfoById;
 
     public static void initializeClassInfos() {
@@ -46,7 +50,7 @@ public class DomainClassInfo {
                 rs =
                         stmt.executeQuery("SELECT DOMAIN_CLASS_NAME,DOMAIN_CLASS_ID FROM FF$DOMAIN_CLASS_INFO ORDER BY DOMAIN_CLASS_ID");
 
-                Map<Class, DomainClassInfo> map = new HashMap<Class, DomainClassInfo>();
+                final Map<String, DomainClassInfo> map = new HashMap<String, DomainClassInfo>();
                 ArrayList<DomainClassInfo> array = new ArrayList<DomainClassInfo>();
 
                 int maxId = 0;
@@ -62,23 +66,23 @@ public class DomainClassInfo {
                     addNewInfo(map, array, classInfo);
                 }
 
-                // create any missing records
+                // create any missing records (the classes are compared by
+                // name, so that they are not loaded here)
                 try {
                     DomainModel model = FenixFramework.getDomainModel();
 
                     for (DomainClass domClass : model.getDomainClasses()) {
-                        boolean isDomainRoot = domClass.getFullName().equals(DomainRoot.class.getName());
+                        String className = domClass.getFullName();
+                        boolean isDomainRoot = className.equals(DomainRoot.class.getName());
 
-                        Class javaClass = Class.forName(domClass.getFullName());
-                        if (!map.containsKey(javaClass)) {
-                            DomainClassInfo classInfo = new DomainClassInfo(javaClass, isDomainRoot ? 0 : ++maxId);
+                        if (!map.containsKey(className)) {
+                            DomainClassInfo classInfo = new DomainClassInfo(className, isDomainRoot ? 0 : ++maxId);
                             addNewInfo(map, array, classInfo);
 
                             if (logger.isInfoEnabled()) {
-                                logger.info("Registering new domain class '" + javaClass.getName() + "' with id "
-                                        + classInfo.classId);
+                                logger.info("Registering new domain class '" + className + "' with id " + classInfo.classId);
                             }
-                            stmt.executeUpdate("INSERT INTO FF$DOMAIN_CLASS_INFO VALUES ('" + javaClass.getName() + "', "
+                            stmt.executeUpdate("INSERT INTO FF$DOMAIN_CLASS_INFO VALUES ('" + className + "', "
                                     + classInfo.classId + ")");
                         }
                     }
@@ -88,7 +92,12 @@ public class DomainClassInfo {
 
                     // the commit was ok, so finish the initialization by
                     // assigning to the static variables
-                    classInfoMap = Collections.unmodifiableMap(map);
+                    classInfoByClass = new ClassValue<DomainClassInfo>() {
+                        @Override
+                        protected DomainClassInfo computeValue(Class<?> type) {
+                            return map.get(type.getName());
+                        }
+                    };
                     classInfoById = new DomainClassInfo[maxId + 1];
                     array.toArray(classInfoById);
                     return;
@@ -143,9 +152,9 @@ public class DomainClassInfo {
         }
     }
 
-    private static void addNewInfo(Map<Class, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
-        if (info.domainClass != null && !map.containsKey(info.domainClass)) {
-            map.put(info.domainClass, info);
+    private static void addNewInfo(Map<String, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
+        if (!map.containsKey(info.domainClassName)) {
+            map.put(info.domainClassName, info);
         }
 
         int index = info.classId;
@@ -163,10 +172,10 @@ public class DomainClassInfo {
     }
 
     private static Class mapIdToClass(int cid) {
-        if (cid < 0 || cid >= classInfoById.length) {
+        if (cid < 0 || cid >= classInfoById.length || classInfoById[cid] == null) {
             return null;
         } else {
-            return classInfoById[cid].domainClass;
+            return classInfoById[cid].getDomainClass();
         }
     }
 
@@ -186,7 +195,7 @@ public class DomainClassInfo {
 
     public static long getNextOidFor(Class<?> objClass) throws SQLException {
         int nextKey;
-        DomainClassInfo info = classInfoMap.get(objClass);
+        DomainClassInfo info = classInfoByClass.get(objClass);
 
         synchronized (info) {
             int lastKey = info.getLastKey();
@@ -204,7 +213,7 @@ public class DomainClassInfo {
     /* Invocations to this method should be synchronized in the <code>info</code> argument */
     private static int initLastKeyFor(DomainClassInfo info) throws SQLException {
         long baseRange = ServerId.getServerOidBase() + ((long) info.classId << 32);
-        long maxId = getMaxIdForClass(info.domainClass.getName(), baseRange, baseRange + 0xFFFFFFFFL);
+        long maxId = getMaxIdForClass(info.domainClassName, baseRange, baseRange + 0xFFFFFFFFL);
         return (int) maxId; // the lower 32 bit are the object's relative id.
     }
 
@@ -233,18 +242,27 @@ public class DomainClassInfo {
 
     // the non-static part starts here
 
-    private final Class<?> domainClass;
+    private final String domainClassName;
     private final int classId;
+    // loaded on first use (see getDomainClass())
+    private volatile Class<?> domainClass;
+    private volatile boolean domainClassResolved = false;
     /** The maximum object key used for objects of this class in this server */
     private int lastKey = UNKNOWN_KEY;
 
-    private DomainClassInfo(Class<?> domainClass, int classId) {
-        this.domainClass = domainClass;
+    private DomainClassInfo(String domainClassName, int classId) {
+        this.domainClassName = domainClassName;
         this.classId = classId;
     }
 
-    private DomainClassInfo(String domainClassName, int classId) {
-        this(findClass(domainClassName), classId);
+    // returns null if the class no longer exists.  Concurrent threads may load the class at the same time, but they all get
+    // the same class.
+    private Class<?> getDomainClass() {
+        if (!this.domainClassResolved) {
+            this.domainClass = findClass(this.domainClassName);
+            this.domainClassResolved = true;
+        }
+        return this.domainClass;
     }
 
     private int getLastKey() {
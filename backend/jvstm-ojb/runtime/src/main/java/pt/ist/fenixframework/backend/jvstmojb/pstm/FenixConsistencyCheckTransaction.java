@@ -78,6 +78,11 @@ public class FenixConsistencyCheckTransaction extends ReadTransaction implements
         return parent.getOJBBroker();
     }
 
+    @Override
+    public BatchLoader getBatchLoader() {
+        return parent.getBatchLoader();
+    }
+
     @Override
     public <T> T getBoxValue(VBox<T> vbox, Object obj, String attr) {
         if (obj != checkedObj) {
@@ -23,6 +23,8 @@ public interface FenixTransaction {
 
     public boolean isBoxValueLoaded(VBox vbox);
 
+    public BatchLoader getBatchLoader();
+
     public void logRelationAdd(String relationName, DomainObject o1, DomainObject o2);
 
     public void logRelationRemove(String relationName, DomainObject o1, DomainObject o2);
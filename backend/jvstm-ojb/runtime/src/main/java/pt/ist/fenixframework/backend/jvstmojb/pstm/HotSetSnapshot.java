@@ -0,0 +1,225 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import jvstm.Transaction;
+
+import org.apache.ojb.broker.PersistenceBroker;
+import org.apache.ojb.broker.metadata.ClassDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ist.fenixframework.CallableWithoutException;
+import pt.ist.fenixframework.TransactionManager;
+import pt.ist.fenixframework.backend.jvstmojb.ojb.FenixJdbcAccessImpl;
+import pt.ist.fenixframework.core.SharedIdentityMap;
+import pt.ist.fenixframework.util.FenixFrameworkThread;
+
+/**
+ * Periodically saves the OIDs of the objects in the {@link SharedIdentityMap} (the hot set) to a local file, so that, when the
+ * server is restarted, those objects are loaded in bulk, with a query per table for each {@link #OIDS_PER_TRANSACTION} objects,
+ * instead of a query per object as each one is first accessed.
+ *
+ * When the number of cached objects is bounded (see {@link pt.ist.fenixframework.Config#getMaxCachedObjects()}), the hot set
+ * is made of the objects that the cache retains, which are the most used ones. Otherwise, the cache cannot tell which objects
+ * are used the most, so the hot set is made of the first {@link #MAX_OIDS} cached objects that are found.
+ *
+ * Only the OIDs are saved, not the values. The objects are loaded from the database, within a transaction, as any other object,
+ * so the loaded values are always those of the transaction that loads them, regardless of how old the snapshot is. The snapshot
+ * also keeps the number of the transaction when it was taken, for information only.
+ */
+public class HotSetSnapshot extends FenixFrameworkThread {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotSetSnapshot.class);
+
+    // identifies the format of the file
+    private static final int MAGIC = 0xFF05E701;
+
+    // the maximum number of OIDs in each snapshot
+    private static final int MAX_OIDS = 1 << 20;
+
+    // the objects are loaded in several transactions, so that none of them gets too old
+    private static final int OIDS_PER_TRANSACTION = 1000;
+
+    private final File file;
+    private final long secondsBetweenSnapshots;
+    private final TransactionManager transactionManager;
+
+    public HotSetSnapshot(File file, long secondsBetweenSnapshots, TransactionManager transactionManager) {
+        super("HotSetSnapshot");
+        this.file = file;
+        this.secondsBetweenSnapshots = secondsBetweenSnapshots;
+        this.transactionManager = transactionManager;
+
+        setDaemon(true);
+    }
+
+    // a failure to load or save a snapshot is logged, so that it does not stop the next snapshots from being saved
+    @Override
+    public void run() {
+        try {
+            warmUp();
+        } catch (RuntimeException e) {
+            logger.error("Couldn't load the hot set from " + file, e);
+        }
+
+        while (true) {
+            try {
+                sleep(secondsBetweenSnapshots * 1000);
+            } catch (InterruptedException ie) {
+                return;
+            }
+            try {
+                saveSnapshot();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Couldn't save the snapshot of the hot set to " + file, e);
+            }
+        }
+    }
+
+    private void warmUp() {
+        if (!file.exists()) {
+            logger.info("There is no snapshot of the hot set in {}", file);
+            return;
+        }
+
+        long[] oids;
+        try {
+            oids = readSnapshot();
+        } catch (IOException e) {
+            logger.error("Couldn't read the snapshot of the hot set from " + file, e);
+            return;
+        }
+        if (oids == null) {
+            logger.warn("Ignoring the snapshot of the hot set in {}, which has an unknown format", file);
+            return;
+        }
+
+        logger.info("Loading the {} objects of the hot set", oids.length);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < oids.length; i += OIDS_PER_TRANSACTION) {
+            final long[] batch = new long[Math.min(OIDS_PER_TRANSACTION, oids.length - i)];
+            System.arraycopy(oids, i, batch, 0, batch.length);
+            transactionManager.withTransaction(new CallableWithoutException<Void>() {
+                @Override
+                public Void call() {
+                    loadObjects(batch);
+                    return null;
+                }
+            });
+        }
+        logger.info("Loaded the hot set in {} ms", System.currentTimeMillis() - start);
+    }
+
+    // loads the objects with the given OIDs, with a query per table
+    private static void loadObjects(long[] oids) {
+        PersistenceBroker pb = TransactionSupport.getOJBBroker();
+
+        Map<String, ClassDescriptor> tables = new HashMap<String, ClassDescriptor>();
+        Map<String, List<Long>> oidsByTable = new HashMap<String, List<Long>>();
+        for (long oid : oids) {
+            Class<?> objClass = DomainClassInfo.mapOidToClass(oid);
+            if (objClass == null) {
+                // the class was removed from the domain model since the snapshot was taken
+                continue;
+            }
+            ClassDescriptor cld = pb.getClassDescriptor(objClass);
+            String table = cld.getFullTableName();
+            List<Long> tableOids = oidsByTable.get(table);
+            if (tableOids == null) {
+                tableOids = new ArrayList<Long>();
+                oidsByTable.put(table, tableOids);
+                tables.put(table, cld);
+            }
+            tableOids.add(oid);
+        }
+
+        FenixJdbcAccessImpl jdbcAccess = (FenixJdbcAccessImpl) pb.serviceJdbcAccess();
+        for (Map.Entry<String, List<Long>> entry : oidsByTable.entrySet()) {
+            jdbcAccess.materializeObjects(tables.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private long[] readSnapshot() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int txNumber = in.readInt();
+            long[] oids = new long[in.readInt()];
+            for (int i = 0; i < oids.length; i++) {
+                oids[i] = in.readLong();
+            }
+            logger.info("Read the snapshot of the hot set taken at transaction {}", txNumber);
+            return oids;
+        } finally {
+            in.close();
+        }
+    }
+
+    // writes to a temporary file that replaces the previous snapshot only when it is complete
+    private void saveSnapshot() throws IOException {
+        int txNumber = Transaction.getMostRecentCommitedNumber();
+        OidRecorder oids = new OidRecorder();
+        SharedIdentityMap.getCache().addCachedObjectsTo(oids, MAX_OIDS);
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(txNumber);
+            out.writeInt(oids.size());
+            for (int i = 0; i < oids.size(); i++) {
+                out.writeLong(oids.oids[i]);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        logger.debug("Saved the {} objects of the hot set at transaction {}", oids.size(), txNumber);
+    }
+
+    // keeps only the OIDs of the objects added to it, so that the objects themselves are not held while the snapshot is taken
+    // (the objects in the SharedIdentityMap are typed with the core AbstractDomainObject, not with this package's one)
+    private static class OidRecorder extends AbstractCollection<pt.ist.fenixframework.core.AbstractDomainObject> {
+        private long[] oids = new long[1024];
+        private int size = 0;
+
+        @Override
+        public boolean add(pt.ist.fenixframework.core.AbstractDomainObject obj) {
+            if (size == oids.length) {
+                oids = Arrays.copyOf(oids, size * 2);
+            }
+            oids[size++] = (Long) obj.getOid();
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<pt.ist.fenixframework.core.AbstractDomainObject> iterator() {
+            throw new UnsupportedOperationException("Only the OIDs are kept");
+        }
+    }
+}
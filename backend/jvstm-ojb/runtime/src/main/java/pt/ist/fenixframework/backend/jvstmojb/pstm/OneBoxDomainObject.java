@@ -88,6 +88,12 @@ public abstract class OneBoxDomainObject extends AbstractDomainObject {
         return currState;
     }
 
+    // whether the state of this object is loaded for the given transaction
+    @Override
+    boolean isLoadedIn(FenixTransaction tx) {
+        return tx.isBoxValueLoaded(obj$state);
+    }
+
     @Override
     protected void readSlotsFromResultSet(java.sql.ResultSet rs, int txNumber) throws java.sql.SQLException {
         throw new Error("readSlotsFromResultSet should not be used for OneBoxDomainObjects");
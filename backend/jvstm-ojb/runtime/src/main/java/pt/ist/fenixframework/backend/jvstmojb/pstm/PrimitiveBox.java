@@ -21,8 +21,13 @@ class PrimitiveBox<E> extends VBox<E> {
     @Override
     protected void doReload(Object obj, String attr) {
         PersistenceBroker pb = TransactionSupport.getOJBBroker();
-        Identity oid = new Identity(obj, pb);
-        ClassDescriptor cld = pb.getClassDescriptor(obj.getClass());
-        pb.serviceJdbcAccess().materializeObject(cld, oid);
+        if (obj instanceof AbstractDomainObject) {
+            // loads the object along with others that the transaction is expected to read
+            TransactionSupport.currentFenixTransaction().getBatchLoader().load(pb, (AbstractDomainObject) obj);
+        } else {
+            Identity oid = new Identity(obj, pb);
+            ClassDescriptor cld = pb.getClassDescriptor(obj.getClass());
+            pb.serviceJdbcAccess().materializeObject(cld, oid);
+        }
     }
 }
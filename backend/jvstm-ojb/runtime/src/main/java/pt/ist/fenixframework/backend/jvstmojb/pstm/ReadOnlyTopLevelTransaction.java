@@ -19,9 +19,9 @@ class ReadOnlyTopLevelTransaction extends TopLevelTransaction {
         // for read-only transactions, for which we do not store the
         // read-set, it is not possible to know that we will see a
         // consistent read after resuming, unless the new record is
-        // exactly the same that we have
+        // exactly the same that we have (or we have not read anything yet)
 
-        if (record != this.activeTxRecord) {
+        if (record != this.activeTxRecord && numBoxReads > 0) {
             throw new ResumeException("Transaction may be no longer valid for resuming");
         }
     }
@@ -33,8 +33,9 @@ class ReadOnlyTopLevelTransaction extends TopLevelTransaction {
 
     @Override
     public <T> T getBoxValue(VBox<T> vbox, Object obj, String attr) {
+        // counted only after getting the body, because the first read may move this transaction to a newer number
+        VBoxBody<T> body = getBodyToRead(vbox);
         numBoxReads++;
-        VBoxBody<T> body = vbox.body.getBody(number);
         if (body.value == VBox.NOT_LOADED_VALUE) {
             synchronized (body) {
                 if (body.value == VBox.NOT_LOADED_VALUE) {
@@ -2,7 +2,9 @@ package pt.ist.fenixframework.backend.jvstmojb.pstm;
 
 import java.lang.ref.SoftReference;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 
 import jvstm.PerTxBox;
@@ -73,6 +75,11 @@ public class RelationList<E1 extends AbstractDomainObject, E2 extends AbstractDo
         return this;
     }
 
+    // whether the elements are loaded for the current transaction
+    boolean isLoaded() {
+        return getElementsBox().hasValue();
+    }
+
     private FunctionalSet<E2> elementSet() {
         consolidateElements();
         return getElementsBox().get(listHolder, attributeName);
@@ -170,27 +177,56 @@ public class RelationList<E1 extends AbstractDomainObject, E2 extends AbstractDo
     private static class RelationListIterator<X extends AbstractDomainObject> implements Iterator<X> {
         private final RelationList<?, X> list;
         private final Iterator<X> iter;
+        // goes ahead of iter, adding the next elements to the pending loads of the transaction, so that the elements that
+        // are not loaded yet are loaded in batches (see BatchLoader)
+        private final Iterator<X> lookahead;
+        // the elements ahead of iter that were last added to the pending loads, and how many of them were not returned yet
+        private final List<X> window = new ArrayList<X>();
+        private int numPending = 0;
         private boolean canRemove = false;
         private X previous = null;
 
         RelationListIterator(RelationList<?, X> list) {
             this.list = list;
-            this.iter = list.elementSet().iterator();
+            FunctionalSet<X> elements = list.elementSet();
+            this.iter = elements.iterator();
+            this.lookahead = elements.iterator();
         }
 
         @Override
         public boolean hasNext() {
-            return iter.hasNext();
+            if (iter.hasNext()) {
+                return true;
+            }
+            clearWindow();
+            return false;
         }
 
         @Override
         public X next() {
+            if (numPending == 0) {
+                // the elements of the previous window that were not read are no longer expected to be
+                clearWindow();
+                while (window.size() < BatchLoader.MAX_BATCH_SIZE && lookahead.hasNext()) {
+                    window.add(lookahead.next());
+                }
+                TransactionSupport.addPendingLoads(window);
+                numPending = window.size();
+            }
             X result = iter.next();
+            numPending--;
             canRemove = true;
             previous = result;
             return result;
         }
 
+        private void clearWindow() {
+            if (!window.isEmpty()) {
+                TransactionSupport.removePendingLoads(window);
+                window.clear();
+            }
+        }
+
         @Override
         public void remove() {
             if (!canRemove) {
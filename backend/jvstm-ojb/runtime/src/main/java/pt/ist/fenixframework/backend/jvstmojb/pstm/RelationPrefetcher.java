@@ -0,0 +1,224 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ojb.broker.PersistenceBroker;
+import org.apache.ojb.broker.accesslayer.LookupException;
+import org.apache.ojb.broker.metadata.ClassDescriptor;
+import org.apache.ojb.broker.metadata.CollectionDescriptor;
+import org.apache.ojb.broker.metadata.DescriptorRepository;
+import org.apache.ojb.broker.metadata.FieldDescriptor;
+import org.apache.ojb.broker.metadata.MetadataManager;
+
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.backend.jvstmojb.ojb.FenixJdbcAccessImpl;
+import pt.ist.fenixframework.backend.jvstmojb.ojb.OJBFunctionalSetWrapper;
+import pt.ist.fenixframework.backend.jvstmojb.ojb.OJBMetadataGenerator;
+
+/**
+ * Loads objects and the objects reachable from them through role paths (see
+ * {@link pt.ist.fenixframework.FenixFramework#prefetch(Collection, String...)}), one level of each path at a time.
+ *
+ * At each level, the states of the objects are loaded by the {@link BatchLoader}, with a query for each
+ * {@link BatchLoader#MAX_BATCH_SIZE} objects of the same class. The to-one roles are then read from those states, whereas
+ * the elements of the to-many roles are loaded with a query for each {@link FenixJdbcAccessImpl#MAX_OIDS_PER_QUERY} owners:
+ * for one-to-many relations, the query selects the elements themselves, so their states are loaded along with them; for
+ * many-to-many relations, it selects the tuples of the indirection table.
+ *
+ * Everything is loaded by the current transaction, through its own DB connection, so the values are those of its version.
+ */
+public final class RelationPrefetcher {
+
+    private RelationPrefetcher() {
+        // this is never to be used!!!
+    }
+
+    public static void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        DescriptorRepository repository = MetadataManager.getInstance().getGlobalRepository();
+        BatchLoader batchLoader = TransactionSupport.currentFenixTransaction().getBatchLoader();
+
+        List<AbstractDomainObject> roots = new ArrayList<AbstractDomainObject>(objects.size());
+        for (DomainObject object : objects) {
+            // as with loadObjects, e.g. for the results of getDomainObjects for null ids
+            if (object != null) {
+                roots.add((AbstractDomainObject) object);
+            }
+        }
+        batchLoader.loadAll(roots);
+
+        for (String rolePath : rolePaths) {
+            Collection<AbstractDomainObject> level = roots;
+            for (String roleName : rolePath.split("\\.")) {
+                level = followRole(repository, level, roleName);
+                batchLoader.loadAll(level);
+            }
+        }
+    }
+
+    // returns the objects related to the given ones through the role with the given name
+    private static Collection<AbstractDomainObject> followRole(DescriptorRepository repository,
+            Collection<AbstractDomainObject> objects, String roleName) {
+        Map<Class<?>, List<AbstractDomainObject>> objectsByClass = new HashMap<Class<?>, List<AbstractDomainObject>>();
+        for (AbstractDomainObject object : objects) {
+            List<AbstractDomainObject> classObjects = objectsByClass.get(object.getClass());
+            if (classObjects == null) {
+                classObjects = new ArrayList<AbstractDomainObject>();
+                objectsByClass.put(object.getClass(), classObjects);
+            }
+            classObjects.add(object);
+        }
+
+        Set<AbstractDomainObject> related = new LinkedHashSet<AbstractDomainObject>();
+        for (Map.Entry<Class<?>, List<AbstractDomainObject>> entry : objectsByClass.entrySet()) {
+            ClassDescriptor cld = repository.getDescriptorFor(entry.getKey());
+            CollectionDescriptor cod = cld.getCollectionDescriptorByName(roleName);
+            if (cod != null) {
+                followToManyRole(repository, cod, roleName, entry.getValue(), related);
+                continue;
+            }
+
+            FieldDescriptor oidField = foreignOidField(cld, roleName);
+            for (AbstractDomainObject object : entry.getValue()) {
+                Long oid = (Long) oidField.getPersistentField().get(object);
+                if (oid != null) {
+                    related.add(FenixFramework.getConfig().getBackEnd().<AbstractDomainObject> fromOid(oid));
+                }
+            }
+        }
+        return related;
+    }
+
+    /**
+     * Returns the field that keeps the OID of the object related through the to-one role with the given name, which is named
+     * by {@link OJBMetadataGenerator#foreignOidFieldName(String)}.
+     *
+     * @throws IllegalArgumentException if the class has neither a to-many role nor a to-one role with the given name
+     */
+    static FieldDescriptor foreignOidField(ClassDescriptor cld, String roleName) {
+        String fieldName = OJBMetadataGenerator.foreignOidFieldName(roleName);
+        FieldDescriptor oidField = cld.getFieldDescriptorByName(fieldName);
+        if (oidField == null) {
+            throw new IllegalArgumentException("Cannot prefetch the role " + roleName + " of " + cld.getClassOfObject().getName()
+                    + ": the class has neither a to-many role with that name, nor the field " + fieldName
+                    + " that keeps the object of a to-one role");
+        }
+        return oidField;
+    }
+
+    private static void followToManyRole(DescriptorRepository repository, CollectionDescriptor cod, String roleName,
+            List<AbstractDomainObject> owners, Set<AbstractDomainObject> related) {
+        Map<Long, AbstractDomainObject> ownersToLoad = new HashMap<Long, AbstractDomainObject>();
+        for (AbstractDomainObject owner : owners) {
+            RelationList<?, AbstractDomainObject> list = (RelationList<?, AbstractDomainObject>) owner.getSlotNamed(roleName);
+            if (list.isLoaded()) {
+                related.addAll(list);
+            } else {
+                ownersToLoad.put(owner.getOid(), owner);
+            }
+        }
+
+        if (ownersToLoad.isEmpty()) {
+            return;
+        }
+
+        PersistenceBroker pb = TransactionSupport.getOJBBroker();
+        List<Long> ownerOids = new ArrayList<Long>(ownersToLoad.keySet());
+        int maxOids = FenixJdbcAccessImpl.MAX_OIDS_PER_QUERY;
+        for (int start = 0; start < ownerOids.size(); start += maxOids) {
+            List<Long> chunk = ownerOids.subList(start, Math.min(ownerOids.size(), start + maxOids));
+            Map<Long, OJBFunctionalSetWrapper> elementsByOwner = new HashMap<Long, OJBFunctionalSetWrapper>();
+            for (Long ownerOid : chunk) {
+                elementsByOwner.put(ownerOid, new OJBFunctionalSetWrapper());
+            }
+
+            try {
+                readElements(pb, repository, cod, chunk, elementsByOwner);
+            } catch (SQLException sqle) {
+                throw new Error("Error while prefetching the role " + roleName, sqle);
+            } catch (LookupException le) {
+                throw new Error("Error while obtaining database connection", le);
+            }
+
+            for (Map.Entry<Long, OJBFunctionalSetWrapper> entry : elementsByOwner.entrySet()) {
+                AbstractDomainObject owner = ownersToLoad.get(entry.getKey());
+                ((RelationList) owner.getSlotNamed(roleName)).setFromOJB(owner, roleName, entry.getValue());
+                Iterator<AbstractDomainObject> elements = entry.getValue().getElements().iterator();
+                while (elements.hasNext()) {
+                    related.add(elements.next());
+                }
+            }
+        }
+    }
+
+    // adds the elements of each of the owners with the given OIDs to its wrapper
+    private static void readElements(PersistenceBroker pb, DescriptorRepository repository, CollectionDescriptor cod,
+            List<Long> ownerOids, Map<Long, OJBFunctionalSetWrapper> elementsByOwner) throws SQLException, LookupException {
+        boolean manyToMany = cod.getIndirectionTable() != null;
+        String ownerColumn = ownerColumn(repository, cod);
+        String sql = selectElementsSql(repository, cod, ownerOids.size());
+
+        Connection conn = pb.serviceConnectionManager().getConnection();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ownerOids.size(); i++) {
+                stmt.setLong(i + 1, ownerOids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long ownerOid = rs.getLong(ownerColumn);
+                    AbstractDomainObject element;
+                    if (manyToMany) {
+                        element = FenixFramework.getConfig().getBackEnd().fromOid(rs.getLong(2));
+                    } else {
+                        element = FenixJdbcAccessImpl.readObjectFromRs(rs);
+                    }
+                    if (element != null) {
+                        elementsByOwner.get(ownerOid).ojbAdd(element);
+                    }
+                }
+            }
+        }
+    }
+
+    // the column with the OID of the owner, in the rows selected by selectElementsSql
+    static String ownerColumn(DescriptorRepository repository, CollectionDescriptor cod) {
+        if (cod.getIndirectionTable() != null) {
+            return cod.getFksToThisClass()[0];
+        } else {
+            ClassDescriptor itemCld = repository.getDescriptorFor(cod.getItemClass());
+            return itemCld.getFieldDescriptorByName((String) cod.getForeignKeyFields().get(0)).getColumnName();
+        }
+    }
+
+    /*
+     * The query that selects the elements of the given number of owners.  For one-to-many roles, it selects the rows of the
+     * elements themselves, so that their states are loaded along with them.  For many-to-many roles, it selects the tuples of
+     * the indirection table, with the OID of the element in the second column.
+     */
+    static String selectElementsSql(DescriptorRepository repository, CollectionDescriptor cod, int numOwners) {
+        String ownerColumn = ownerColumn(repository, cod);
+        StringBuilder sql = new StringBuilder();
+        if (cod.getIndirectionTable() != null) {
+            sql.append("SELECT ").append(ownerColumn).append(",").append(cod.getFksToItemClass()[0]);
+            sql.append(" FROM `").append(cod.getIndirectionTable()).append("`");
+        } else {
+            sql.append("SELECT * FROM ").append(repository.getDescriptorFor(cod.getItemClass()).getFullTableName());
+        }
+        sql.append(" WHERE ").append(ownerColumn).append(" IN (");
+        for (int i = 0; i < numOwners; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(")").toString();
+    }
+}
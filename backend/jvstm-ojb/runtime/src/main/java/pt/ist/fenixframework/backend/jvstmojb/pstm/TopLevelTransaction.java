@@ -74,6 +74,13 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
 
     private PersistenceBroker broker;
 
+    // Whether this transaction's number was already synchronized with the snapshot of its DB connection.  Until then, the
+    // transaction may only read values that are already in memory (see TransactionChangeLogs.mustUpdateOnTxStart).
+    private boolean dbSynchronized = false;
+
+    // created when it is first needed
+    private BatchLoader batchLoader = null;
+
     // for statistics
     protected int numBoxReads = 0;
     protected int numBoxWrites = 0;
@@ -95,6 +102,21 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
             lastDbConnectionTimestamp = now;
         }
 
+        this.dbSynchronized = false;
+        // a new transaction whose number is recent enough may postpone the
+        // synchronization until it needs to access the database, which many
+        // transactions never do
+        if (resuming || TransactionChangeLogs.mustUpdateOnTxStart()) {
+            synchronizeWithDb(resuming);
+        }
+    }
+
+    // Sets this transaction's number to the number of the most recent
+    // transaction seen by its DB connection, which must be validated against
+    // what this transaction already read, if anything
+    private void synchronizeWithDb(boolean validate) {
+        this.dbSynchronized = true;
+
         // open a connection to the database and set this tx number to the
         // number that
         // corresponds to that connection number. The connection number should
@@ -111,10 +133,10 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
             // record and set
             // it properly
 
-            // but, if we are resuming, we must ensure first that the
-            // transaction is still valid for the new transaction
-            // record
-            if (resuming) {
+            // but, if we are resuming (or we read something already), we
+            // must ensure first that the transaction is still valid for the
+            // new transaction record
+            if (validate) {
                 checkValidity(newRecord);
             }
 
@@ -165,9 +187,54 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
 
     @Override
     public PersistenceBroker getOJBBroker() {
+        if (!dbSynchronized) {
+            synchronizeLazilyWithDb();
+        }
         return broker;
     }
 
+    /**
+     * Synchronizes this transaction with the database now, if it was not yet, as if it had started with
+     * <code>strictTransactionFreshness</code>. A transaction that restarts because it synchronized too late calls this before
+     * reading anything, so that it cannot restart again for the same reason.
+     */
+    public void synchronizeWithDbNow() {
+        if (!dbSynchronized) {
+            synchronizeLazilyWithDb();
+        }
+    }
+
+    private void synchronizeLazilyWithDb() {
+        try {
+            synchronizeWithDb(true);
+        } catch (ResumeException re) {
+            // the values already read are not valid for the database's
+            // snapshot, so the transaction must restart
+            throw new CommitException();
+        }
+    }
+
+    /**
+     * Returns the body of the given box that this transaction should read. If that body is not loaded, the transaction is
+     * first synchronized with the database, as the body will be loaded from there.
+     */
+    protected <T> VBoxBody<T> getBodyToRead(VBox<T> vbox) {
+        VBoxBody<T> body = vbox.body.getBody(number);
+        if (body.value == VBox.NOT_LOADED_VALUE && !dbSynchronized) {
+            synchronizeLazilyWithDb();
+            body = vbox.body.getBody(number);
+        }
+        return body;
+    }
+
+    @Override
+    public BatchLoader getBatchLoader() {
+        if (batchLoader == null) {
+            batchLoader = new BatchLoader(this);
+        }
+        return batchLoader;
+    }
+
     @Override
     public void setReadOnly() {
         // a null dbChanges indicates a read-only tx
@@ -186,7 +253,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
 
     private ActiveTransactionsRecord updateFromTxLogsOnDatabase(ActiveTransactionsRecord record) {
         try {
-            return TransactionChangeLogs.updateFromTxLogsOnDatabase(getOJBBroker(), record);
+            return TransactionChangeLogs.updateFromTxLogsOnDatabase(this.broker, record);
         } catch (Exception sqle) {
             // sqle.printStackTrace();
             throw new Error("Error while updating from FF$TX_CHANGE_LOGS: Cannot proceed: " + sqle.getMessage(), sqle);
@@ -279,7 +346,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
         if (value == null) {
             // no local value for the box
 
-            VBoxBody<T> body = vbox.body.getBody(number);
+            VBoxBody<T> body = getBodyToRead(vbox);
             if (body.value == VBox.NOT_LOADED_VALUE) {
                 synchronized (body) {
                     if (body.value == VBox.NOT_LOADED_VALUE) {
@@ -341,7 +408,8 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
     @Override
     protected Cons<VBoxBody> performValidCommit() {
         // in memory everything is ok, but we need to check against the db
-        PersistenceBroker pb = getOJBBroker();
+        // (the query below also synchronizes this transaction, if needed)
+        PersistenceBroker pb = this.broker;
 
         int currentPriority = Thread.currentThread().getPriority();
         try {
@@ -361,6 +429,7 @@ public class TopLevelTransaction extends ConsistentTopLevelTransaction implement
                     // concurrently with other executing commits in other
                     // servers
                     ActiveTransactionsRecord myRecord = this.activeTxRecord;
+                    this.dbSynchronized = true;
                     if (TransactionChangeLogs.updateFromTxLogsOnDatabase(pb, myRecord, true) != myRecord) {
                         // the cache may have been updated, so perform the
                         // tx-validation again
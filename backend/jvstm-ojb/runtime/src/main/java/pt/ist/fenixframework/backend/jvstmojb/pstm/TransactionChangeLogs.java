@@ -22,12 +22,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.backend.jvstmojb.JvstmOJBConfig;
 import pt.ist.fenixframework.util.FenixFrameworkThread;
 
 public class TransactionChangeLogs {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionChangeLogs.class);
 
+    // The time when the most recent update from the change logs started: every transaction committed before this time (by any
+    // server) is already known locally.  It is not updated atomically, because a lower value only causes an extra update.
+    private static volatile long lastUpdateTimestamp = 0;
+
+    // the maximum age of lastUpdateTimestamp for a new transaction to start without an update.  Negative if the transactions
+    // must always update when they start.
+    private static volatile long maxStalenessMillis = -1;
+
+    /**
+     * Returns whether a new transaction must update from the change logs when it starts. Otherwise, it may start from the most
+     * recent version known locally, which is recent enough.
+     */
+    static boolean mustUpdateOnTxStart() {
+        long maxStaleness = maxStalenessMillis;
+        return maxStaleness < 0 || (System.currentTimeMillis() - lastUpdateTimestamp) >= maxStaleness;
+    }
+
+    // records that every transaction committed before the given time is known locally
+    static void updatedAt(long timestamp) {
+        if (timestamp > lastUpdateTimestamp) {
+            lastUpdateTimestamp = timestamp;
+        }
+    }
+
+    // sets the maximum age of the most recent update for a new transaction to start without one, or -1 to always update
+    static void setMaxStaleness(long millis) {
+        maxStalenessMillis = millis;
+    }
+
     // ------------------------------------------------------------
 
     private static class AlienTransaction {
@@ -88,6 +118,7 @@ public class TransactionChangeLogs {
 
         // ensure that the connection is up-to-date
         conn.commit();
+        long start = System.currentTimeMillis();
 
         Statement stmt = null;
         ResultSet rs = null;
@@ -104,11 +135,10 @@ public class TransactionChangeLogs {
                             + (forUpdate ? " FOR UPDATE" : ""));
 
             // if there are any results to be processed, process them
-            if (rs.next()) {
-                return processAlienTransaction(pb, rs, record);
-            } else {
-                return record;
-            }
+            ActiveTransactionsRecord result = rs.next() ? processAlienTransaction(pb, rs, record) : record;
+
+            updatedAt(start);
+            return result;
         } finally {
             if (rs != null) {
                 rs.close();
@@ -239,6 +269,14 @@ public class TransactionChangeLogs {
             new CleanThread(maxTx).start();
             new StatisticsThread().start();
 
+            JvstmOJBConfig config = FenixFramework.getConfig();
+            if (config.isStrictTransactionFreshness()) {
+                setMaxStaleness(-1);
+            } else {
+                setMaxStaleness(config.getMaxTransactionStaleness());
+                new PollerThread(Math.max(1, config.getMaxTransactionStaleness() / 2)).start();
+            }
+
             return maxTx;
         } catch (Exception e) {
             throw new Error("Couldn't initialize the transaction system");
@@ -249,6 +287,45 @@ public class TransactionChangeLogs {
         }
     }
 
+    // Updates from the change logs periodically, so that the new transactions seldom have to do it themselves
+    private static class PollerThread extends FenixFrameworkThread {
+        private final long millisBetweenUpdates;
+
+        PollerThread(long millisBetweenUpdates) {
+            super("TxLogsPollerThread");
+            this.millisBetweenUpdates = millisBetweenUpdates;
+
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    sleep(millisBetweenUpdates);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                update();
+            }
+        }
+
+        private void update() {
+            PersistenceBroker broker = null;
+
+            try {
+                broker = PersistenceBrokerFactory.defaultPersistenceBroker();
+                updateFromTxLogsOnDatabase(broker, Transaction.mostRecentRecord);
+            } catch (Throwable t) {
+                logger.error("Couldn't update from the change logs in the poller thread", t);
+            } finally {
+                if (broker != null) {
+                    broker.close();
+                }
+            }
+        }
+    }
+
     private static class CleanThread extends FenixFrameworkThread {
         private static final long SECONDS_BETWEEN_UPDATES = 120;
 
@@ -1,6 +1,8 @@
 package pt.ist.fenixframework.backend.jvstmojb.pstm;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import jvstm.ActiveTransactionsRecord;
 import jvstm.Transaction;
@@ -11,6 +13,8 @@ import org.apache.ojb.broker.accesslayer.LookupException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ist.fenixframework.DomainObject;
+
 public final class TransactionSupport {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionSupport.class);
@@ -79,6 +83,40 @@ public final class TransactionSupport {
         currentDBChanges().removeRelationTuple(relation, obj1, colNameOnObj1, obj2, colNameOnObj2);
     }
 
+    /**
+     * Hints that the current transaction is about to read the given objects, so that those that are not loaded yet are loaded
+     * in batches, by class, when the first of them is read.
+     */
+    public static void addPendingLoads(Iterable<? extends DomainObject> objects) {
+        BatchLoader batchLoader = currentFenixTransaction().getBatchLoader();
+        for (DomainObject object : objects) {
+            batchLoader.addPending((AbstractDomainObject) object);
+        }
+    }
+
+    // withdraws the hint of addPendingLoads for those of the given objects that were not loaded yet
+    static void removePendingLoads(Iterable<? extends DomainObject> objects) {
+        BatchLoader batchLoader = currentFenixTransaction().getBatchLoader();
+        for (DomainObject object : objects) {
+            batchLoader.removePending((AbstractDomainObject) object);
+        }
+    }
+
+    /**
+     * Loads the given objects that the current transaction has not loaded yet, with a single query for each class, instead of a
+     * query per object as each one is read. Null objects are ignored.
+     */
+    public static void loadObjects(Iterable<? extends DomainObject> objects) {
+        BatchLoader batchLoader = currentFenixTransaction().getBatchLoader();
+        List<AbstractDomainObject> domainObjects = new ArrayList<AbstractDomainObject>();
+        for (DomainObject object : objects) {
+            if (object != null) {
+                domainObjects.add((AbstractDomainObject) object);
+            }
+        }
+        batchLoader.loadAll(domainObjects);
+    }
+
     public static PersistenceBroker getOJBBroker() {
         return currentFenixTransaction().getOJBBroker();
     }
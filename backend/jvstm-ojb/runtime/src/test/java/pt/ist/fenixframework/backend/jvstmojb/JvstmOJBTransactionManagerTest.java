@@ -0,0 +1,140 @@
+package pt.ist.fenixframework.backend.jvstmojb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import jvstm.CommitException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+
+/**
+ * Checks that the commands whose transactions synchronized with the database too late restart, and that the restarted
+ * transactions synchronize with the database when they begin. The transactions themselves are only recorded, so that no
+ * database is needed.
+ */
+@RunWith(JUnit4.class)
+public class JvstmOJBTransactionManagerTest {
+
+    // records the life-cycle of the transactions instead of running them
+    private static class RecordingTransactionManager extends JvstmOJBTransactionManager {
+        final List<String> events = new ArrayList<String>();
+        private JvstmOJBTransaction current = null;
+
+        @Override
+        public void begin(boolean readOnly) {
+            this.events.add(readOnly ? "begin read-only" : "begin");
+            this.current = new JvstmOJBTransaction(null);
+        }
+
+        @Override
+        void beginSynchronizedWithDb(boolean readOnly) {
+            this.events.add(readOnly ? "begin read-only synchronized" : "begin synchronized");
+            this.current = new JvstmOJBTransaction(null);
+        }
+
+        @Override
+        public JvstmOJBTransaction getTransaction() {
+            return this.current;
+        }
+
+        @Override
+        public void commit() {
+            this.events.add("commit");
+            this.current = null;
+        }
+
+        @Override
+        public void rollback() {
+            this.events.add("rollback");
+            this.current = null;
+        }
+    }
+
+    // a command whose first transactions find that they read the database too late
+    private static class Command implements Callable<String> {
+        private int failures;
+        int calls = 0;
+
+        Command(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public String call() {
+            this.calls++;
+            if (this.failures > 0) {
+                this.failures--;
+                throw new CommitException();
+            }
+            return "result";
+        }
+    }
+
+    private static final Atomic READ_ONLY = (Atomic) Proxy.newProxyInstance(Atomic.class.getClassLoader(),
+            new Class<?>[] { Atomic.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("mode")) {
+                        return TxMode.READ;
+                    } else if (method.getName().equals("annotationType")) {
+                        return Atomic.class;
+                    } else {
+                        return method.getDefaultValue();
+                    }
+                }
+            });
+
+    @Test
+    public void readOnlyCommandThatDoesNotRestart() throws Exception {
+        RecordingTransactionManager manager = new RecordingTransactionManager();
+        assertEquals("result", manager.withTransaction(new Command(0), READ_ONLY));
+        assertEquals(Arrays.asList("begin read-only", "commit"), manager.events);
+    }
+
+    @Test
+    public void readOnlyCommandRestartsSynchronized() throws Exception {
+        RecordingTransactionManager manager = new RecordingTransactionManager();
+        Command command = new Command(1);
+        assertEquals("result", manager.withTransaction(command, READ_ONLY));
+        assertEquals(2, command.calls);
+        assertEquals(Arrays.asList("begin read-only", "commit", "begin read-only synchronized", "commit"), manager.events);
+    }
+
+    @Test
+    public void readOnlyCommandRestartsOnlyOnce() throws Exception {
+        RecordingTransactionManager manager = new RecordingTransactionManager();
+        Command command = new Command(Integer.MAX_VALUE);
+        try {
+            manager.withTransaction(command, READ_ONLY);
+            fail("A transaction synchronized from the start cannot synchronize too late");
+        } catch (CommitException e) {
+            // expected
+        }
+        assertEquals(2, command.calls);
+        assertEquals(Arrays.asList("begin read-only", "commit", "begin read-only synchronized", "commit"), manager.events);
+    }
+
+    @Test
+    public void writeCommandRestartsSynchronized() throws Exception {
+        RecordingTransactionManager manager = new RecordingTransactionManager();
+        Command command = new Command(2);
+        assertEquals("result", manager.withTransaction(command));
+        assertEquals(3, command.calls);
+        assertEquals(Arrays.asList("begin", "rollback", "begin synchronized", "rollback", "begin synchronized", "commit"),
+                manager.events);
+    }
+
+}
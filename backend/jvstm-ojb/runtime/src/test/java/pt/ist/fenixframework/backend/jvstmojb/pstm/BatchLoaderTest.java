@@ -0,0 +1,199 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ojb.broker.PersistenceBroker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.core.DomainObjectAllocator;
+
+/**
+ * Checks which objects the batch loader loads together, and with how many queries. The queries are only recorded, so that no
+ * database is needed.
+ */
+@RunWith(JUnit4.class)
+public class BatchLoaderTest {
+
+    public static class Item extends AbstractDomainObject {
+        protected Item(DomainObjectAllocator.OID oid) {
+            super(oid);
+        }
+
+        @Override
+        protected void readSlotsFromResultSet(ResultSet rs, int txNumber) {
+        }
+    }
+
+    public static class OtherItem extends AbstractDomainObject {
+        protected OtherItem(DomainObjectAllocator.OID oid) {
+            super(oid);
+        }
+
+        @Override
+        protected void readSlotsFromResultSet(ResultSet rs, int txNumber) {
+        }
+    }
+
+    // records the queries instead of running them
+    private static class RecordingBatchLoader extends BatchLoader {
+        final List<String> queries = new ArrayList<String>();
+
+        RecordingBatchLoader(FenixTransaction tx) {
+            super(tx);
+        }
+
+        @Override
+        void materializeObject(PersistenceBroker pb, AbstractDomainObject obj) {
+            queries.add(obj.getClass().getSimpleName() + " " + obj.getOid());
+        }
+
+        @Override
+        void materializeObjects(PersistenceBroker pb, Class<?> objClass, List<Long> oids) {
+            queries.add(objClass.getSimpleName() + " " + oids);
+        }
+    }
+
+    private static final DomainObjectAllocator ALLOCATOR = new DomainObjectAllocator(AbstractDomainObject.class);
+
+    private final Set<AbstractDomainObject> loaded = new HashSet<AbstractDomainObject>();
+    private int brokerRequests;
+    private RecordingBatchLoader batchLoader;
+
+    @Before
+    public void makeBatchLoader() {
+        FenixTransaction tx =
+                (FenixTransaction) Proxy.newProxyInstance(FenixTransaction.class.getClassLoader(),
+                        new Class<?>[] { FenixTransaction.class }, new InvocationHandler() {
+                            @Override
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                if (method.getName().equals("isBoxValueLoaded")) {
+                                    return loaded.contains(((VBox<?>) args[0]).getOwnerObject());
+                                } else if (method.getName().equals("getOJBBroker")) {
+                                    brokerRequests++;
+                                    return null;
+                                } else {
+                                    throw new UnsupportedOperationException(method.getName());
+                                }
+                            }
+                        });
+        batchLoader = new RecordingBatchLoader(tx);
+    }
+
+    private static <T extends AbstractDomainObject> List<T> allocate(Class<T> objClass, long firstOid, int count) {
+        List<T> objects = new ArrayList<T>(count);
+        for (long oid = firstOid; oid < firstOid + count; oid++) {
+            objects.add(ALLOCATOR.allocateObject(objClass, oid));
+        }
+        return objects;
+    }
+
+    @Test
+    public void pendingObjectsOfTheSameClassLoadTogether() {
+        List<Item> items = allocate(Item.class, 1, 3);
+        OtherItem other = allocate(OtherItem.class, 10, 1).get(0);
+        for (Item item : items) {
+            batchLoader.addPending(item);
+        }
+        batchLoader.addPending(other);
+
+        batchLoader.load(null, items.get(1));
+        assertEquals(Arrays.asList("Item [2, 1, 3]"), batchLoader.queries);
+
+        // the pending items were taken, and the other class is still pending
+        batchLoader.load(null, items.get(0));
+        batchLoader.load(null, allocate(OtherItem.class, 11, 1).get(0));
+        assertEquals(Arrays.asList("Item [2, 1, 3]", "Item 1", "OtherItem [11, 10]"), batchLoader.queries);
+    }
+
+    @Test
+    public void loadedObjectsAreNotPending() {
+        List<Item> items = allocate(Item.class, 1, 3);
+        loaded.add(items.get(1));
+        batchLoader.addPending(items.get(1));
+        batchLoader.addPending(items.get(2));
+        // loaded after it was added
+        loaded.add(items.get(2));
+
+        batchLoader.load(null, items.get(0));
+        assertEquals(Arrays.asList("Item 1"), batchLoader.queries);
+    }
+
+    @Test
+    public void pendingObjectsAreBounded() {
+        List<Item> items = allocate(Item.class, 1, BatchLoader.MAX_BATCH_SIZE + 2);
+        for (Item item : items) {
+            batchLoader.addPending(item);
+        }
+
+        // the two oldest were dropped
+        Item last = items.get(items.size() - 1);
+        batchLoader.load(null, last);
+        assertEquals(1, batchLoader.queries.size());
+        assertTrue(batchLoader.queries.get(0).startsWith("Item [" + last.getOid() + ", 3, 4, "));
+        assertTrue(batchLoader.queries.get(0).endsWith(", " + (last.getOid() - 1) + "]"));
+
+        batchLoader.load(null, items.get(0));
+        assertEquals("Item 1", batchLoader.queries.get(1));
+    }
+
+    @Test
+    public void removedObjectsAreNotPending() {
+        List<Item> items = allocate(Item.class, 1, 3);
+        for (Item item : items) {
+            batchLoader.addPending(item);
+        }
+        batchLoader.removePending(items.get(1));
+        batchLoader.removePending(items.get(2));
+
+        batchLoader.load(null, items.get(0));
+        assertEquals(Arrays.asList("Item 1"), batchLoader.queries);
+    }
+
+    @Test
+    public void loadAllGroupsByClass() {
+        List<Item> items = allocate(Item.class, 1, 3);
+        List<OtherItem> others = allocate(OtherItem.class, 10, 2);
+        loaded.add(items.get(2));
+        batchLoader.addPending(items.get(0));
+
+        List<AbstractDomainObject> objects = new ArrayList<AbstractDomainObject>();
+        objects.addAll(items);
+        objects.addAll(others);
+        objects.add(items.get(1));
+        batchLoader.loadAll(objects);
+
+        assertEquals(1, brokerRequests);
+        assertEquals(new HashSet<String>(Arrays.asList("Item [1, 2]", "OtherItem [10, 11]")),
+                new HashSet<String>(batchLoader.queries));
+
+        // the pending item was loaded by loadAll, so it is not loaded again along with the next one
+        batchLoader.load(null, items.get(1));
+        assertEquals("Item 2", batchLoader.queries.get(2));
+    }
+
+    @Test
+    public void loadAllWithNothingToLoad() {
+        List<Item> items = allocate(Item.class, 1, 2);
+        loaded.addAll(items);
+
+        batchLoader.loadAll(items);
+        batchLoader.loadAll(new ArrayList<Item>());
+        assertEquals(0, brokerRequests);
+        assertTrue(batchLoader.queries.isEmpty());
+    }
+
+}
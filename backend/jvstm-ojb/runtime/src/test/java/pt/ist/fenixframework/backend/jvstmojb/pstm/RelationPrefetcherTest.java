@@ -0,0 +1,120 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.ojb.broker.metadata.ClassDescriptor;
+import org.apache.ojb.broker.metadata.CollectionDescriptor;
+import org.apache.ojb.broker.metadata.DescriptorRepository;
+import org.apache.ojb.broker.metadata.FieldDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.backend.jvstmojb.ojb.OJBMetadataGenerator;
+import pt.ist.fenixframework.backend.jvstmojb.ojb.ReadOnlyPersistentField;
+
+/**
+ * Checks how the prefetcher follows each kind of role, using OJB descriptors built as OJBMetadataGenerator builds them for
+ * a book with a to-one author, the one-to-many role from the author to its books, and a many-to-many role between books and
+ * their readers. The queries themselves need a database, so only their SQL is checked.
+ */
+@RunWith(JUnit4.class)
+public class RelationPrefetcherTest {
+
+    private static class Author {
+    }
+
+    private static class Reader {
+    }
+
+    private static class Book {
+        private final Long oidAuthor;
+
+        Book(Long oidAuthor) {
+            this.oidAuthor = oidAuthor;
+        }
+
+        @SuppressWarnings("unused")
+        private Long get$oidAuthor() {
+            return oidAuthor;
+        }
+    }
+
+    private DescriptorRepository repository;
+    private ClassDescriptor authorCld;
+    private ClassDescriptor bookCld;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void makeDescriptors() {
+        repository = new DescriptorRepository();
+
+        authorCld = new ClassDescriptor(repository);
+        authorCld.setClassOfObject(Author.class);
+        authorCld.setTableName("AUTHOR");
+        repository.getDescriptorTable().put(Author.class.getName(), authorCld);
+
+        bookCld = new ClassDescriptor(repository);
+        bookCld.setClassOfObject(Book.class);
+        bookCld.setTableName("BOOK");
+        repository.getDescriptorTable().put(Book.class.getName(), bookCld);
+
+        String fieldName = OJBMetadataGenerator.foreignOidFieldName("author");
+        FieldDescriptor oidAuthor = new FieldDescriptor(bookCld, 1);
+        oidAuthor.setColumnName("OID_AUTHOR");
+        oidAuthor.setPersistentField(new ReadOnlyPersistentField(Book.class, fieldName));
+        bookCld.addFieldDescriptor(oidAuthor);
+    }
+
+    @Test
+    public void toOneRole() {
+        FieldDescriptor oidField = RelationPrefetcher.foreignOidField(bookCld, "author");
+        assertEquals("OID_AUTHOR", oidField.getColumnName());
+        assertEquals(7L, oidField.getPersistentField().get(new Book(7L)));
+        assertNull(oidField.getPersistentField().get(new Book(null)));
+    }
+
+    @Test
+    public void unknownRole() {
+        try {
+            RelationPrefetcher.foreignOidField(bookCld, "publisher");
+            fail("Book has no role named publisher");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("publisher"));
+            assertTrue(e.getMessage(), e.getMessage().contains(Book.class.getName()));
+            assertTrue(e.getMessage(), e.getMessage().contains(OJBMetadataGenerator.foreignOidFieldName("publisher")));
+        }
+    }
+
+    @Test
+    public void oneToManyRole() {
+        CollectionDescriptor books = new CollectionDescriptor(authorCld);
+        books.setItemClass(Book.class);
+        books.addForeignKeyField(OJBMetadataGenerator.foreignOidFieldName("author"));
+
+        // the rows of the books themselves, so that their states are loaded along with them
+        assertEquals("OID_AUTHOR", RelationPrefetcher.ownerColumn(repository, books));
+        assertEquals("SELECT * FROM BOOK WHERE OID_AUTHOR IN (?)", RelationPrefetcher.selectElementsSql(repository, books, 1));
+        assertEquals("SELECT * FROM BOOK WHERE OID_AUTHOR IN (?,?,?)",
+                RelationPrefetcher.selectElementsSql(repository, books, 3));
+    }
+
+    @Test
+    public void manyToManyRole() {
+        CollectionDescriptor readers = new CollectionDescriptor(bookCld);
+        readers.setItemClass(Reader.class);
+        readers.setIndirectionTable("BOOK_READERS");
+        readers.addFkToThisClass("OID_BOOK");
+        readers.addFkToItemClass("OID_READER");
+
+        // the tuples of the indirection table, with the element in the second column
+        assertEquals("OID_BOOK", RelationPrefetcher.ownerColumn(repository, readers));
+        assertEquals("SELECT OID_BOOK,OID_READER FROM `BOOK_READERS` WHERE OID_BOOK IN (?,?)",
+                RelationPrefetcher.selectElementsSql(repository, readers, 2));
+    }
+
+}
@@ -0,0 +1,47 @@
+package pt.ist.fenixframework.backend.jvstmojb.pstm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks when a new transaction may start from the most recent version known locally, instead of reading the changes committed
+ * by other servers first.
+ */
+@RunWith(JUnit4.class)
+public class TransactionChangeLogsTest {
+
+    // a single test, because the time of the last update only moves forward
+    @Test
+    public void staleStart() throws InterruptedException {
+        long maxStaleness = 200;
+        TransactionChangeLogs.setMaxStaleness(maxStaleness);
+
+        // no update yet
+        assertTrue(TransactionChangeLogs.mustUpdateOnTxStart());
+
+        // an update that started too long ago
+        TransactionChangeLogs.updatedAt(System.currentTimeMillis() - 2 * maxStaleness);
+        assertTrue(TransactionChangeLogs.mustUpdateOnTxStart());
+
+        TransactionChangeLogs.updatedAt(System.currentTimeMillis());
+        assertFalse(TransactionChangeLogs.mustUpdateOnTxStart());
+
+        // an update that finishes after a more recent one does not make the known version older
+        TransactionChangeLogs.updatedAt(System.currentTimeMillis() - 2 * maxStaleness);
+        assertFalse(TransactionChangeLogs.mustUpdateOnTxStart());
+
+        Thread.sleep(maxStaleness + 50);
+        assertTrue(TransactionChangeLogs.mustUpdateOnTxStart());
+
+        // with strictTransactionFreshness, every transaction updates when it starts
+        TransactionChangeLogs.updatedAt(System.currentTimeMillis());
+        assertFalse(TransactionChangeLogs.mustUpdateOnTxStart());
+        TransactionChangeLogs.setMaxStaleness(-1);
+        assertTrue(TransactionChangeLogs.mustUpdateOnTxStart());
+    }
+
+}
@@ -15,6 +15,11 @@ public class MemCodeGenerator extends IndexesCodeGenerator {
         return MemDomainObject.class.getName();
     }
 
+    @Override
+    protected boolean hasLongOids() {
+        return true;
+    }
+
     @Override
     protected String getBackEndName() {
         return MemBackEnd.BACKEND_NAME;
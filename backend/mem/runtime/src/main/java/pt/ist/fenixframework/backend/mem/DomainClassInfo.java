@@ -1,8 +1,7 @@
 package pt.ist.fenixframework.backend.mem;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -12,10 +11,15 @@ import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.dml.DomainClass;
 import pt.ist.fenixframework.dml.DomainModel;
 
+/**
+ * The information about each domain class, namely the class id that goes into the OIDs of its instances. The infos are indexed
+ * by class id in an array, and are found by Java class through a {@link ClassValue}. Each info loads its Java class only when it
+ * is first needed, so that the initialization does not load every domain class.
+ */
 public class DomainClassInfo {
 
     private static final Logger logger = LoggerFactory.getLogger(DomainClassInfo.class);
-    private volatile static Map<Class, DomainClassInfo> classInfoMap;
+    private volatile static ClassValue<DomainClassInfo> classInfoByClass;
     private volatile static DomainClassInfo[] classInfoById;
     private volatile static long serverOidBase;
 
@@ -23,30 +27,29 @@ public class DomainClassInfo {
         serverOidBase = (long) serverId << 48;  // the server id provides de 16 most significant bits of the OID
 
         int maxId = 0;
-        Map<Class, DomainClassInfo> map = new IdentityHashMap<Class, DomainClassInfo>();
+        final Map<String, DomainClassInfo> map = new HashMap<String, DomainClassInfo>();
         ArrayList<DomainClassInfo> array = new ArrayList<DomainClassInfo>();
 
         // special case: create record for DomainRoot (must get class id = 0)
-        addNewInfo(map, array, new DomainClassInfo(DomainRoot.class, 0));
+        addNewInfo(map, array, new DomainClassInfo(DomainRoot.class.getName(), 0));
 
-        // create all other records, skipping DomainRoot of course
+        // create all other records, skipping DomainRoot of course.  The classes are compared by name, so that they are not
+        // loaded here.
         for (DomainClass domClass : model.getDomainClasses()) {
-            Class javaClass;
-            try {
-                javaClass = Class.forName(domClass.getFullName());
-            } catch (ClassNotFoundException e) {
-                throw new ExceptionInInitializerError(e);
-            }
-
-            if (javaClass != DomainRoot.class && !map.containsKey(javaClass)) {
-                DomainClassInfo classInfo = new DomainClassInfo(javaClass, ++maxId);
+            String className = domClass.getFullName();
+            if (!map.containsKey(className)) {
+                DomainClassInfo classInfo = new DomainClassInfo(className, ++maxId);
                 addNewInfo(map, array, classInfo);
-
             }
         }
 
         // finish the initialization by assigning to the static variables
-        classInfoMap = Collections.unmodifiableMap(map);
+        classInfoByClass = new ClassValue<DomainClassInfo>() {
+            @Override
+            protected DomainClassInfo computeValue(Class<?> type) {
+                return map.get(type.getName());
+            }
+        };
         classInfoById = new DomainClassInfo[maxId + 1];
         array.toArray(classInfoById);
     }
@@ -61,14 +64,12 @@ public class DomainClassInfo {
     //     }
     // }
 
-    private static void addNewInfo(Map<Class, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
+    private static void addNewInfo(Map<String, DomainClassInfo> map, ArrayList<DomainClassInfo> array, DomainClassInfo info) {
         if (logger.isDebugEnabled()) {
-            logger.debug("Registering new domain class '" + info.domainClass.getName() + "' with id " + info.classId);
+            logger.debug("Registering new domain class '" + info.domainClassName + "' with id " + info.classId);
         }
 
-        if (info.domainClass != null) {
-            map.put(info.domainClass, info);
-        }
+        map.put(info.domainClassName, info);
 
         int index = info.classId;
         int size = array.size();
@@ -85,7 +86,7 @@ public class DomainClassInfo {
     }
 
     public static int mapClassToId(Class objClass) {
-        DomainClassInfo domainClassInfo = classInfoMap.get(objClass);
+        DomainClassInfo domainClassInfo = classInfoByClass.get(objClass);
         if (domainClassInfo == null) {
             throw new RuntimeException("Domain class not registered: " + objClass.getCanonicalName());
         }
@@ -96,7 +97,7 @@ public class DomainClassInfo {
         if ((cid < 0) || (cid >= classInfoById.length)) {
             return null;
         } else {
-            return classInfoById[cid].domainClass;
+            return classInfoById[cid].getDomainClass();
         }
     }
 
@@ -116,7 +117,7 @@ public class DomainClassInfo {
 
     public static long getNextOidFor(Class objClass) {
         int nextKey;
-        DomainClassInfo info = classInfoMap.get(objClass);
+        DomainClassInfo info = classInfoByClass.get(objClass);
 
         synchronized (info) {
             int lastKey = info.getLastKey();
@@ -153,16 +154,34 @@ public class DomainClassInfo {
 
     // the non-static part starts here
 
-    public final transient Class domainClass;
+    public final String domainClassName;
     public final int classId;
+    // loaded on first use (see getDomainClass())
+    private transient volatile Class domainClass;
     /** The maximum object key used for objects of this class in this server */
     private transient int lastKey = 0;
 
-    public DomainClassInfo(Class domainClass, int classId) {
-        this.domainClass = domainClass;
+    public DomainClassInfo(String domainClassName, int classId) {
+        this.domainClassName = domainClassName;
         this.classId = classId;
     }
 
+    /** Returns the Java class of this domain class, loading it if needed */
+    public Class getDomainClass() {
+        Class domainClass = this.domainClass;
+        if (domainClass == null) {
+            // concurrent threads may load the class at the same time, but they all get the same class
+            try {
+                domainClass = Class.forName(this.domainClassName);
+            } catch (ClassNotFoundException e) {
+                // every class of the domain model must exist
+                throw new Error(e);
+            }
+            this.domainClass = domainClass;
+        }
+        return domainClass;
+    }
+
     protected int getLastKey() {
         return this.lastKey;
     }
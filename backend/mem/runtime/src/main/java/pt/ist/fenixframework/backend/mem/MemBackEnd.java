@@ -1,5 +1,8 @@
 package pt.ist.fenixframework.backend.mem;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,6 +10,7 @@ import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.TransactionManager;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.core.SharedIdentityMap;
 
 public class MemBackEnd implements BackEnd {
@@ -44,6 +48,16 @@ public class MemBackEnd implements BackEnd {
         return fromOid(Long.parseLong(externalId));
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return BackEnds.getDomainObjects(this, externalIds);
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        BackEnds.prefetchNothing(objects, rolePaths);
+    }
+
     @Override
     public TransactionManager getTransactionManager() {
         return this.transactionManager;
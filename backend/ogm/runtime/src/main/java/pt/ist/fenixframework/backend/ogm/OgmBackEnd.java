@@ -1,11 +1,15 @@
 package pt.ist.fenixframework.backend.ogm;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.backend.BackEnd;
+import pt.ist.fenixframework.backend.BackEnds;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 
 public class OgmBackEnd implements BackEnd {
@@ -45,6 +49,16 @@ public class OgmBackEnd implements BackEnd {
         return fromOid(new OgmOID(externalId));
     }
 
+    @Override
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return BackEnds.getDomainObjects(this, externalIds);
+    }
+
+    @Override
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        BackEnds.prefetchNothing(objects, rolePaths);
+    }
+
     @Override
     public OgmTransactionManager getTransactionManager() {
         return this.transactionManager;
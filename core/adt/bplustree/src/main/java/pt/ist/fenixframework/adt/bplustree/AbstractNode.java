@@ -93,6 +93,12 @@ public abstract class AbstractNode<T extends Serializable> extends AbstractNode_
 
     abstract Iterator<? extends Comparable> keysIterator();
 
+    /** Returns the leaf node where the given key is (or would be) stored */
+    abstract LeafNode findLeaf(Comparable key);
+
+    /** Returns the leftmost leaf node under this node */
+    abstract LeafNode firstLeaf();
+
     /*
      * We need to ensure that no DomainObjects escape in the serialization.  This would be a problem
      * if 'someone' (e.g. Infinispan in clustered mode) needed to internalize a D.O. (hidden in a
@@ -100,20 +106,45 @@ public abstract class AbstractNode<T extends Serializable> extends AbstractNode_
      * we convert the TreeMap to/from a byte[] every time it is externalized/internalize by the FF.
      * We wrap it in a Serializable class (TreeMapExternalization) ,because some backends (e.g. OGM)
      * don't deal well with byte[] yet.
+     *
+     * The maps are now written in the binary form of NodeExternalization.  The nodes written as a
+     * TreeMapExternalization or a LeafEntriesExternalization are still read, and are converted when
+     * they are next written.
      */
 
     public static Serializable /*byte[]*/externalizeTreeMap(TreeMap treeMap) {
-        // return Externalization.externalizeObject(new TreeMapExternalization(treeMap));
-        return new TreeMapExternalization(treeMap);
-        // return treeMap;
+        return NodeExternalization.fromMap(treeMap, BPlusTree.LAST_KEY);
     }
 
     public static TreeMap internalizeTreeMap(Serializable/*byte[]*/externalizedTreeMap) {
-        // TreeMapExternalization treeMapExternalization = Externalization.internalizeObject(externalizedTreeMap);
-        return ((TreeMapExternalization) externalizedTreeMap).toTreeMap();
-        // return (TreeMap)externalizedTreeMap;
+        if (externalizedTreeMap instanceof TreeMapExternalization) {
+            return ((TreeMapExternalization) externalizedTreeMap).toTreeMap();
+        }
+        NodeExternalization.Entries entries = ((NodeExternalization) externalizedTreeMap).readEntries(BPlusTree.LAST_KEY);
+        TreeMap treeMap = new TreeMap(BPlusTree.COMPARATOR_SUPPORTING_LAST_KEY);
+        for (int i = 0; i < entries.keys.length; i++) {
+            treeMap.put(entries.keys[i], entries.values[i]);
+        }
+        return treeMap;
+    }
+
+    public static Serializable externalizeLeafEntries(ImmutableTreeMap leafEntries) {
+        return NodeExternalization.fromMap(leafEntries, null);
+    }
+
+    public static ImmutableTreeMap internalizeLeafEntries(Serializable externalizedLeafEntries) {
+        if (externalizedLeafEntries instanceof TreeMapExternalization) {
+            // leaf nodes written before their entries became an ImmutableTreeMap
+            return ImmutableTreeMap.fromMap(((TreeMapExternalization) externalizedLeafEntries).toTreeMap());
+        } else if (externalizedLeafEntries instanceof LeafEntriesExternalization) {
+            return ((LeafEntriesExternalization) externalizedLeafEntries).toLeafEntries();
+        }
+        // the entries were written in key order
+        NodeExternalization.Entries entries = ((NodeExternalization) externalizedLeafEntries).readEntries(null);
+        return ImmutableTreeMap.fromSortedArrays(entries.keys, entries.values, entries.keys.length);
     }
 
+    // only read, for nodes written in the previous forms
     private static class TreeMapExternalization implements Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -127,4 +158,18 @@ public abstract class AbstractNode<T extends Serializable> extends AbstractNode_
             return (TreeMap) Externalization.internalizeSerializable(serializedTreeMap);
         }
     }
+
+    private static class LeafEntriesExternalization implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] serializedLeafEntries;
+
+        LeafEntriesExternalization(ImmutableTreeMap<Comparable, ? extends Serializable> leafEntries) {
+            this.serializedLeafEntries = Externalization.externalizeSerializable(leafEntries);
+        }
+
+        ImmutableTreeMap toLeafEntries() {
+            return (ImmutableTreeMap) Externalization.internalizeSerializable(serializedLeafEntries);
+        }
+    }
 }
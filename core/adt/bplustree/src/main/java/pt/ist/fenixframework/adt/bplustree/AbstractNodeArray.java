@@ -1,8 +1,10 @@
 package pt.ist.fenixframework.adt.bplustree;
 
 import java.io.Serializable;
+import java.lang.reflect.Array;
 
 import pt.ist.fenixframework.core.Externalization;
+import pt.ist.fenixframework.core.ExternalizationException;
 
 /** The keys comparison function should be consistent with equals. */
 public abstract class AbstractNodeArray<T extends Serializable> extends AbstractNodeArray_Base implements Iterable {
@@ -72,14 +74,58 @@ public abstract class AbstractNodeArray<T extends Serializable> extends Abstract
     // the number of _elements_ in this node (not counting sub-nodes)
     abstract int shallowSize();
 
+    /** Returns the leaf node where the given key is (or would be) stored */
+    abstract LeafNodeArray findLeaf(Comparable key);
+
+    /** Returns the leftmost leaf node under this node */
+    abstract LeafNodeArray firstLeaf();
+
+    /*
+     * The arrays are written in the binary form of NodeExternalization.  The nodes written as an ArrayExternalization (the
+     * Java serialization of the DoubleArray) are still read, and are converted when they are next written.
+     */
+
     public static Serializable externalizeArrays(DoubleArray array) {
-        return new ArrayExternalization(array);
+        return new NodeExternalization(array.keys, array.values, BPlusTreeArray.LAST_KEY, array.valuesClazz);
     }
 
     public static DoubleArray internalizeArrays(Serializable externalizedArray) {
-        return ((ArrayExternalization) externalizedArray).toArray();
+        if (externalizedArray instanceof ArrayExternalization) {
+            return ((ArrayExternalization) externalizedArray).toArray();
+        }
+        NodeExternalization.Entries entries = ((NodeExternalization) externalizedArray).readEntries(BPlusTreeArray.LAST_KEY);
+        Class valuesClazz =
+                entries.valuesClassName == null ? guessValuesClass(entries.values) : loadValuesClass(entries.valuesClassName);
+        Serializable[] values = (Serializable[]) Array.newInstance(valuesClazz, entries.values.length);
+        System.arraycopy(entries.values, 0, values, 0, values.length);
+        return new DoubleArray(valuesClazz, entries.keys, values);
+    }
+
+    // The values may be of application classes, which this module's class loader may not see, so they are loaded as the
+    // framework loads the domain classes: through the context class loader.
+    private static Class loadValuesClass(String className) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = AbstractNodeArray.class.getClassLoader();
+        }
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new ExternalizationException(e);
+        }
+    }
+
+    // for arrays written without the class of their values: the values of inner nodes are always sub-nodes
+    private static Class guessValuesClass(Object[] values) {
+        for (Object value : values) {
+            if (!(value instanceof AbstractNodeArray)) {
+                return Serializable.class;
+            }
+        }
+        return values.length == 0 ? Serializable.class : AbstractNodeArray.class;
     }
 
+    // only read, for nodes written in the previous form
     private static class ArrayExternalization implements Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,214 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+
+/**
+ * Map that keeps its entries inline, in a single slot of this object, while there are few of them, and moves them to a
+ * {@link BPlusTree} once they grow past {@link #MAX_INLINE_ELEMENTS}. When the tree shrinks below {@link #MIN_TREE_ELEMENTS}
+ * the entries are moved back inline. The thresholds are apart, so that a map whose size hovers around one of them does not
+ * keep moving its entries back and forth.
+ *
+ * This suits relations that are small for most objects, but may be very large for a few: the small ones are read and written
+ * as a single object, instead of as a tree with its root, leaves and size counters. The representation is chosen for each
+ * instance, and it is kept in the instance's slots, so it changes within the transaction like any other update.
+ *
+ * As the {@link BPlusTree}, this map does not support <code>null</code> values.
+ */
+@NoDomainMetaObjects
+public class AdaptiveBPlusTree<T extends Serializable> extends AdaptiveBPlusTree_Base implements DomainBasedMap<T> {
+
+    /** The maximum number of entries kept inline. Once there are more, they are moved to a tree. */
+    static final int MAX_INLINE_ELEMENTS = 64;
+    /** When the tree has less than this number of entries, they are moved back inline. */
+    static final int MIN_TREE_ELEMENTS = MAX_INLINE_ELEMENTS / 2;
+
+    public AdaptiveBPlusTree() {
+        super();
+        setInlineEntries(ImmutableTreeMap.<Comparable, Serializable> empty());
+    }
+
+    private ImmutableTreeMap<Comparable, Serializable> localInlineEntries() {
+        return (ImmutableTreeMap<Comparable, Serializable>) getInlineEntries();
+    }
+
+    /** Inserts the given key-value pair, overwriting any previous entry for the same key */
+    public boolean insert(Comparable key, T value) {
+        if (value == null) {
+            throw new UnsupportedOperationException("This B+Tree does not support nulls");
+        }
+        BPlusTree<T> tree = getTree();
+        if (tree != null) {
+            return tree.insert(key, value);
+        }
+
+        ImmutableTreeMap<Comparable, Serializable> inlineEntries = localInlineEntries();
+        // this check suffices because we do not allow null values
+        if (inlineEntries.get(key) == value) {
+            return false;
+        }
+        ImmutableTreeMap<Comparable, Serializable> newInlineEntries = inlineEntries.addKeyValue(key, value);
+        if (newInlineEntries.size() <= MAX_INLINE_ELEMENTS) {
+            setInlineEntries(newInlineEntries);
+        } else {
+            moveToTree(newInlineEntries);
+        }
+        return true;
+    }
+
+    /** Removes the element with the given key */
+    public boolean removeKey(Comparable key) {
+        BPlusTree<T> tree = getTree();
+        if (tree == null) {
+            ImmutableTreeMap<Comparable, Serializable> inlineEntries = localInlineEntries();
+            ImmutableTreeMap<Comparable, Serializable> newInlineEntries = inlineEntries.removeKey(key);
+            if (newInlineEntries == inlineEntries) {
+                return false;
+            }
+            setInlineEntries(newInlineEntries);
+            return true;
+        }
+
+        if (!tree.removeKey(key)) {
+            return false;
+        }
+        if (tree.size() < MIN_TREE_ELEMENTS) {
+            moveInline(tree);
+        }
+        return true;
+    }
+
+    // the tree is bulk loaded with the entries, which are already sorted, so they are not sorted again
+    private void moveToTree(ImmutableTreeMap<Comparable, Serializable> entries) {
+        int size = entries.size();
+        Comparable[] keys = new Comparable[size];
+        Serializable[] values = new Serializable[size];
+        Iterator<Map.Entry<Comparable, Serializable>> iter = entries.entrySet().iterator();
+        for (int i = 0; i < size; i++) {
+            Map.Entry<Comparable, Serializable> entry = iter.next();
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+        }
+        BPlusTree<T> tree = new BPlusTree<T>();
+        tree.putAllSorted(keys, values);
+        setTree(tree);
+        setInlineEntries(ImmutableTreeMap.<Comparable, Serializable> empty());
+    }
+
+    private void moveInline(BPlusTree<T> tree) {
+        int size = tree.size();
+        Comparable[] keys = new Comparable[size];
+        Serializable[] values = new Serializable[size];
+        Cursor<T> cursor = tree.cursor(null, true, null, true);
+        for (int i = 0; i < size; i++) {
+            values[i] = cursor.next();
+            keys[i] = cursor.getKey();
+        }
+        setInlineEntries(ImmutableTreeMap.fromSortedArrays(keys, values, size));
+        setTree(null);
+        tree.delete();
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <code>null</code> if this map
+     * contains no mapping for the key.
+     */
+    @Override
+    public T get(Comparable key) {
+        BPlusTree<T> tree = getTree();
+        return tree != null ? tree.get(key) : (T) localInlineEntries().get(key);
+    }
+
+    /** Returns <code>true</code> if this map contains a mapping for the specified key. */
+    public boolean containsKey(Comparable key) {
+        return get(key) != null;
+    }
+
+    /** Returns whether the entries are currently kept inline, rather than in a tree */
+    public boolean isInline() {
+        return getTree() == null;
+    }
+
+    @Override
+    public int size() {
+        BPlusTree<T> tree = getTree();
+        return tree != null ? tree.size() : localInlineEntries().size();
+    }
+
+    public boolean isEmpty() {
+        BPlusTree<T> tree = getTree();
+        return tree != null ? tree.isEmpty() : localInlineEntries().isEmpty();
+    }
+
+    /**
+     * Completly deletes this <code>AdaptiveBPlusTree</code>, including its tree, if it has one. Does not delete any
+     * {@link DomainObject} contained in the map.
+     */
+    public void delete() {
+        BPlusTree<T> tree = getTree();
+        if (tree != null) {
+            setTree(null);
+            tree.delete();
+        }
+        deleteDomainObject();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return cursor(null, true, null, true);
+    }
+
+    @Override
+    public Comparable floorKey(Comparable key) {
+        BPlusTree<T> tree = getTree();
+        if (tree != null) {
+            return tree.floorKey(key);
+        }
+        Map.Entry<Comparable, Serializable> entry = localInlineEntries().floorEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        BPlusTree<T> tree = getTree();
+        if (tree != null) {
+            return tree.ceilingKey(key);
+        }
+        Map.Entry<Comparable, Serializable> entry = localInlineEntries().ceilingEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+        BPlusTree<T> tree = getTree();
+        if (tree != null) {
+            return tree.cursor(fromKey, fromInclusive, toKey, toInclusive);
+        }
+        return (Cursor<T>) new LeafNode.RangeCursor(localInlineEntries(), fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public boolean remove(Comparable key) {
+        return removeKey(key);
+    }
+
+    @Override
+    public boolean contains(Comparable key) {
+        return containsKey(key);
+    }
+
+    @Override
+    public void put(Comparable key, T value) {
+        insert(key, value);
+    }
+
+    @Override
+    public boolean putIfMissing(Comparable key, T value) {
+        return insert(key, value);
+    }
+}
@@ -2,13 +2,18 @@ package pt.ist.fenixframework.adt.bplustree;
 
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.adt.SizeStripe;
 import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
 
 /**
@@ -84,6 +89,15 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
     // The maximum number of keys in a node NOT COUNTING with the special LAST_KEY. This number should be a multiple of 2.
     static final int MAX_NUMBER_OF_KEYS = 2 * LOWER_BOUND;
     static final int MAX_NUMBER_OF_ELEMENTS = MAX_NUMBER_OF_KEYS + 1;
+    // The fraction of each node that is filled by putAll(Map), leaving room for later insertions
+    public static final float DEFAULT_FILL_FACTOR = 0.75f;
+
+    private static final Comparator<Map.Entry<Comparable, ?>> ENTRY_KEY_COMPARATOR = new Comparator<Map.Entry<Comparable, ?>>() {
+        @Override
+        public int compare(Map.Entry<Comparable, ?> e1, Map.Entry<Comparable, ?> e2) {
+            return e1.getKey().compareTo(e2.getKey());
+        }
+    };
 
     static StringBuilder spaces(int level) {
         StringBuilder str = new StringBuilder();
@@ -109,7 +123,10 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
             throw new UnsupportedOperationException("This B+Tree does not support nulls");
         }
         AbstractNode rootNode = this.getRoot();
-        AbstractNode resultNode = rootNode.insert(key, value);
+        // go directly to the leaf, so that we know whether the key is new before inserting
+        LeafNode leaf = rootNode.findLeaf(key);
+        boolean newKey = !leaf.containsKey(key);
+        AbstractNode resultNode = leaf.insert(key, value);
 
         if (resultNode == null) {
             return false;
@@ -117,9 +134,146 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         if (rootNode != resultNode) {
             this.setRoot(resultNode);
         }
+        if (newKey) {
+            updateSize(1);
+        }
         return true;
     }
 
+    /**
+     * Inserts all the given key-value pairs, filling the nodes up to the {@link #DEFAULT_FILL_FACTOR}.
+     * 
+     * @see #putAll(Map, float)
+     */
+    public void putAll(Map<? extends Comparable, ? extends T> entries) {
+        putAll(entries, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * Inserts all the given key-value pairs, overwriting any previous entries for the same keys. When this tree is empty, it is
+     * built bottom-up in a single pass: the entries are sorted (unless they come from a {@link SortedMap} in their natural
+     * order) and split into leaves, and then each level of inner nodes is built on top of the previous one. No node is ever
+     * split, and each node is created with its final contents. When this tree is not empty, the entries are inserted one at a
+     * time, in key order.
+     * 
+     * @param fillFactor The fraction of the capacity of each node to fill, greater than 0 and at most 1. Regardless of this
+     *            value, nodes always get at least the minimum number of entries of a B+Tree node, so the resulting tree can be
+     *            changed like any other.
+     */
+    public void putAll(Map<? extends Comparable, ? extends T> entries, float fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("The fill factor must be in ]0, 1]: " + fillFactor);
+        }
+        Map.Entry<Comparable, T>[] sortedEntries = entries.entrySet().toArray(new Map.Entry[entries.size()]);
+        for (Map.Entry<Comparable, T> entry : sortedEntries) {
+            if (entry.getValue() == null) {
+                throw new UnsupportedOperationException("This B+Tree does not support nulls");
+            }
+        }
+        if (!(entries instanceof SortedMap && ((SortedMap) entries).comparator() == null)) {
+            Arrays.sort(sortedEntries, ENTRY_KEY_COMPARATOR);
+        }
+
+        if (sortedEntries.length == 0) {
+            return;
+        }
+        if (!isEmpty()) {
+            for (Map.Entry<Comparable, T> entry : sortedEntries) {
+                insert(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+
+        int size = sortedEntries.length;
+        Comparable[] keys = new Comparable[size];
+        Serializable[] values = new Serializable[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = sortedEntries[i].getKey();
+            values[i] = sortedEntries[i].getValue();
+        }
+        build(keys, values, fillFactor);
+        updateSize(size);
+    }
+
+    // Builds this tree, which must be empty, with the given entries, whose keys are sorted and distinct and whose values are not
+    // null, filling the nodes up to the DEFAULT_FILL_FACTOR.  This is putAll without the sort, for callers whose entries are
+    // already sorted.
+    void putAllSorted(Comparable[] keys, Serializable[] values) {
+        if (keys.length > 0) {
+            build(keys, values, DEFAULT_FILL_FACTOR);
+            updateSize(keys.length);
+        }
+    }
+
+    // Replaces the empty root with a tree holding the given entries, whose keys are sorted and distinct.  The empty root is
+    // reused as the first leaf.
+    private void build(Comparable[] keys, Serializable[] values, float fillFactor) {
+        LeafNode firstLeaf = (LeafNode) this.getRoot();
+
+        // the leaves
+        int numberOfNodes = numberOfNodes(keys.length, LOWER_BOUND, fillFactor);
+        AbstractNode[] level = new AbstractNode[numberOfNodes];
+        Comparable[] smallestKeys = new Comparable[numberOfNodes];
+        LeafNode previousLeaf = null;
+        for (int i = 0; i < numberOfNodes; i++) {
+            int from = nodeStart(i, keys.length, numberOfNodes);
+            int to = nodeStart(i + 1, keys.length, numberOfNodes);
+            ImmutableTreeMap<Comparable, Serializable> leafEntries = ImmutableTreeMap.fromSortedArrays(keys, values, from, to);
+            LeafNode leaf;
+            if (previousLeaf == null) {
+                leaf = firstLeaf;
+                leaf.setEntries(leafEntries);
+            } else {
+                leaf = firstLeaf.createNodeWithEntries(leafEntries);
+                previousLeaf.setNext(leaf);
+            }
+            level[i] = leaf;
+            smallestKeys[i] = keys[from];
+            previousLeaf = leaf;
+        }
+
+        // the inner nodes, one level at a time, until there is a single root.  Each sub-node is mapped to the smallest key of
+        // the sub-node after it, except for the last one, which is mapped to the LAST_KEY.
+        while (level.length > 1) {
+            numberOfNodes = numberOfNodes(level.length, LOWER_BOUND_WITH_LAST_KEY, fillFactor);
+            AbstractNode[] upperLevel = new AbstractNode[numberOfNodes];
+            Comparable[] upperSmallestKeys = new Comparable[numberOfNodes];
+            for (int i = 0; i < numberOfNodes; i++) {
+                int from = nodeStart(i, level.length, numberOfNodes);
+                int to = nodeStart(i + 1, level.length, numberOfNodes);
+                TreeMap<Comparable, AbstractNode> subNodes =
+                        new TreeMap<Comparable, AbstractNode>(COMPARATOR_SUPPORTING_LAST_KEY);
+                for (int j = from; j < to - 1; j++) {
+                    subNodes.put(smallestKeys[j + 1], level[j]);
+                }
+                subNodes.put(LAST_KEY, level[to - 1]);
+                upperLevel[i] = firstLeaf.createInnerNode(subNodes);
+                upperSmallestKeys[i] = smallestKeys[from];
+            }
+            level = upperLevel;
+            smallestKeys = upperSmallestKeys;
+        }
+
+        if (level[0] != firstLeaf) {
+            this.setRoot(level[0]);
+        }
+    }
+
+    // The number of nodes over which to spread the given number of elements, so that each node gets close to the fill factor,
+    // but never less than the minimum nor more than the maximum number of elements.  With less than the minimum number of
+    // elements there is a single node, which will be the root.
+    private static int numberOfNodes(int elements, int minimum, float fillFactor) {
+        int target = Math.max(minimum, Math.round(fillFactor * MAX_NUMBER_OF_ELEMENTS));
+        int nodes = Math.max(1, Math.round((float) elements / target));
+        nodes = Math.max(nodes, (elements + MAX_NUMBER_OF_ELEMENTS - 1) / MAX_NUMBER_OF_ELEMENTS);
+        return Math.min(nodes, Math.max(1, elements / minimum));
+    }
+
+    // the position of the first element of the index-th node, when spreading the elements evenly over the nodes
+    private static int nodeStart(int index, int elements, int nodes) {
+        return (int) ((long) index * elements / nodes);
+    }
+
     /** Removes the element with the given key */
     public boolean removeKey(Comparable key) {
         AbstractNode rootNode = this.getRoot();
@@ -131,6 +285,7 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         if (rootNode != resultNode) {
             this.setRoot(resultNode);
         }
+        updateSize(-1);
         return true;
     }
 
@@ -161,6 +316,7 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         if (rootNode != resultNode) {
             this.setRoot(resultNode);
         }
+        updateSize(-1);
 
         return value;
     }
@@ -170,14 +326,33 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         return this.getRoot().containsKey(key);
     }
 
-    /** Returns the number of key-value mappings in this map */
+    /**
+     * Returns the number of key-value mappings in this map. This reads the size counters instead of going through the tree,
+     * except for trees that were created before the size was maintained and were not changed since.
+     */
     @Override
     public int size() {
-        return this.getRoot().size();
+        SizeStripe sizeStripes = this.getSizeStripes();
+        return sizeStripes == null ? this.getRoot().size() : SizeStripe.sum(sizeStripes);
+    }
+
+    // Must be invoked after the change to the tree.  When there are no counters yet (either because this tree is new, or
+    // because it was created before the size was maintained) the first counter starts with the current number of elements.
+    private void updateSize(int delta) {
+        SizeStripe sizeStripes = this.getSizeStripes();
+        if (sizeStripes == null) {
+            this.setSizeStripes(new SizeStripe(SizeStripe.currentIndex(), this.getRoot().size(), null));
+        } else {
+            SizeStripe newSizeStripes = SizeStripe.add(sizeStripes, delta);
+            if (newSizeStripes != sizeStripes) {
+                this.setSizeStripes(newSizeStripes);
+            }
+        }
     }
 
+    // only the root needs to be read: it can only be empty when it is the single leaf of the tree
     public boolean isEmpty() {
-        return size() == 0;
+        return this.getRoot().shallowSize() == 0;
     }
 
     /**
@@ -189,6 +364,9 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         AbstractNode<T> rootNode = getRoot();
         setRoot(null);
         rootNode.delete();
+        SizeStripe sizeStripes = getSizeStripes();
+        setSizeStripes(null);
+        SizeStripe.deleteAll(sizeStripes);
         deleteDomainObject();
     }
 
@@ -227,6 +405,58 @@ public class BPlusTree<T extends Serializable> extends BPlusTree_Base implements
         return keys;
     }
 
+    /**
+     * Returns the greatest key less than or equal to the given key, or <code>null</code> if there is no such key. Only the
+     * path to the key's leaf (and possibly its previous leaf) is read.
+     */
+    @Override
+    public Comparable floorKey(Comparable key) {
+        return this.getRoot().findLeaf(key).floorKey(key);
+    }
+
+    /**
+     * Returns the least key greater than or equal to the given key, or <code>null</code> if there is no such key. Only the
+     * path to the key's leaf (and possibly its next leaf) is read.
+     */
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        return this.getRoot().findLeaf(key).ceilingKey(key);
+    }
+
+    /**
+     * Returns a cursor over the values whose keys are in the given range, in ascending key order. The cursor descends
+     * directly to the leaf of <code>fromKey</code> and then follows the leaves' linked list, reading the next leaf only when
+     * the current one does not yet reach <code>toKey</code>. A <code>null</code> bound leaves that side of the range open.
+     */
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+        AbstractNode rootNode = this.getRoot();
+        LeafNode leaf = fromKey == null ? rootNode.firstLeaf() : rootNode.findLeaf(fromKey);
+        return (Cursor<T>) new LeafNode.RangeCursor(leaf, fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    /**
+     * Returns the values whose keys are greater than or equal to <code>fromKey</code> and strictly less than <code>toKey</code>.
+     */
+    public Iterable<T> subMap(final Comparable fromKey, final Comparable toKey) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return cursor(fromKey, true, toKey, false);
+            }
+        };
+    }
+
+    /** Returns the values whose keys are strictly less than <code>toKey</code>. */
+    public Iterable<T> headMap(Comparable toKey) {
+        return subMap(null, toKey);
+    }
+
+    /** Returns the values whose keys are greater than or equal to <code>fromKey</code>. */
+    public Iterable<T> tailMap(Comparable fromKey) {
+        return subMap(fromKey, null);
+    }
+
     @Override
     public boolean remove(Comparable key) {
         return removeKey(key);
@@ -197,6 +197,29 @@ public class BPlusTreeArray<T extends Serializable> extends BPlusTreeArray_Base
         return true;
     }
 
+    /** Returns the greatest key less than or equal to the given key, or <code>null</code> if there is no such key. */
+    @Override
+    public Comparable floorKey(Comparable key) {
+        return this.getRoot().findLeaf(key).floorKey(key);
+    }
+
+    /** Returns the least key greater than or equal to the given key, or <code>null</code> if there is no such key. */
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        return this.getRoot().findLeaf(key).ceilingKey(key);
+    }
+
+    /**
+     * Returns a cursor over the values whose keys are in the given range, in ascending key order. The start position is found
+     * with binary searches along the path to the leaf of <code>fromKey</code>.
+     */
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+        AbstractNodeArray rootNode = this.getRoot();
+        LeafNodeArray leaf = fromKey == null ? rootNode.firstLeaf() : rootNode.findLeaf(fromKey);
+        return (Cursor<T>) new LeafNodeArray.RangeCursor(leaf, fromKey, fromInclusive, toKey, toInclusive);
+    }
+
     @Override
     public boolean remove(Comparable key) {
         return removeKey(key);
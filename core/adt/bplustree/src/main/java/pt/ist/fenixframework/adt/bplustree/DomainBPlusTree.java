@@ -1,6 +1,7 @@
 package pt.ist.fenixframework.adt.bplustree;
 
 import java.io.Serializable;
+import java.util.Map;
 
 import pt.ist.fenixframework.NoDomainMetaObjects;
 import pt.ist.fenixframework.core.AbstractDomainObject;
@@ -56,4 +57,20 @@ public class DomainBPlusTree<T extends AbstractDomainObject> extends DomainBPlus
         throw new UnsupportedOperationException("DomainBPlusTree can only store AbstractDomainObjects indexed using their OID.");
     }
 
+    /**
+     * Same restriction as {@code insert(Comparable, Serializable)}: every value must be an {@link AbstractDomainObject} mapped
+     * by its OID.
+     */
+    @Override
+    public void putAll(Map entries, float fillFactor) {
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) entries).entrySet()) {
+            Object value = entry.getValue();
+            if (!(value instanceof AbstractDomainObject) || !((AbstractDomainObject) value).getOid().equals(entry.getKey())) {
+                throw new UnsupportedOperationException(
+                        "DomainBPlusTree can only store AbstractDomainObjects indexed using their OID.");
+            }
+        }
+        super.putAll(entries, fillFactor);
+    }
+
 }
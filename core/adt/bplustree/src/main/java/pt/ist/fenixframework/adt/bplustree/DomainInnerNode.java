@@ -34,7 +34,7 @@ public class DomainInnerNode extends DomainInnerNode_Base {
         init(leftNode, rightNode, splitKey);
     }
 
-    private DomainInnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
+    DomainInnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
         init(subNodes);
     }
 
@@ -16,8 +16,9 @@ import com.google.gson.JsonPrimitive;
 /**
  * {@link LeafNode} specialized to hold a mapping of [Oid, DomainObject]
  * 
- * The serialization of {@link DomainLeafNode} is done using a JSON array,
- * containing the External Id of the stored objects.
+ * The serialization of {@link DomainLeafNode} is done using the OIDs of the
+ * stored objects, delta-encoded in a compact string, when the OIDs are
+ * longs. Otherwise, it is a JSON array containing their External Ids.
  * 
  * @author João Carvalho (joao.pedro.carvalho@ist.utl.pt)
  * 
@@ -39,7 +40,7 @@ public class DomainLeafNode extends DomainLeafNode_Base {
      * 
      * @see LeafNode
      */
-    private DomainLeafNode(TreeMap<Comparable, Serializable> entries) {
+    private DomainLeafNode(ImmutableTreeMap<Comparable, Serializable> entries) {
         setEntries(entries);
     }
 
@@ -50,13 +51,13 @@ public class DomainLeafNode extends DomainLeafNode_Base {
      */
 
     @Override
-    public TreeMap<Comparable, ? extends Serializable> getEntries() {
+    public ImmutableTreeMap<Comparable, ? extends Serializable> getEntries() {
         return getDomainEntries();
     }
 
     @Override
-    public void setEntries(TreeMap<Comparable, ? extends Serializable> entries) {
-        setDomainEntries((TreeMap<Comparable, AbstractDomainObject>) entries);
+    public void setEntries(ImmutableTreeMap<Comparable, ? extends Serializable> entries) {
+        setDomainEntries((ImmutableTreeMap<Comparable, AbstractDomainObject>) entries);
     }
 
     /*
@@ -67,7 +68,7 @@ public class DomainLeafNode extends DomainLeafNode_Base {
      */
 
     @Override
-    protected LeafNode createNodeWithEntries(TreeMap<Comparable, Serializable> entries) {
+    protected LeafNode createNodeWithEntries(ImmutableTreeMap<Comparable, Serializable> entries) {
         return new DomainLeafNode(entries);
     }
 
@@ -76,6 +77,11 @@ public class DomainLeafNode extends DomainLeafNode_Base {
         return new DomainInnerNode(leftNode, rightNode, splitKey);
     }
 
+    @Override
+    protected InnerNode createInnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
+        return new DomainInnerNode(subNodes);
+    }
+
     /*
      * Serialization code
      */
@@ -87,15 +93,83 @@ public class DomainLeafNode extends DomainLeafNode_Base {
     private static final JsonParser parser = new JsonParser();
 
     /**
-     * Serializes the given map to a JSON array containing the ExternalId of
-     * the values.
+     * Prefix of the maps serialized as OIDs. It is never the first character
+     * of the JSON arrays.
+     */
+    private static final char OID_FORMAT_PREFIX = '#';
+
+    /**
+     * The 64 characters that encode 6 bits each: 1 bit telling whether more
+     * characters follow, and 5 bits of the number.
+     */
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-_";
+    private static final byte[] DIGIT_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < DIGITS.length(); i++) {
+            DIGIT_VALUES[DIGITS.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Resolves the values of the maps serialized as OIDs, only when each of
+     * them is read. The key of each entry is the object's OID.
+     */
+    private static final ImmutableTreeMap.LazyValue<Comparable, AbstractDomainObject> DOMAIN_OBJECT_BY_OID =
+            new ImmutableTreeMap.LazyValue<Comparable, AbstractDomainObject>() {
+                @Override
+                public AbstractDomainObject resolve(Comparable oid) {
+                    return FenixFramework.getConfig().getBackEnd().fromOid(oid);
+                }
+            };
+
+    /**
+     * Serializes the given map. When all the keys are longs, they are
+     * written in ascending order: the first as is, and each of the others
+     * as its difference to the previous one. The values are not read,
+     * because their OIDs are the keys. Otherwise, it is a JSON array
+     * containing the ExternalId of the values.
      * 
      * @param map
      *            Map to serialize. Must be in the form [Oid, DomainObject]
      * @return
-     *         A JSON array containing the External Ids
+     *         The encoded OIDs or a JSON array containing the External Ids
      */
-    public static String externalizeDomainObjectMap(TreeMap map) {
+    public static String externalizeDomainObjectMap(ImmutableTreeMap map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof Long)) {
+                return externalizeAsJson(map);
+            }
+        }
+
+        StringBuilder encoded = new StringBuilder(1 + map.size() * 4);
+        encoded.append(OID_FORMAT_PREFIX);
+        long previous = 0;
+        boolean first = true;
+        for (Object key : map.keySet()) {
+            long oid = ((Long) key).longValue();
+            if (first) {
+                // zig-zag, so that a negative OID does not take the maximum length
+                appendNumber(encoded, (oid << 1) ^ (oid >> 63));
+                first = false;
+            } else {
+                appendNumber(encoded, oid - previous);
+            }
+            previous = oid;
+        }
+        return encoded.toString();
+    }
+
+    // appends the number, 5 bits at a time, starting with the least significant ones
+    private static void appendNumber(StringBuilder encoded, long number) {
+        while ((number & ~0x1FL) != 0) {
+            encoded.append(DIGITS.charAt(0x20 | (int) (number & 0x1F)));
+            number >>>= 5;
+        }
+        encoded.append(DIGITS.charAt((int) number));
+    }
+
+    private static String externalizeAsJson(ImmutableTreeMap map) {
         JsonArray array = new JsonArray();
         for (Object obj : map.values()) {
             DomainObject domainObject = (DomainObject) obj;
@@ -105,20 +179,58 @@ public class DomainLeafNode extends DomainLeafNode_Base {
     }
 
     /**
-     * Internalizes the given JSON array.
+     * Internalizes the given map. When it was serialized as OIDs, the domain
+     * objects are only looked up when their entries are read.
      * 
      * @param externalizedMap
-     *            A JSON array returned by {@code externalizeDomainObjectMap}
+     *            A string returned by {@code externalizeDomainObjectMap}
      * @return
-     *         A TreeMap containing pairs [Oid, DomainObject]
+     *         An ImmutableTreeMap containing pairs [Oid, DomainObject]
      */
-    public static TreeMap internalizeDomainObjectMap(String externalizedMap) {
-        TreeMap map = new TreeMap();
+    public static ImmutableTreeMap internalizeDomainObjectMap(String externalizedMap) {
+        if (externalizedMap.isEmpty() || externalizedMap.charAt(0) != OID_FORMAT_PREFIX) {
+            return internalizeJson(externalizedMap);
+        }
+
+        int length = 0;
+        for (int i = 1; i < externalizedMap.length(); i++) {
+            if ((DIGIT_VALUES[externalizedMap.charAt(i)] & 0x20) == 0) {
+                length++;
+            }
+        }
+        Comparable[] keys = new Comparable[length];
+        Object[] values = new Object[length];
+        int position = 1;
+        long oid = 0;
+        for (int i = 0; i < length; i++) {
+            long number = 0;
+            int shift = 0;
+            int digit;
+            do {
+                digit = DIGIT_VALUES[externalizedMap.charAt(position++)];
+                number |= (long) (digit & 0x1F) << shift;
+                shift += 5;
+            } while ((digit & 0x20) != 0);
+            oid = i == 0 ? (number >>> 1) ^ -(number & 1) : oid + number;
+            keys[i] = oid;
+            values[i] = DOMAIN_OBJECT_BY_OID;
+        }
+        return ImmutableTreeMap.fromSortedArrays(keys, values, length);
+    }
+
+    // the form used for non-long OIDs, and by the nodes written before the OID form
+    private static ImmutableTreeMap internalizeJson(String externalizedMap) {
         JsonArray array = parser.parse(externalizedMap).getAsJsonArray();
+        Comparable[] keys = new Comparable[array.size()];
+        AbstractDomainObject[] values = new AbstractDomainObject[array.size()];
+        int i = 0;
         for (JsonElement element : array) {
             AbstractDomainObject ado = FenixFramework.getDomainObject(element.getAsString());
-            map.put(ado.getOid(), ado);
+            keys[i] = ado.getOid();
+            values[i] = ado;
+            i++;
         }
-        return map;
+        // the entries were written in ascending order of their keys
+        return ImmutableTreeMap.fromSortedArrays(keys, values, i);
     }
 }
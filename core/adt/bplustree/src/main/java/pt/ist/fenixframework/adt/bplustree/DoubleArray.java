@@ -80,6 +80,15 @@ public class DoubleArray<T extends Serializable> implements Serializable {
         }
     }
 
+    // the index of the first key greater than (or equal to, if inclusive) the given key, or length() if there is none
+    public int ceilingIndex(Comparable key, boolean inclusive) {
+        int index = Arrays.binarySearch(keys, key, BPlusTreeArray.COMPARATOR_SUPPORTING_LAST_KEY);
+        if (index >= 0) {
+            return inclusive ? index : index + 1;
+        }
+        return -(index + 1);
+    }
+
     public boolean containsKey(Comparable key) {
         return get(key) != null;
     }
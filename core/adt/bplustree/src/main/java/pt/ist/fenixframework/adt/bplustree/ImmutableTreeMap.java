@@ -0,0 +1,598 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable sorted map, used as the value type of the entries of a {@link LeafNode}.
+ *
+ * Instances are never changed after being created. Every update (e.g. {@link #addKeyValue(Comparable, Object)} or
+ * {@link #removeKey(Comparable)}) returns a new map that shares all the unchanged structure with the original one. The map is
+ * kept as a height-balanced (AVL) binary tree in which each node also records the size of its subtree, so a single-key update
+ * only copies the O(log n) nodes in the path from the root to the changed key, and positional accesses (e.g.
+ * {@link #getIndex(int)}) are also O(log n).
+ *
+ * This makes it cheap to keep one version of the map per transaction, as required by the STM: the previous version remains
+ * valid and unchanged for any transaction that already read it.
+ *
+ * Keys are compared using their natural ordering and neither keys nor values may be <code>null</code>.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public final class ImmutableTreeMap<K extends Comparable, V> extends AbstractMap<K, V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ImmutableTreeMap EMPTY = new ImmutableTreeMap(null);
+
+    /**
+     * A value that is only computed when its entry is first read. It can be stored in the map like any other value (e.g. with
+     * {@link ImmutableTreeMap#fromSortedArrays(Comparable[], Object[], int)}). The updates of the map carry it over without
+     * computing it.
+     */
+    interface LazyValue<K, V> {
+        V resolve(K key);
+    }
+
+    /** A node of the tree. Nodes are immutable and may be shared by several maps. */
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final K key;
+        // either the value or a LazyValue, which is replaced by its result when it is first read
+        volatile V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            V localValue = value;
+            if (localValue instanceof LazyValue) {
+                localValue = ((LazyValue<K, V>) localValue).resolve(key);
+                value = localValue;
+            }
+            return localValue;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("ImmutableTreeMap entries cannot be changed");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry other = (Map.Entry) o;
+            return key.equals(other.getKey()) && getValue().equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    private transient Node<K, V> root;
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    private ImmutableTreeMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    /** Returns the empty map. */
+    public static <K extends Comparable, V> ImmutableTreeMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /** Creates a map with the given entries. The keys must be sorted in ascending order and must not contain duplicates. */
+    public static <K extends Comparable, V> ImmutableTreeMap<K, V> fromSortedArrays(K[] keys, V[] values, int length) {
+        return fromSortedArrays(keys, values, 0, length);
+    }
+
+    /** Creates a map with the entries in the positions [from, to) of the given arrays, whose keys must be sorted. */
+    public static <K extends Comparable, V> ImmutableTreeMap<K, V> fromSortedArrays(K[] keys, V[] values, int from, int to) {
+        return from >= to ? (ImmutableTreeMap<K, V>) EMPTY : new ImmutableTreeMap<K, V>(build(keys, values, from, to));
+    }
+
+    /** Creates a map with the same entries of the given map. */
+    public static <K extends Comparable, V> ImmutableTreeMap<K, V> fromMap(Map<K, ? extends V> map) {
+        Comparable[] keys = new Comparable[map.size()];
+        Object[] values = new Object[map.size()];
+        int i = 0;
+        for (Map.Entry<K, ? extends V> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        sortByKeys(keys, values);
+        return fromSortedArrays((K[]) keys, (V[]) values, i);
+    }
+
+    /*
+     * Read operations
+     */
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = findNode((Comparable) key);
+        return node == null ? null : node.getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findNode((Comparable) key) != null;
+    }
+
+    public K firstKey() {
+        return firstNode().key;
+    }
+
+    public K lastKey() {
+        return lastNode().key;
+    }
+
+    public Map.Entry<K, V> firstEntry() {
+        return root == null ? null : firstNode();
+    }
+
+    public Map.Entry<K, V> lastEntry() {
+        return root == null ? null : lastNode();
+    }
+
+    /** Returns the entry with the greatest key less than or equal to the given key, or <code>null</code> if there is none. */
+    public Map.Entry<K, V> floorEntry(K key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return best;
+    }
+
+    /** Returns the entry with the least key greater than or equal to the given key, or <code>null</code> if there is none. */
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        Node<K, V> node = root;
+        Node<K, V> best = null;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                best = node;
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the entry in the given position (zero-based) of this map.
+     *
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     */
+    public Map.Entry<K, V> getIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        Node<K, V> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> localEntrySet = entrySet;
+        if (localEntrySet == null) {
+            localEntrySet = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<K, V>(root);
+                }
+
+                @Override
+                public int size() {
+                    return ImmutableTreeMap.this.size();
+                }
+            };
+            entrySet = localEntrySet;
+        }
+        return localEntrySet;
+    }
+
+    /**
+     * Returns an iterator over the entries of this map, in ascending key order, starting at the given key. The starting
+     * position is found in logarithmic time.
+     *
+     * @param fromKey The key to start at, or <code>null</code> to start at the first entry
+     * @param inclusive Whether an entry with key <code>fromKey</code> is to be returned
+     */
+    public Iterator<Map.Entry<K, V>> entryIterator(K fromKey, boolean inclusive) {
+        return new EntryIterator<K, V>(root, fromKey, inclusive);
+    }
+
+    /*
+     * Update operations.  These never change this map.  They return a new one instead.
+     */
+
+    /** Returns a map with the given mapping added, replacing any previous mapping for the same key. */
+    public ImmutableTreeMap<K, V> addKeyValue(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        return new ImmutableTreeMap<K, V>(insert(root, key, value));
+    }
+
+    /** Returns a map without the mapping for the given key, or this map if the key is not present. */
+    public ImmutableTreeMap<K, V> removeKey(K key) {
+        if (findNode(key) == null) {
+            return this;
+        }
+        return new ImmutableTreeMap<K, V>(delete(root, key));
+    }
+
+    /** Returns a map without the mapping for the smallest key. This map must not be empty. */
+    public ImmutableTreeMap<K, V> removeSmallestKeyValue() {
+        return new ImmutableTreeMap<K, V>(deleteFirst(root));
+    }
+
+    /** Returns a map without the mapping for the biggest key. This map must not be empty. */
+    public ImmutableTreeMap<K, V> removeBiggestKeyValue() {
+        return new ImmutableTreeMap<K, V>(deleteLast(root));
+    }
+
+    /** Returns a map with the entries in the positions [0, splitIndex) of this map. */
+    public ImmutableTreeMap<K, V> leftPart(int splitIndex) {
+        return slice(0, splitIndex);
+    }
+
+    /** Returns a map with the entries in the positions [splitIndex, size()) of this map. */
+    public ImmutableTreeMap<K, V> rightPart(int splitIndex) {
+        return slice(splitIndex, size());
+    }
+
+    /** Returns a map with the entries of both this and the other map. Entries of this map take precedence. */
+    public ImmutableTreeMap<K, V> mergeWith(ImmutableTreeMap<K, ? extends V> other) {
+        if (other.isEmpty()) {
+            return this;
+        } else if (this.isEmpty()) {
+            return (ImmutableTreeMap<K, V>) other;
+        }
+        int maxSize = this.size() + other.size();
+        Comparable[] keys = new Comparable[maxSize];
+        Object[] values = new Object[maxSize];
+
+        Iterator<Map.Entry<K, V>> thisIter = this.entrySet().iterator();
+        Iterator<? extends Map.Entry<K, ? extends V>> otherIter = other.entrySet().iterator();
+        Map.Entry<K, V> thisEntry = thisIter.next();
+        Map.Entry<K, ? extends V> otherEntry = otherIter.next();
+        int length = 0;
+        while (thisEntry != null || otherEntry != null) {
+            int cmp;
+            if (thisEntry == null) {
+                cmp = 1;
+            } else if (otherEntry == null) {
+                cmp = -1;
+            } else {
+                cmp = thisEntry.getKey().compareTo(otherEntry.getKey());
+            }
+
+            if (cmp <= 0) {
+                keys[length] = thisEntry.getKey();
+                values[length] = ((Node) thisEntry).value;
+                thisEntry = thisIter.hasNext() ? thisIter.next() : null;
+                if (cmp == 0) {
+                    otherEntry = otherIter.hasNext() ? otherIter.next() : null;
+                }
+            } else {
+                keys[length] = otherEntry.getKey();
+                values[length] = ((Node) otherEntry).value;
+                otherEntry = otherIter.hasNext() ? otherIter.next() : null;
+            }
+            length++;
+        }
+        return fromSortedArrays((K[]) keys, (V[]) values, length);
+    }
+
+    /*
+     * Tree algorithms
+     */
+
+    static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private Node<K, V> findNode(Comparable key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private Node<K, V> firstNode() {
+        Node<K, V> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private Node<K, V> lastNode() {
+        Node<K, V> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    // creates a node with the given contents, restoring the AVL invariant if the heights of both sides differ by two
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<K, V>(left.key, left.value, left.left, new Node<K, V>(key, value, left.right, right));
+            } else {
+                Node<K, V> pivot = left.right;
+                return new Node<K, V>(pivot.key, pivot.value, new Node<K, V>(left.key, left.value, left.left, pivot.left),
+                        new Node<K, V>(key, value, pivot.right, right));
+            }
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<K, V>(right.key, right.value, new Node<K, V>(key, value, left, right.left), right.right);
+            } else {
+                Node<K, V> pivot = right.left;
+                return new Node<K, V>(pivot.key, pivot.value, new Node<K, V>(key, value, left, pivot.left), new Node<K, V>(
+                        right.key, right.value, pivot.right, right.right));
+            }
+        }
+        return new Node<K, V>(key, value, left, right);
+    }
+
+    private static <K extends Comparable, V> Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<K, V>(key, value, null, null);
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        } else if (cmp > 0) {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        } else {
+            return new Node<K, V>(node.key, value, node.left, node.right);
+        }
+    }
+
+    // assumes that the key exists
+    private static <K extends Comparable, V> Node<K, V> delete(Node<K, V> node, K key) {
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        } else if (cmp > 0) {
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else {
+            Node<K, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            return balance(successor.key, successor.value, node.left, deleteFirst(node.right));
+        }
+    }
+
+    private static <K, V> Node<K, V> deleteFirst(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteFirst(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> deleteLast(Node<K, V> node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.key, node.value, node.left, deleteLast(node.right));
+    }
+
+    // builds a perfectly balanced tree with the entries in the positions [from, to) of the given arrays
+    private static <K, V> Node<K, V> build(K[] keys, V[] values, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<K, V>(keys[middle], values[middle], build(keys, values, from, middle),
+                build(keys, values, middle + 1, to));
+    }
+
+    private ImmutableTreeMap<K, V> slice(int from, int to) {
+        int length = to - from;
+        Comparable[] keys = new Comparable[length];
+        Object[] values = new Object[length];
+        Iterator<Map.Entry<K, V>> iter = entrySet().iterator();
+        for (int i = 0; i < from; i++) {
+            iter.next();
+        }
+        for (int i = 0; i < length; i++) {
+            Map.Entry<K, V> entry = iter.next();
+            keys[i] = entry.getKey();
+            values[i] = ((Node) entry).value; // without computing lazy values
+        }
+        return fromSortedArrays((K[]) keys, (V[]) values, length);
+    }
+
+    // insertion sort is enough: this is only used when converting from maps that are usually already sorted
+    private static void sortByKeys(Comparable[] keys, Object[] values) {
+        for (int i = 1; i < keys.length; i++) {
+            Comparable key = keys[i];
+            Object value = values[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j].compareTo(key) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    /** In-order iterator that keeps the path to the next node in an explicit stack. */
+    static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Node<K, V>[] stack;
+        private int depth = 0;
+
+        EntryIterator(Node<K, V> root) {
+            this.stack = new Node[height(root)];
+            pushLeftPath(root);
+        }
+
+        // positions the iterator in the first entry whose key is after (or at, if inclusive) fromKey
+        EntryIterator(Node<K, V> root, K fromKey, boolean inclusive) {
+            this.stack = new Node[height(root)];
+            if (fromKey == null) {
+                pushLeftPath(root);
+                return;
+            }
+            Node<K, V> node = root;
+            while (node != null) {
+                int cmp = ((Comparable) node.key).compareTo(fromKey);
+                if (cmp > 0 || (cmp == 0 && inclusive)) {
+                    stack[depth++] = node;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        private void pushLeftPath(Node<K, V> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack[--depth];
+            pushLeftPath(node.right);
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("ImmutableTreeMap cannot be changed");
+        }
+    }
+
+    /*
+     * Serialization.  Only the sorted entries are written.  The tree is rebuilt (perfectly balanced) when reading.
+     */
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (Map.Entry<K, V> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int length = in.readInt();
+        Comparable[] keys = new Comparable[length];
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = (Comparable) in.readObject();
+            values[i] = in.readObject();
+        }
+        this.root = build((K[]) keys, (V[]) values, 0, length);
+    }
+}
@@ -27,7 +27,7 @@ public class InnerNode extends InnerNode_Base {
         init(leftNode, rightNode, splitKey);
     }
 
-    private InnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
+    InnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
         init(subNodes);
     }
 
@@ -459,14 +459,25 @@ public class InnerNode extends InnerNode_Base {
         return findSubNode(key).containsKey(key);
     }
 
+    @Override
+    LeafNode findLeaf(Comparable key) {
+        return findSubNode(key).findLeaf(key);
+    }
+
+    // travels to the leftmost leaf
+    @Override
+    LeafNode firstLeaf() {
+        return this.getSubNodes().firstEntry().getValue().firstLeaf();
+    }
+
     private AbstractNode findSubNode(Comparable key) {
-        for (Map.Entry<Comparable, AbstractNode> subNode : this.getSubNodes().entrySet()) {
-            Comparable splitKey = subNode.getKey();
-            if (BPlusTree.COMPARATOR_SUPPORTING_LAST_KEY.compare(splitKey, key) > 0) { // this will eventually be true because the LAST_KEY is greater than all
-                return subNode.getValue();
-            }
+        // the sub-node is the one with the lowest split key greater than the key.  There is always one because the LAST_KEY
+        // is greater than all.  The sub-nodes map is sorted with the COMPARATOR_SUPPORTING_LAST_KEY.
+        Map.Entry<Comparable, AbstractNode> subNode = this.getSubNodes().higherEntry(key);
+        if (subNode == null) {
+            throw new RuntimeException("findSubNode() didn't find a suitable sub-node!?");
         }
-        throw new RuntimeException("findSubNode() didn't find a suitable sub-node!?");
+        return subNode.getValue();
     }
 
     @Override
@@ -383,15 +383,25 @@ public class InnerNodeArray extends InnerNodeArray_Base {
         return findSubNode(key).containsKey(key);
     }
 
+    @Override
+    LeafNodeArray findLeaf(Comparable key) {
+        return findSubNode(key).findLeaf(key);
+    }
+
+    // travels to the leftmost leaf
+    @Override
+    LeafNodeArray firstLeaf() {
+        return this.getSubNodes().firstValue().firstLeaf();
+    }
+
     private AbstractNodeArray findSubNode(Comparable key) {
         DoubleArray<AbstractNodeArray> subNodes = this.getSubNodes();
-        for (int i = 0; i < subNodes.length(); i++) {
-            Comparable splitKey = subNodes.keys[i];
-            if (BPlusTreeArray.COMPARATOR_SUPPORTING_LAST_KEY.compare(splitKey, key) > 0) { // this will eventually be true because the LAST_KEY is greater than all
-                return subNodes.values[i];
-            }
+        // binary search for the first split key greater than the key.  It always exists because the LAST_KEY is greater than all
+        int index = subNodes.ceilingIndex(key, false);
+        if (index >= subNodes.length()) {
+            throw new RuntimeException("findSubNode() didn't find a suitable sub-node!?");
         }
-        throw new RuntimeException("findSubNode() didn't find a suitable sub-node!?");
+        return subNodes.values[index];
     }
 
     @Override
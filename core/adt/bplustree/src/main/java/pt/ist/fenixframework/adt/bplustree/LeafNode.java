@@ -8,25 +8,28 @@ import java.util.NoSuchElementException;
 import java.util.TreeMap;
 
 import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
 
 @NoDomainMetaObjects
 public class LeafNode extends LeafNode_Base {
 
     public LeafNode() {
-        setEntries(new TreeMap<Comparable, Serializable>(BPlusTree.COMPARATOR_SUPPORTING_LAST_KEY));
+        setEntries(ImmutableTreeMap.<Comparable, Serializable> empty());
     }
 
-    private LeafNode(TreeMap<Comparable, Serializable> entries) {
+    private LeafNode(ImmutableTreeMap<Comparable, Serializable> entries) {
         setEntries(entries);
     }
 
-    private TreeMap<Comparable, Serializable> duplicateMap() {
-        return new TreeMap<Comparable, Serializable>(getEntries());
+    // The entries are immutable, so there is no need to duplicate them before each change: every update creates a new
+    // version of the map that shares most of its structure with the previous one.
+    private ImmutableTreeMap<Comparable, Serializable> localEntries() {
+        return (ImmutableTreeMap<Comparable, Serializable>) getEntries();
     }
 
     @Override
     public AbstractNode insert(Comparable key, Serializable value) {
-        TreeMap<Comparable, Serializable> localMap = justInsert(key, value);
+        ImmutableTreeMap<Comparable, Serializable> localMap = justInsert(key, value);
 
         if (localMap == null) {		// no insertion occurred
             return null;	// insert will return false
@@ -35,11 +38,11 @@ public class LeafNode extends LeafNode_Base {
             return getRoot();
         } else { // must split this node
             // find middle position
-            Comparable keyToSplit = findRightMiddlePosition(localMap.keySet());
+            Comparable keyToSplit = localMap.getIndex(BPlusTree.LOWER_BOUND + 1).getKey();
 
             // split node in two
-            LeafNode leftNode = createNodeWithEntries(new TreeMap<Comparable, Serializable>(localMap.headMap(keyToSplit)));
-            LeafNode rightNode = createNodeWithEntries(new TreeMap<Comparable, Serializable>(localMap.tailMap(keyToSplit)));
+            LeafNode leftNode = createNodeWithEntries(localMap.leftPart(BPlusTree.LOWER_BOUND + 1));
+            LeafNode rightNode = createNodeWithEntries(localMap.rightPart(BPlusTree.LOWER_BOUND + 1));
             fixLeafNodesListAfterSplit(leftNode, rightNode);
 
             // propagate split to parent
@@ -54,7 +57,7 @@ public class LeafNode extends LeafNode_Base {
         }
     }
 
-    protected LeafNode createNodeWithEntries(TreeMap<Comparable, Serializable> entries) {
+    protected LeafNode createNodeWithEntries(ImmutableTreeMap<Comparable, Serializable> entries) {
         return new LeafNode(entries);
     }
 
@@ -62,17 +65,12 @@ public class LeafNode extends LeafNode_Base {
         return new InnerNode(leftNode, rightNode, splitKey);
     }
 
-    private <T extends Comparable> Comparable findRightMiddlePosition(Collection<T> keys) {
-        Iterator<T> keysIterator = keys.iterator();
-
-        for (int i = 0; i < BPlusTree.LOWER_BOUND + 1; i++) {
-            keysIterator.next();
-        }
-        return keysIterator.next();
+    protected InnerNode createInnerNode(TreeMap<Comparable, AbstractNode> subNodes) {
+        return new InnerNode(subNodes);
     }
 
-    private TreeMap<Comparable, Serializable> justInsert(Comparable key, Serializable value) {
-        TreeMap<Comparable, ? extends Serializable> localEntries = this.getEntries();
+    private ImmutableTreeMap<Comparable, Serializable> justInsert(Comparable key, Serializable value) {
+        ImmutableTreeMap<Comparable, Serializable> localEntries = localEntries();
 
         // this test is performed because we need to return a new structure in
         // case an update occurs.  Value types must be immutable.
@@ -81,8 +79,7 @@ public class LeafNode extends LeafNode_Base {
         if (currentValue == value) {
             return null;
         } else {
-            TreeMap<Comparable, Serializable> newMap = duplicateMap();
-            newMap.put(key, value);
+            ImmutableTreeMap<Comparable, Serializable> newMap = localEntries.addKeyValue(key, value);
             setEntries(newMap);
             return newMap;
         }
@@ -101,7 +98,7 @@ public class LeafNode extends LeafNode_Base {
 
     @Override
     public AbstractNode remove(Comparable key) {
-        TreeMap<Comparable, Serializable> localMap = justRemove(key);
+        ImmutableTreeMap<Comparable, Serializable> localMap = justRemove(key);
 
         if (localMap == null) {
             return null;	// remove will return false
@@ -130,16 +127,15 @@ public class LeafNode extends LeafNode_Base {
         deleteDomainObject();
     }
 
-    private TreeMap<Comparable, Serializable> justRemove(Comparable key) {
-        TreeMap<Comparable, ? extends Serializable> localEntries = this.getEntries();
+    private ImmutableTreeMap<Comparable, Serializable> justRemove(Comparable key) {
+        ImmutableTreeMap<Comparable, Serializable> localEntries = localEntries();
 
         // this test is performed because we need to return a new structure in
         // case an update occurs.  Value types must be immutable.
         if (!localEntries.containsKey(key)) {
             return null;
         } else {
-            TreeMap<Comparable, Serializable> newMap = duplicateMap();
-            newMap.remove(key);
+            ImmutableTreeMap<Comparable, Serializable> newMap = localEntries.removeKey(key);
             setEntries(newMap);
             return newMap;
         }
@@ -148,7 +144,7 @@ public class LeafNode extends LeafNode_Base {
     // This method assumes that there is at least one more key (which is
     // always true if this is not the root node)
     private Comparable getReplacementKeyIfNeeded(Comparable deletedKey) {
-        Comparable firstKey = this.getEntries().firstKey();
+        Comparable firstKey = localEntries().firstKey();
         if (BPlusTree.COMPARATOR_SUPPORTING_LAST_KEY.compare(deletedKey, firstKey) < 0) {
             return firstKey;
         } else {
@@ -158,39 +154,35 @@ public class LeafNode extends LeafNode_Base {
 
     @Override
     Map.Entry<Comparable, Serializable> removeBiggestKeyValue() {
-        TreeMap<Comparable, Serializable> newMap = duplicateMap();
-        Map.Entry<Comparable, Serializable> lastEntry = newMap.pollLastEntry();
-        setEntries(newMap);
+        ImmutableTreeMap<Comparable, Serializable> localEntries = localEntries();
+        Map.Entry<Comparable, Serializable> lastEntry = localEntries.lastEntry();
+        setEntries(localEntries.removeBiggestKeyValue());
         return lastEntry;
     }
 
     @Override
     Map.Entry<Comparable, Serializable> removeSmallestKeyValue() {
-        TreeMap<Comparable, Serializable> newMap = duplicateMap();
-        Map.Entry<Comparable, Serializable> firstEntry = newMap.pollFirstEntry();
-        setEntries(newMap);
+        ImmutableTreeMap<Comparable, Serializable> localEntries = localEntries();
+        Map.Entry<Comparable, Serializable> firstEntry = localEntries.firstEntry();
+        setEntries(localEntries.removeSmallestKeyValue());
         return firstEntry;
     }
 
     @Override
     Comparable getSmallestKey() {
-        return this.getEntries().firstKey();
+        return localEntries().firstKey();
     }
 
     @Override
     void addKeyValue(Map.Entry keyValue) {
-        TreeMap<Comparable, Serializable> newMap = duplicateMap();
-        newMap.put((Comparable) keyValue.getKey(), (Serializable) keyValue.getValue());
-        setEntries(newMap);
+        setEntries(localEntries().addKeyValue((Comparable) keyValue.getKey(), (Serializable) keyValue.getValue()));
     }
 
     @Override
     void mergeWithLeftNode(AbstractNode leftNode, Comparable splitKey) {
         LeafNode left = (LeafNode) leftNode; // this node does not know how to merge with another kind
 
-        TreeMap<Comparable, Serializable> newMap = duplicateMap();
-        newMap.putAll(left.getEntries());
-        setEntries(newMap);
+        setEntries(localEntries().mergeWith(left.localEntries()));
 
         LeafNode nodeBefore = left.getPrevious();
 
@@ -215,11 +207,7 @@ public class LeafNode extends LeafNode_Base {
         }
 
         if (index < shallowSize()) { // the required position is here
-            Iterator<? extends Serializable> values = this.getEntries().values().iterator();
-            for (int i = 0; i < index; i++) {
-                values.next();
-            }
-            return values.next();
+            return localEntries().getIndex(index).getValue();
         } else {
             LeafNode next = this.getNext();
             if (next == null) {
@@ -236,11 +224,7 @@ public class LeafNode extends LeafNode_Base {
         }
 
         if (index < shallowSize()) { // the required position is here
-            Iterator<Comparable> keys = this.getEntries().keySet().iterator();
-            for (int i = 0; i < index; i++) {
-                keys.next();
-            }
-            return this.remove(keys.next());
+            return this.remove(localEntries().getIndex(index).getKey());
         } else {
             LeafNode next = this.getNext();
             if (next == null) {
@@ -275,6 +259,126 @@ public class LeafNode extends LeafNode_Base {
         return new LeafNodeValuesIterator(this);
     }
 
+    @Override
+    LeafNode findLeaf(Comparable key) {
+        return this;
+    }
+
+    @Override
+    LeafNode firstLeaf() {
+        return this;
+    }
+
+    // the key may be in a previous leaf only if it is smaller than all the keys in this one
+    Comparable floorKey(Comparable key) {
+        Map.Entry<Comparable, Serializable> entry = localEntries().floorEntry(key);
+        if (entry != null) {
+            return entry.getKey();
+        }
+        LeafNode previous = this.getPrevious();
+        return (previous == null || previous.shallowSize() == 0) ? null : previous.localEntries().lastKey();
+    }
+
+    // the key may be in a next leaf only if it is bigger than all the keys in this one
+    Comparable ceilingKey(Comparable key) {
+        Map.Entry<Comparable, Serializable> entry = localEntries().ceilingEntry(key);
+        if (entry != null) {
+            return entry.getKey();
+        }
+        LeafNode next = this.getNext();
+        return (next == null || next.shallowSize() == 0) ? null : next.localEntries().firstKey();
+    }
+
+    /**
+     * Iterates over the values in a key range, starting in this leaf. The following leaves are only read when needed: when
+     * this leaf's biggest key already reaches the upper bound the scan stops here.
+     */
+    static class RangeCursor implements DomainBasedMap.Cursor<Serializable> {
+        private final Comparable toKey;
+        private final boolean toInclusive;
+        private LeafNode current;
+        private Iterator<Map.Entry<Comparable, Serializable>> iterator;
+        private Map.Entry<Comparable, Serializable> nextEntry;
+        private Comparable lastKey;
+        private boolean hasLastKey = false;
+
+        RangeCursor(LeafNode leafNode, Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+            this.current = leafNode;
+            this.iterator = leafNode.localEntries().entryIterator(fromKey, fromInclusive);
+            advance();
+        }
+
+        // iterates only over the given entries, which are not kept in a leaf
+        RangeCursor(ImmutableTreeMap<Comparable, Serializable> entries, Comparable fromKey, boolean fromInclusive,
+                Comparable toKey, boolean toInclusive) {
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+            this.current = null;
+            this.iterator = entries.entryIterator(fromKey, fromInclusive);
+            advance();
+        }
+
+        // looks ahead for the next entry in range, or sets it to null when the scan is over
+        private void advance() {
+            this.nextEntry = null;
+            while (!this.iterator.hasNext()) {
+                if (this.current == null || reachedUpperBound(this.current)) {
+                    return;
+                }
+                this.current = this.current.getNext();
+                if (this.current == null) {
+                    return;
+                }
+                this.iterator = this.current.localEntries().entrySet().iterator();
+            }
+            Map.Entry<Comparable, Serializable> entry = this.iterator.next();
+            if (this.toKey != null) {
+                int cmp = entry.getKey().compareTo(this.toKey);
+                if (cmp > 0 || (cmp == 0 && !this.toInclusive)) {
+                    return;
+                }
+            }
+            this.nextEntry = entry;
+        }
+
+        private boolean reachedUpperBound(LeafNode leafNode) {
+            return this.toKey != null && leafNode.shallowSize() > 0
+                    && leafNode.localEntries().lastKey().compareTo(this.toKey) >= 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextEntry != null;
+        }
+
+        @Override
+        public Serializable next() {
+            if (this.nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Comparable, Serializable> entry = this.nextEntry;
+            this.lastKey = entry.getKey();
+            this.hasLastKey = true;
+            advance();
+            return entry.getValue();
+        }
+
+        @Override
+        public Comparable getKey() {
+            if (!this.hasLastKey) {
+                throw new IllegalStateException();
+            }
+            return this.lastKey;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("This implementation does not allow element removal via the iterator");
+        }
+    }
+
     protected abstract class GenericLeafNodeIterator<T> implements Iterator<T> {
         private Iterator<T> iterator;
         private LeafNode current;
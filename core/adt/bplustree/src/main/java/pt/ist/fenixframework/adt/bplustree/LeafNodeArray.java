@@ -7,6 +7,8 @@ import java.util.NoSuchElementException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+
 public class LeafNodeArray extends LeafNodeArray_Base {
     private static final Logger logger = LoggerFactory.getLogger(LeafNodeArray.class);
 
@@ -224,6 +226,119 @@ public class LeafNodeArray extends LeafNodeArray_Base {
         return new LeafNodeArrayIterator(this);
     }
 
+    @Override
+    LeafNodeArray findLeaf(Comparable key) {
+        return this;
+    }
+
+    @Override
+    LeafNodeArray firstLeaf() {
+        return this;
+    }
+
+    // the key may be in a previous leaf only if it is smaller than all the keys in this one
+    Comparable floorKey(Comparable key) {
+        DoubleArray<Serializable> entries = this.getEntries();
+        int index = entries.ceilingIndex(key, false) - 1;
+        if (index >= 0) {
+            return entries.keys[index];
+        }
+        LeafNodeArray previous = this.getPrevious();
+        return (previous == null || previous.shallowSize() == 0) ? null : previous.getEntries().keys[previous.shallowSize() - 1];
+    }
+
+    // the key may be in a next leaf only if it is bigger than all the keys in this one
+    Comparable ceilingKey(Comparable key) {
+        DoubleArray<Serializable> entries = this.getEntries();
+        int index = entries.ceilingIndex(key, true);
+        if (index < entries.length()) {
+            return entries.keys[index];
+        }
+        LeafNodeArray next = this.getNext();
+        return (next == null || next.shallowSize() == 0) ? null : next.getEntries().firstKey();
+    }
+
+    /**
+     * Iterates over the values in a key range, starting in this leaf. The following leaves are only read when needed: when
+     * this leaf's biggest key already reaches the upper bound the scan stops here.
+     */
+    static class RangeCursor implements DomainBasedMap.Cursor<Serializable> {
+        private final Comparable toKey;
+        private final boolean toInclusive;
+        private LeafNodeArray current;
+        private DoubleArray<Serializable> entries;
+        private int index;
+        private Comparable lastKey;
+        private boolean hasLastKey = false;
+
+        RangeCursor(LeafNodeArray leafNode, Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+            this.current = leafNode;
+            this.entries = leafNode.getEntries();
+            this.index = fromKey == null ? 0 : this.entries.ceilingIndex(fromKey, fromInclusive);
+            advance();
+        }
+
+        // moves to the position of the next entry in range, or sets the current leaf to null when the scan is over
+        private void advance() {
+            while (this.index >= this.entries.length()) {
+                if (reachedUpperBound()) {
+                    this.current = null;
+                    return;
+                }
+                this.current = this.current.getNext();
+                if (this.current == null) {
+                    return;
+                }
+                this.entries = this.current.getEntries();
+                this.index = 0;
+            }
+            if (this.toKey != null) {
+                int cmp = this.entries.keys[this.index].compareTo(this.toKey);
+                if (cmp > 0 || (cmp == 0 && !this.toInclusive)) {
+                    this.current = null;
+                }
+            }
+        }
+
+        private boolean reachedUpperBound() {
+            int length = this.entries.length();
+            return this.toKey != null && length > 0 && this.entries.keys[length - 1].compareTo(this.toKey) >= 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.current != null;
+        }
+
+        @Override
+        public Serializable next() {
+            if (this.current == null) {
+                throw new NoSuchElementException();
+            }
+            this.hasLastKey = true;
+            this.lastKey = this.entries.keys[this.index];
+            Serializable value = this.entries.values[this.index];
+            this.index++;
+            advance();
+            return value;
+        }
+
+        @Override
+        public Comparable getKey() {
+            if (!this.hasLastKey) {
+                throw new IllegalStateException();
+            }
+            return this.lastKey;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("This implementation does not allow element removal via the iterator");
+        }
+    }
+
     private class LeafNodeArrayIterator implements Iterator<Serializable> {
         private int index;
         private Serializable[] values;
@@ -0,0 +1,151 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.core.ExternalizationException;
+
+/**
+ * A node of a {@link LongBPlusTree}. Unlike the {@link AbstractNode}s, these nodes do not know their parent: structural
+ * changes are propagated upwards by the recursive calls, so a split does not need to update the sub-nodes that change place.
+ */
+@NoDomainMetaObjects
+public abstract class LongAbstractNode extends LongAbstractNode_Base {
+
+    /** The result of splitting a node: the new node that goes to the right of the split one, and the key separating them */
+    static final class Split {
+        final long separator;
+        final LongAbstractNode right;
+
+        Split(long separator, LongAbstractNode right) {
+            this.separator = separator;
+            this.right = right;
+        }
+    }
+
+    public LongAbstractNode() {
+        super();
+    }
+
+    /** Returns the value to which the specified key is mapped, or <code>null</code> if there is none */
+    abstract Serializable get(long key);
+
+    /**
+     * Inserts the given key-value pair, overwriting any previous entry for the same key.
+     *
+     * @return The split of this node, if it overflowed, or <code>null</code> otherwise
+     */
+    abstract Split insert(long key, Serializable value);
+
+    /**
+     * Removes the entry with the given key. This node may be left with less than the minimum number of entries: it is up to
+     * the parent to rebalance it.
+     *
+     * @return Whether the key was found
+     */
+    abstract boolean remove(long key);
+
+    /** Returns whether this node has less than the minimum number of entries */
+    abstract boolean isUnderflowed();
+
+    /** Returns whether the entries of this node and of its right sibling fit in a single node */
+    abstract boolean canMergeWith(LongAbstractNode right);
+
+    /** Moves all the entries of the right sibling into this node. The right sibling is then deleted. */
+    abstract void mergeWithRight(LongAbstractNode right, long separator);
+
+    /** Moves the first entry of the right sibling into this node, and returns the new separator key */
+    abstract long borrowFromRight(LongAbstractNode right, long separator);
+
+    /** Moves the last entry of the left sibling into this node, and returns the new separator key */
+    abstract long borrowFromLeft(LongAbstractNode left, long separator);
+
+    /** Returns the greatest key less than or equal to the given key, or <code>null</code> if there is no such key */
+    abstract Long floorKey(long key);
+
+    /** Returns the least key greater than or equal to the given key, or <code>null</code> if there is no such key */
+    abstract Long ceilingKey(long key);
+
+    /** Returns the leaf node where the given key is (or would be) stored */
+    abstract LongLeafNode findLeaf(long key);
+
+    /** Returns the leftmost leaf node under this node */
+    abstract LongLeafNode firstLeaf();
+
+    /** Returns the number of key-value mappings under this node */
+    abstract int size();
+
+    /** Deletes this node and all of its sub-nodes */
+    abstract void delete();
+
+    // deletes only this node, after its entries were moved elsewhere
+    void deleteEmptyNode() {
+        deleteDomainObject();
+    }
+
+    // the number of _keys_ in this node (not counting sub-nodes)
+    int shallowSize() {
+        return getEntries().size();
+    }
+
+    /*
+     * As with the other nodes, the arrays are converted to/from a byte[] when they are externalized/internalized, so that no
+     * DomainObject escapes in the serialization.  The keys are written as raw longs, and the values in the tagged form of
+     * NodeExternalization (e.g. the sub-nodes of inner nodes as their raw OIDs).
+     */
+
+    public static Serializable externalizeLongKeyArray(LongKeyArray array) {
+        return new LongKeyArrayExternalization(array);
+    }
+
+    public static LongKeyArray internalizeLongKeyArray(Serializable externalizedArray) {
+        return ((LongKeyArrayExternalization) externalizedArray).toArray();
+    }
+
+    private static class LongKeyArrayExternalization implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] serializedArray;
+
+        LongKeyArrayExternalization(LongKeyArray array) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + array.keys.length * 18);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(array.keys.length);
+                for (long key : array.keys) {
+                    out.writeLong(key);
+                }
+                out.writeInt(array.values.length);
+                for (Object value : array.values) {
+                    NodeExternalization.writeObject(out, value);
+                }
+                out.close();
+                this.serializedArray = bytes.toByteArray();
+            } catch (IOException e) {
+                throw new ExternalizationException(e);
+            }
+        }
+
+        LongKeyArray toArray() {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(serializedArray));
+                long[] keys = new long[in.readInt()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = in.readLong();
+                }
+                Object[] values = new Object[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = NodeExternalization.readObject(in, in.readByte());
+                }
+                return new LongKeyArray(keys, values);
+            } catch (IOException e) {
+                throw new ExternalizationException(e);
+            }
+        }
+    }
+}
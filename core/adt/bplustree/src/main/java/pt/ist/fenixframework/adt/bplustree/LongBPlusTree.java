@@ -0,0 +1,237 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.adt.SizeStripe;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+
+/**
+ * B+Tree specialized for primitive <code>long</code> keys, such as the OIDs of the JVSTM-based backends. Each node keeps its
+ * keys in a sorted <code>long[]</code>, which is binary searched without boxing and is externalized as raw longs.
+ *
+ * It implements {@link DomainBasedMap}, so it can be used to hold the objects of relations (whose keys are the objects' OIDs)
+ * by setting the <code>oidCollectionClassName</code> parameter of the DML compiler to this class. The {@link Comparable}
+ * methods only accept keys of type {@link Long}. Like the {@link BPlusTree}, this tree does not support <code>null</code>
+ * values.
+ */
+@NoDomainMetaObjects
+public class LongBPlusTree<T extends Serializable> extends LongBPlusTree_Base implements DomainBasedMap<T> {
+
+    // The minimum lower bound is 2 (two).  Only edit this.  The other values are derived.
+    static final int LOWER_BOUND = 100;
+    // The maximum number of keys in a node.  This number should be a multiple of 2.
+    static final int MAX_NUMBER_OF_KEYS = 2 * LOWER_BOUND;
+
+    private static long toLong(Comparable key) {
+        if (key instanceof Long) {
+            return ((Long) key).longValue();
+        }
+        throw new UnsupportedOperationException("LongBPlusTree only supports keys of type Long, not: "
+                + (key == null ? null : key.getClass().getName()));
+    }
+
+    public LongBPlusTree() {
+        super();
+        setRoot(new LongLeafNode());
+    }
+
+    /** Inserts the given key-value pair, overwriting any previous entry for the same key */
+    public boolean insert(long key, T value) {
+        if (value == null) {
+            throw new UnsupportedOperationException("This B+Tree does not support nulls");
+        }
+        LongAbstractNode rootNode = getRoot();
+        Serializable currentValue = rootNode.get(key);
+        // this check suffices because we do not allow null values
+        if (currentValue == value) {
+            return false;
+        }
+
+        LongAbstractNode.Split split = rootNode.insert(key, value);
+        if (split != null) {
+            setRoot(new LongInnerNode(rootNode, split.right, split.separator));
+        }
+        if (currentValue == null) {
+            updateSize(1);
+        }
+        return true;
+    }
+
+    public boolean insert(Comparable key, T value) {
+        return insert(toLong(key), value);
+    }
+
+    /** Removes the element with the given key */
+    public boolean removeKey(long key) {
+        LongAbstractNode rootNode = getRoot();
+        if (!rootNode.remove(key)) {
+            return false;
+        }
+        if (rootNode instanceof LongInnerNode) {
+            // the root may be left with a single sub-node, which becomes the new root
+            LongAbstractNode singleSubNode = ((LongInnerNode) rootNode).getSingleSubNode();
+            if (singleSubNode != null) {
+                setRoot(singleSubNode);
+                rootNode.deleteEmptyNode();
+            }
+        }
+        updateSize(-1);
+        return true;
+    }
+
+    public boolean removeKey(Comparable key) {
+        return removeKey(toLong(key));
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <code>null</code> if this map
+     * contains no mapping for the key.
+     */
+    public T get(long key) {
+        return (T) getRoot().get(key);
+    }
+
+    @Override
+    public T get(Comparable key) {
+        return get(toLong(key));
+    }
+
+    /** Returns <code>true</code> if this map contains a mapping for the specified key. */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public boolean containsKey(Comparable key) {
+        return containsKey(toLong(key));
+    }
+
+    // travels from the leftmost leaf, as in the BPlusTree
+    private long getKeyAtIndex(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        LongLeafNode leaf = getRoot().firstLeaf();
+        while (index >= leaf.shallowSize()) {
+            index -= leaf.shallowSize();
+            leaf = leaf.getNext();
+            if (leaf == null) {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+        return leaf.getKeyAt(index);
+    }
+
+    /**
+     * Return the value at the index-th position (zero-based).
+     */
+    public T getIndex(int index) {
+        return get(getKeyAtIndex(index));
+    }
+
+    /**
+     * Remove and return the value at the index-th position (zero-based).
+     */
+    public T removeIndex(int index) {
+        long key = getKeyAtIndex(index);
+        T value = get(key);
+        removeKey(key);
+        return value;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map. As in the {@link BPlusTree}, this reads the size counters instead
+     * of going through the tree.
+     */
+    @Override
+    public int size() {
+        SizeStripe sizeStripes = getSizeStripes();
+        return sizeStripes == null ? getRoot().size() : SizeStripe.sum(sizeStripes);
+    }
+
+    // must be invoked after the change to the tree
+    private void updateSize(int delta) {
+        SizeStripe sizeStripes = getSizeStripes();
+        if (sizeStripes == null) {
+            setSizeStripes(new SizeStripe(SizeStripe.currentIndex(), getRoot().size(), null));
+        } else {
+            SizeStripe newSizeStripes = SizeStripe.add(sizeStripes, delta);
+            if (newSizeStripes != sizeStripes) {
+                setSizeStripes(newSizeStripes);
+            }
+        }
+    }
+
+    // only the root needs to be read: it can only be empty when it is the single leaf of the tree
+    public boolean isEmpty() {
+        return getRoot().shallowSize() == 0;
+    }
+
+    /**
+     * Completly deletes this <code>LongBPlusTree</code>, and all its nodes. Does not delete any {@link DomainObject} contained in
+     * the tree.
+     */
+    public void delete() {
+        LongAbstractNode rootNode = getRoot();
+        setRoot(null);
+        rootNode.delete();
+        SizeStripe sizeStripes = getSizeStripes();
+        setSizeStripes(null);
+        SizeStripe.deleteAll(sizeStripes);
+        deleteDomainObject();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return cursor(null, true, null, true);
+    }
+
+    @Override
+    public Comparable floorKey(Comparable key) {
+        return getRoot().floorKey(toLong(key));
+    }
+
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        return getRoot().ceilingKey(toLong(key));
+    }
+
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+        LongLeafNode leaf;
+        int index;
+        if (fromKey == null) {
+            leaf = getRoot().firstLeaf();
+            index = 0;
+        } else {
+            long from = toLong(fromKey);
+            leaf = getRoot().findLeaf(from);
+            index = leaf.getEntries().ceilingIndex(from, fromInclusive);
+        }
+        boolean hasUpperBound = toKey != null;
+        long to = hasUpperBound ? toLong(toKey) : 0L;
+        return (Cursor<T>) new LongLeafNode.RangeCursor(leaf, index, hasUpperBound, to, toInclusive);
+    }
+
+    @Override
+    public boolean remove(Comparable key) {
+        return removeKey(key);
+    }
+
+    @Override
+    public boolean contains(Comparable key) {
+        return containsKey(key);
+    }
+
+    @Override
+    public void put(Comparable key, T value) {
+        insert(key, value);
+    }
+
+    @Override
+    public boolean putIfMissing(Comparable key, T value) {
+        return insert(key, value);
+    }
+}
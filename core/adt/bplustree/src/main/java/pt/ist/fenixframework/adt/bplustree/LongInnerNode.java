@@ -0,0 +1,181 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.Serializable;
+
+import pt.ist.fenixframework.NoDomainMetaObjects;
+
+/**
+ * Inner node of a {@link LongBPlusTree}. It contains M keys (ordered) and M+1 sub-nodes (M > 0). The n-th sub-node contains
+ * the elements whose keys are less than the n-th key, and greater than or equal to the (n-1)-th key. Unlike the
+ * {@link InnerNode}, there is no special LAST_KEY: the last sub-node simply has no key.
+ */
+@NoDomainMetaObjects
+public class LongInnerNode extends LongInnerNode_Base {
+
+    private LongInnerNode() {
+        super();
+    }
+
+    LongInnerNode(LongAbstractNode leftNode, LongAbstractNode rightNode, long splitKey) {
+        setEntries(new LongKeyArray(new long[] { splitKey }, new Object[] { leftNode, rightNode }));
+    }
+
+    private LongInnerNode(LongKeyArray subNodes) {
+        setEntries(subNodes);
+    }
+
+    private LongAbstractNode getSubNode(int index) {
+        return (LongAbstractNode) getEntries().values[index];
+    }
+
+    @Override
+    Serializable get(long key) {
+        return getSubNode(getEntries().childIndex(key)).get(key);
+    }
+
+    @Override
+    Split insert(long key, Serializable value) {
+        LongKeyArray subNodes = getEntries();
+        int index = subNodes.childIndex(key);
+        Split split = getSubNode(index).insert(key, value);
+        if (split == null) {
+            return null;
+        }
+
+        // the new sub-node goes just after the one that was split
+        LongKeyArray newSubNodes = subNodes.insert(index, split.separator, index + 1, split.right);
+        if (newSubNodes.size() <= LongBPlusTree.MAX_NUMBER_OF_KEYS) {
+            setEntries(newSubNodes);
+            return null;
+        }
+
+        // must split this node.  The middle key moves up to the parent.
+        int middle = LongBPlusTree.LOWER_BOUND;
+        int length = newSubNodes.size();
+        setEntries(newSubNodes.slice(0, middle, 0, middle + 1));
+        LongInnerNode rightNode = new LongInnerNode(newSubNodes.slice(middle + 1, length, middle + 1, length + 1));
+        return new Split(newSubNodes.keys[middle], rightNode);
+    }
+
+    @Override
+    boolean remove(long key) {
+        int index = getEntries().childIndex(key);
+        LongAbstractNode subNode = getSubNode(index);
+        if (!subNode.remove(key)) {
+            return false;
+        }
+        if (subNode.isUnderflowed()) {
+            rebalance(index);
+        }
+        return true;
+    }
+
+    // merges or redistributes the entries of the underflowed sub-node with one of its siblings
+    private void rebalance(int index) {
+        LongKeyArray subNodes = getEntries();
+        int leftIndex = index > 0 ? index - 1 : index;
+        LongAbstractNode left = getSubNode(leftIndex);
+        LongAbstractNode right = getSubNode(leftIndex + 1);
+        long separator = subNodes.keys[leftIndex];
+
+        if (left.canMergeWith(right)) {
+            left.mergeWithRight(right, separator);
+            setEntries(subNodes.remove(leftIndex, leftIndex + 1));
+        } else if (leftIndex == index) {
+            setEntries(subNodes.replaceKey(leftIndex, left.borrowFromRight(right, separator)));
+        } else {
+            setEntries(subNodes.replaceKey(leftIndex, right.borrowFromLeft(left, separator)));
+        }
+    }
+
+    /** Returns the only sub-node of this node, if it has no keys left, or <code>null</code> otherwise */
+    LongAbstractNode getSingleSubNode() {
+        return shallowSize() == 0 ? getSubNode(0) : null;
+    }
+
+    @Override
+    boolean isUnderflowed() {
+        return shallowSize() < LongBPlusTree.LOWER_BOUND;
+    }
+
+    @Override
+    boolean canMergeWith(LongAbstractNode right) {
+        // the separator comes down from the parent
+        return shallowSize() + 1 + right.shallowSize() <= LongBPlusTree.MAX_NUMBER_OF_KEYS;
+    }
+
+    @Override
+    void mergeWithRight(LongAbstractNode right, long separator) {
+        setEntries(getEntries().appendWithSeparator(right.getEntries(), separator));
+        right.deleteEmptyNode();
+    }
+
+    @Override
+    long borrowFromRight(LongAbstractNode right, long separator) {
+        LongKeyArray subNodes = getEntries();
+        LongKeyArray rightSubNodes = right.getEntries();
+        setEntries(subNodes.insert(subNodes.size(), separator, subNodes.size() + 1, rightSubNodes.values[0]));
+        right.setEntries(rightSubNodes.remove(0, 0));
+        return rightSubNodes.firstKey();
+    }
+
+    @Override
+    long borrowFromLeft(LongAbstractNode left, long separator) {
+        LongKeyArray leftSubNodes = left.getEntries();
+        int lastKey = leftSubNodes.size() - 1;
+        setEntries(getEntries().insert(0, separator, 0, leftSubNodes.values[lastKey + 1]));
+        left.setEntries(leftSubNodes.remove(lastKey, lastKey + 1));
+        return leftSubNodes.keys[lastKey];
+    }
+
+    @Override
+    Long floorKey(long key) {
+        int index = getEntries().childIndex(key);
+        Long floor = getSubNode(index).floorKey(key);
+        if (floor == null && index > 0) {
+            // all the keys in the previous sub-node are smaller than the key
+            floor = getSubNode(index - 1).floorKey(Long.MAX_VALUE);
+        }
+        return floor;
+    }
+
+    @Override
+    Long ceilingKey(long key) {
+        int index = getEntries().childIndex(key);
+        Long ceiling = getSubNode(index).ceilingKey(key);
+        if (ceiling == null && index < shallowSize()) {
+            // all the keys in the next sub-node are greater than the key
+            ceiling = getSubNode(index + 1).ceilingKey(Long.MIN_VALUE);
+        }
+        return ceiling;
+    }
+
+    @Override
+    LongLeafNode findLeaf(long key) {
+        return getSubNode(getEntries().childIndex(key)).findLeaf(key);
+    }
+
+    // travels to the leftmost leaf
+    @Override
+    LongLeafNode firstLeaf() {
+        return getSubNode(0).firstLeaf();
+    }
+
+    @Override
+    int size() {
+        int total = 0;
+        for (Object subNode : getEntries().values) {
+            total += ((LongAbstractNode) subNode).size();
+        }
+        return total;
+    }
+
+    @Override
+    void delete() {
+        for (Object subNode : getEntries().values) {
+            ((LongAbstractNode) subNode).delete();
+        }
+        deleteDomainObject();
+    }
+
+}
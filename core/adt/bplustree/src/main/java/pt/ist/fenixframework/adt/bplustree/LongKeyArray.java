@@ -0,0 +1,132 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The contents of a node of a {@link LongBPlusTree}: a sorted array of primitive <code>long</code> keys and the array of values
+ * associated with them. In leaf nodes there is one value per key. In inner nodes there is one more value (sub-node) than keys.
+ *
+ * Instances are immutable, as required for value types: every update returns a new instance.
+ */
+public final class LongKeyArray implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final LongKeyArray EMPTY = new LongKeyArray(new long[0], new Object[0]);
+
+    final long[] keys;
+    final Object[] values;
+
+    LongKeyArray(long[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /** Returns the number of keys */
+    int size() {
+        return keys.length;
+    }
+
+    /** Same result as {@link Arrays#binarySearch(long[], long)} */
+    int indexOf(long key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    /** Returns the position of the first key greater than (or equal to, if inclusive) the given key, or size() if none */
+    int ceilingIndex(long key, boolean inclusive) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return inclusive ? index : index + 1;
+        }
+        return -(index + 1);
+    }
+
+    /** In inner nodes, returns the position of the sub-node that may contain the given key */
+    int childIndex(long key) {
+        return ceilingIndex(key, false);
+    }
+
+    long firstKey() {
+        return keys[0];
+    }
+
+    long lastKey() {
+        return keys[keys.length - 1];
+    }
+
+    /** Returns a copy with the given key inserted at keyIndex and the given value inserted at valueIndex */
+    LongKeyArray insert(int keyIndex, long key, int valueIndex, Object value) {
+        long[] newKeys = new long[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, keyIndex);
+        newKeys[keyIndex] = key;
+        System.arraycopy(keys, keyIndex, newKeys, keyIndex + 1, keys.length - keyIndex);
+
+        Object[] newValues = new Object[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, valueIndex);
+        newValues[valueIndex] = value;
+        System.arraycopy(values, valueIndex, newValues, valueIndex + 1, values.length - valueIndex);
+
+        return new LongKeyArray(newKeys, newValues);
+    }
+
+    /** Returns a copy without the key at keyIndex and the value at valueIndex */
+    LongKeyArray remove(int keyIndex, int valueIndex) {
+        long[] newKeys = new long[keys.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, keyIndex);
+        System.arraycopy(keys, keyIndex + 1, newKeys, keyIndex, keys.length - keyIndex - 1);
+
+        Object[] newValues = new Object[values.length - 1];
+        System.arraycopy(values, 0, newValues, 0, valueIndex);
+        System.arraycopy(values, valueIndex + 1, newValues, valueIndex, values.length - valueIndex - 1);
+
+        return new LongKeyArray(newKeys, newValues);
+    }
+
+    LongKeyArray replaceKey(int index, long key) {
+        long[] newKeys = keys.clone();
+        newKeys[index] = key;
+        return new LongKeyArray(newKeys, values);
+    }
+
+    LongKeyArray replaceValue(int index, Object value) {
+        Object[] newValues = values.clone();
+        newValues[index] = value;
+        return new LongKeyArray(keys, newValues);
+    }
+
+    /** Returns the keys in [keyFrom, keyTo) and the values in [valueFrom, valueTo) */
+    LongKeyArray slice(int keyFrom, int keyTo, int valueFrom, int valueTo) {
+        return new LongKeyArray(Arrays.copyOfRange(keys, keyFrom, keyTo), Arrays.copyOfRange(values, valueFrom, valueTo));
+    }
+
+    /** Concatenates the keys and values of both arrays. All the keys in this array must be smaller than the other's. */
+    LongKeyArray append(LongKeyArray other) {
+        return appendWithSeparator(other, false, 0L);
+    }
+
+    /**
+     * Concatenates two arrays of inner nodes, placing the given separator key between the keys of this and the keys of the
+     * other array.
+     */
+    LongKeyArray appendWithSeparator(LongKeyArray other, long separator) {
+        return appendWithSeparator(other, true, separator);
+    }
+
+    private LongKeyArray appendWithSeparator(LongKeyArray other, boolean useSeparator, long separator) {
+        int extra = useSeparator ? 1 : 0;
+        long[] newKeys = new long[keys.length + extra + other.keys.length];
+        System.arraycopy(keys, 0, newKeys, 0, keys.length);
+        if (useSeparator) {
+            newKeys[keys.length] = separator;
+        }
+        System.arraycopy(other.keys, 0, newKeys, keys.length + extra, other.keys.length);
+
+        Object[] newValues = new Object[values.length + other.values.length];
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        System.arraycopy(other.values, 0, newValues, values.length, other.values.length);
+
+        return new LongKeyArray(newKeys, newValues);
+    }
+
+}
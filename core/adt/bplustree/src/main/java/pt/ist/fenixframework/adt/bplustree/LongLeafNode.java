@@ -0,0 +1,220 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+
+import pt.ist.fenixframework.NoDomainMetaObjects;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+
+@NoDomainMetaObjects
+public class LongLeafNode extends LongLeafNode_Base {
+
+    public LongLeafNode() {
+        setEntries(LongKeyArray.EMPTY);
+    }
+
+    private LongLeafNode(LongKeyArray entries) {
+        setEntries(entries);
+    }
+
+    @Override
+    Serializable get(long key) {
+        LongKeyArray entries = getEntries();
+        int index = entries.indexOf(key);
+        return index >= 0 ? (Serializable) entries.values[index] : null;
+    }
+
+    long getKeyAt(int index) {
+        return getEntries().keys[index];
+    }
+
+    @Override
+    Split insert(long key, Serializable value) {
+        LongKeyArray entries = getEntries();
+        int index = entries.indexOf(key);
+        if (index >= 0) {
+            setEntries(entries.replaceValue(index, value));
+            return null;
+        }
+
+        int position = -(index + 1);
+        LongKeyArray newEntries = entries.insert(position, key, position, value);
+        if (newEntries.size() <= LongBPlusTree.MAX_NUMBER_OF_KEYS) { // it still fits :-)
+            setEntries(newEntries);
+            return null;
+        }
+
+        // must split this node
+        int splitIndex = LongBPlusTree.LOWER_BOUND + 1;
+        int length = newEntries.size();
+        setEntries(newEntries.slice(0, splitIndex, 0, splitIndex));
+        LongLeafNode rightNode = new LongLeafNode(newEntries.slice(splitIndex, length, splitIndex, length));
+        rightNode.setNext(getNext());
+        setNext(rightNode);
+        return new Split(newEntries.keys[splitIndex], rightNode);
+    }
+
+    @Override
+    boolean remove(long key) {
+        LongKeyArray entries = getEntries();
+        int index = entries.indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        setEntries(entries.remove(index, index));
+        return true;
+    }
+
+    @Override
+    boolean isUnderflowed() {
+        return shallowSize() < LongBPlusTree.LOWER_BOUND;
+    }
+
+    @Override
+    boolean canMergeWith(LongAbstractNode right) {
+        return shallowSize() + right.shallowSize() <= LongBPlusTree.MAX_NUMBER_OF_KEYS;
+    }
+
+    @Override
+    void mergeWithRight(LongAbstractNode right, long separator) {
+        LongLeafNode rightLeaf = (LongLeafNode) right;
+        setEntries(getEntries().append(rightLeaf.getEntries()));
+        setNext(rightLeaf.getNext());
+        rightLeaf.delete();
+    }
+
+    @Override
+    long borrowFromRight(LongAbstractNode right, long separator) {
+        LongKeyArray entries = getEntries();
+        LongKeyArray rightEntries = right.getEntries();
+        int length = entries.size();
+        setEntries(entries.insert(length, rightEntries.firstKey(), length, rightEntries.values[0]));
+        LongKeyArray newRightEntries = rightEntries.remove(0, 0);
+        right.setEntries(newRightEntries);
+        return newRightEntries.firstKey();
+    }
+
+    @Override
+    long borrowFromLeft(LongAbstractNode left, long separator) {
+        LongKeyArray leftEntries = left.getEntries();
+        int last = leftEntries.size() - 1;
+        long movedKey = leftEntries.keys[last];
+        setEntries(getEntries().insert(0, movedKey, 0, leftEntries.values[last]));
+        left.setEntries(leftEntries.remove(last, last));
+        return movedKey;
+    }
+
+    @Override
+    Long floorKey(long key) {
+        LongKeyArray entries = getEntries();
+        int index = entries.ceilingIndex(key, false) - 1;
+        return index >= 0 ? entries.keys[index] : null;
+    }
+
+    @Override
+    Long ceilingKey(long key) {
+        LongKeyArray entries = getEntries();
+        int index = entries.ceilingIndex(key, true);
+        return index < entries.size() ? entries.keys[index] : null;
+    }
+
+    @Override
+    LongLeafNode findLeaf(long key) {
+        return this;
+    }
+
+    @Override
+    LongLeafNode firstLeaf() {
+        return this;
+    }
+
+    @Override
+    int size() {
+        return shallowSize();
+    }
+
+    @Override
+    void delete() {
+        setNext(null);
+        deleteDomainObject();
+    }
+
+    /**
+     * Iterates over the values in a key range, starting in this leaf. As in {@link LeafNode.RangeCursor}, the following leaves
+     * are only read when this leaf's biggest key does not yet reach the upper bound.
+     */
+    static class RangeCursor implements DomainBasedMap.Cursor<Serializable> {
+        private final boolean hasUpperBound;
+        private final long toKey;
+        private final boolean toInclusive;
+        private LongLeafNode current;
+        private LongKeyArray entries;
+        private int index;
+        private long lastKey;
+        private boolean hasLastKey = false;
+
+        RangeCursor(LongLeafNode leafNode, int index, boolean hasUpperBound, long toKey, boolean toInclusive) {
+            this.hasUpperBound = hasUpperBound;
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+            this.current = leafNode;
+            this.entries = leafNode.getEntries();
+            this.index = index;
+            advance();
+        }
+
+        // moves to the position of the next entry in range, or sets the current leaf to null when the scan is over
+        private void advance() {
+            while (this.index >= this.entries.size()) {
+                if (this.hasUpperBound && this.entries.size() > 0 && this.entries.lastKey() >= this.toKey) {
+                    this.current = null;
+                    return;
+                }
+                this.current = this.current.getNext();
+                if (this.current == null) {
+                    return;
+                }
+                this.entries = this.current.getEntries();
+                this.index = 0;
+            }
+            if (this.hasUpperBound) {
+                long key = this.entries.keys[this.index];
+                if (key > this.toKey || (key == this.toKey && !this.toInclusive)) {
+                    this.current = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.current != null;
+        }
+
+        @Override
+        public Serializable next() {
+            if (this.current == null) {
+                throw new NoSuchElementException();
+            }
+            this.lastKey = this.entries.keys[this.index];
+            this.hasLastKey = true;
+            Serializable value = (Serializable) this.entries.values[this.index];
+            this.index++;
+            advance();
+            return value;
+        }
+
+        @Override
+        public Comparable getKey() {
+            if (!this.hasLastKey) {
+                throw new IllegalStateException();
+            }
+            return this.lastKey;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("This implementation does not allow element removal via the iterator");
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.core.AbstractDomainObject;
+import pt.ist.fenixframework.core.Externalization;
+import pt.ist.fenixframework.core.ExternalizationException;
+
+/**
+ * Compact binary form of the entries of a B+Tree node. Instead of the Java serialization of the whole map (with the class
+ * descriptors of the map, of its comparator and of every key and value type), each entry is written as a tagged key followed by
+ * a tagged value:
+ *
+ * <ul>
+ * <li>{@link Long} and {@link Integer} are written raw, and {@link String}s as length-prefixed UTF-8;</li>
+ * <li>domain objects are written as their OID, as a raw long when the OID is a {@link Long}, or as their external id
+ * otherwise;</li>
+ * <li>the special LAST_KEY of inner nodes is written as a single tag;</li>
+ * <li>any other key or value is written as its length-prefixed Java serialization.</li>
+ * </ul>
+ *
+ * Like the previous forms, it is wrapped in a {@link Serializable} class, so that no DomainObject escapes in the serialization.
+ * The nodes written with the previous forms can still be read: see {@link AbstractNode#internalizeTreeMap(Serializable)}.
+ */
+final class NodeExternalization implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte LAST_KEY = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte STRING = 3;
+    private static final byte DOMAIN_OBJECT_BY_OID = 4;
+    private static final byte DOMAIN_OBJECT_BY_EXTERNAL_ID = 5;
+    private static final byte SERIALIZABLE = 6;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The entries read from a {@link NodeExternalization} */
+    static final class Entries {
+        final Comparable[] keys;
+        final Object[] values;
+        /** The name of the class of the values' array, or <code>null</code> if it was not written */
+        final String valuesClassName;
+
+        private Entries(Comparable[] keys, Object[] values, String valuesClassName) {
+            this.keys = keys;
+            this.values = values;
+            this.valuesClassName = valuesClassName;
+        }
+    }
+
+    private final byte[] serializedEntries;
+
+    /**
+     * @param lastKey The special LAST_KEY of the tree (if any), which is written as a single tag
+     * @param valuesClass The class of the values' array, if it needs to be recreated, or <code>null</code>
+     */
+    NodeExternalization(Comparable[] keys, Object[] values, Comparable lastKey, Class<?> valuesClass) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + keys.length * 18);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeBoolean(valuesClass != null);
+            if (valuesClass != null) {
+                out.writeUTF(valuesClass.getName());
+            }
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == lastKey) {
+                    out.writeByte(LAST_KEY);
+                } else {
+                    writeObject(out, keys[i]);
+                }
+                writeObject(out, values[i]);
+            }
+            out.close();
+            this.serializedEntries = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new ExternalizationException(e);
+        }
+    }
+
+    static NodeExternalization fromMap(Map<Comparable, ?> map, Comparable lastKey) {
+        Comparable[] keys = new Comparable[map.size()];
+        Object[] values = new Object[map.size()];
+        int i = 0;
+        for (Map.Entry<Comparable, ?> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        return new NodeExternalization(keys, values, lastKey, null);
+    }
+
+    /** Reads the entries, in the order in which they were written, replacing the LAST_KEY tag with the given key */
+    Entries readEntries(Comparable lastKey) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(serializedEntries));
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new ExternalizationException(new IOException("Unknown B+Tree node format: " + version));
+            }
+            String valuesClassName = in.readBoolean() ? in.readUTF() : null;
+            int length = in.readInt();
+            Comparable[] keys = new Comparable[length];
+            Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                byte keyTag = in.readByte();
+                keys[i] = keyTag == LAST_KEY ? lastKey : (Comparable) readObject(in, keyTag);
+                values[i] = readObject(in, in.readByte());
+            }
+            return new Entries(keys, values, valuesClassName);
+        } catch (IOException e) {
+            throw new ExternalizationException(e);
+        }
+    }
+
+    // also used for the values of the LongBPlusTree's nodes
+    static void writeObject(DataOutputStream out, Object obj) throws IOException {
+        if (obj instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Long) obj).longValue());
+        } else if (obj instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt(((Integer) obj).intValue());
+        } else if (obj instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) obj).getBytes(UTF8));
+        } else if (obj instanceof AbstractDomainObject) {
+            Comparable oid = ((AbstractDomainObject) obj).getOid();
+            if (oid instanceof Long) {
+                out.writeByte(DOMAIN_OBJECT_BY_OID);
+                out.writeLong(((Long) oid).longValue());
+            } else {
+                out.writeByte(DOMAIN_OBJECT_BY_EXTERNAL_ID);
+                writeBytes(out, ((DomainObject) obj).getExternalId().getBytes(UTF8));
+            }
+        } else {
+            out.writeByte(SERIALIZABLE);
+            writeBytes(out, Externalization.externalizeSerializable((Serializable) obj));
+        }
+    }
+
+    static Object readObject(DataInputStream in, byte tag) throws IOException {
+        switch (tag) {
+        case LONG:
+            return in.readLong();
+        case INTEGER:
+            return in.readInt();
+        case STRING:
+            return new String(readBytes(in), UTF8);
+        case DOMAIN_OBJECT_BY_OID:
+            return FenixFramework.getConfig().getBackEnd().fromOid(in.readLong());
+        case DOMAIN_OBJECT_BY_EXTERNAL_ID:
+            return FenixFramework.getDomainObject(new String(readBytes(in), UTF8));
+        case SERIALIZABLE:
+            return Externalization.internalizeSerializable(readBytes(in));
+        default:
+            throw new IOException("Unknown tag in B+Tree node: " + tag);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
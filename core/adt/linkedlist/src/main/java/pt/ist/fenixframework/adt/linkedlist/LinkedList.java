@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import pt.ist.fenixframework.adt.SizeStripe;
 import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
 
 public class LinkedList<T extends Serializable> extends LinkedList_Base implements DomainBasedMap<T> {
@@ -23,6 +24,7 @@ public class LinkedList<T extends Serializable> extends LinkedList_Base implemen
         }
         if (next == null || toInsert.compareTo(oid) != 0) {
             previous.setNext(new ListNode(toInsert, value, next));
+            updateSize(1);
             return true;
         }
         return false;
@@ -58,6 +60,7 @@ public class LinkedList<T extends Serializable> extends LinkedList_Base implemen
             } else {
                 previous.setNext(null);
             }
+            updateSize(-1);
             return true;
         }
         return false;
@@ -67,8 +70,18 @@ public class LinkedList<T extends Serializable> extends LinkedList_Base implemen
         return get(key) != null;
     }
 
+    /**
+     * Returns the number of elements in this list. This reads the size counters instead of going through the list, except for
+     * lists that were created before the size was maintained and were not changed since.
+     */
     @Override
     public int size() {
+        SizeStripe sizeStripes = getSizeStripes();
+        return sizeStripes == null ? countElements() : SizeStripe.sum(sizeStripes);
+    }
+
+    // goes through the whole list
+    private int countElements() {
         ListNode<T> iter = getHead().getNext();
         int size = 0;
         while (iter != null) {
@@ -78,6 +91,20 @@ public class LinkedList<T extends Serializable> extends LinkedList_Base implemen
         return size;
     }
 
+    // Must be invoked after the change to the list.  When there are no counters yet (either because this list is new, or
+    // because it was created before the size was maintained) the first counter starts with the current number of elements.
+    private void updateSize(int delta) {
+        SizeStripe sizeStripes = getSizeStripes();
+        if (sizeStripes == null) {
+            setSizeStripes(new SizeStripe(SizeStripe.currentIndex(), countElements(), null));
+        } else {
+            SizeStripe newSizeStripes = SizeStripe.add(sizeStripes, delta);
+            if (newSizeStripes != sizeStripes) {
+                setSizeStripes(newSizeStripes);
+            }
+        }
+    }
+
     @Override
     public Iterator<T> iterator() {
         return new Iterator<T>() {
@@ -107,6 +134,111 @@ public class LinkedList<T extends Serializable> extends LinkedList_Base implemen
         };
     }
 
+    @Override
+    public Comparable floorKey(Comparable key) {
+        Comparable floor = null;
+        ListNode<T> next = getHead().getNext();
+        Comparable oid;
+        while (next != null && (oid = next.getKeyValue().key).compareTo(key) <= 0) {
+            floor = oid;
+            next = next.getNext();
+        }
+        return floor;
+    }
+
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        ListNode<T> next = getHead().getNext();
+        while (next != null && next.getKeyValue().key.compareTo(key) < 0) {
+            next = next.getNext();
+        }
+        return next == null ? null : next.getKeyValue().key;
+    }
+
+    /**
+     * Returns a cursor over the values whose keys are in the given range. The list has to be traversed from its head up to
+     * <code>fromKey</code>, but the traversal stops as soon as <code>toKey</code> is passed.
+     */
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, final Comparable toKey, final boolean toInclusive) {
+        ListNode<T> first = getHead().getNext();
+        if (fromKey != null) {
+            int cmp;
+            while (first != null && ((cmp = first.getKeyValue().key.compareTo(fromKey)) < 0 || (cmp == 0 && !fromInclusive))) {
+                first = first.getNext();
+            }
+        }
+        final ListNode<T> start = first;
+
+        return new Cursor<T>() {
+
+            private ListNode<T> iter = inRange(start) ? start : null;
+            private Comparable lastKey;
+            private boolean hasLastKey = false;
+
+            private boolean inRange(ListNode<T> node) {
+                if (node == null) {
+                    return false;
+                } else if (toKey == null) {
+                    return true;
+                }
+                int cmp = node.getKeyValue().key.compareTo(toKey);
+                return cmp < 0 || (cmp == 0 && toInclusive);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iter != null;
+            }
+
+            @Override
+            public T next() {
+                if (iter == null) {
+                    throw new NoSuchElementException();
+                }
+                KeyValue keyValue = iter.getKeyValue();
+                lastKey = keyValue.key;
+                hasLastKey = true;
+                ListNode<T> following = iter.getNext();
+                iter = inRange(following) ? following : null;
+                return (T) keyValue.value;
+            }
+
+            @Override
+            public Comparable getKey() {
+                if (!hasLastKey) {
+                    throw new IllegalStateException();
+                }
+                return lastKey;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("This implementation does not allow element removal via the iterator");
+            }
+
+        };
+    }
+
+    /**
+     * Completely deletes this <code>LinkedList</code>, including its nodes and its size counters. Does not delete any
+     * {@link pt.ist.fenixframework.DomainObject} contained in the list.
+     */
+    public void delete() {
+        ListNode<T> node = getHead();
+        setHead(null);
+        while (node != null) {
+            ListNode<T> next = node.getNext();
+            node.setNext(null);
+            node.deleteDomainObject();
+            node = next;
+        }
+        SizeStripe sizeStripes = getSizeStripes();
+        setSizeStripes(null);
+        SizeStripe.deleteAll(sizeStripes);
+        deleteDomainObject();
+    }
+
     @Override
     public boolean remove(Comparable key) {
         return removeKey(key);
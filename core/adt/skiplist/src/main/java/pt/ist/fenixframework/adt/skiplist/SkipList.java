@@ -5,6 +5,7 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
 
+import pt.ist.fenixframework.adt.SizeStripe;
 import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
 
 public class SkipList<T extends Serializable> extends SkipList_Base implements DomainBasedMap<T> {
@@ -72,6 +73,7 @@ public class SkipList<T extends Serializable> extends SkipList_Base implements D
                 node.setForward(i, update[i].getForward(i));
                 update[i].setForward(i, node);
             }
+            updateSize(1);
             result = true;
         }
 
@@ -134,6 +136,7 @@ public class SkipList<T extends Serializable> extends SkipList_Base implements D
                 level--;
                 setLevel(level);
             }
+            updateSize(-1);
             result = true;
         }
 
@@ -173,6 +176,94 @@ public class SkipList<T extends Serializable> extends SkipList_Base implements D
         };
     }
 
+    // returns the last node whose key is smaller than (or equal to, if inclusive) the given key.  It may be the head.
+    private SkipListNode findPredecessor(Comparable key, boolean inclusive) {
+        SkipListNode node = getHead();
+        for (int i = getLevel(); i >= 0; i--) {
+            SkipListNode next = node.getForward(i);
+            int cmp;
+            // the tombs know how to compare themselves with any key, so they must be on the left side
+            while ((cmp = next.getKeyValue().key.compareTo(key)) < 0 || (cmp == 0 && inclusive)) {
+                node = next;
+                next = node.getForward(i);
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public Comparable floorKey(Comparable key) {
+        Comparable floor = findPredecessor(key, true).getKeyValue().key;
+        return floor instanceof TombKey ? null : floor;
+    }
+
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        Comparable ceiling = findPredecessor(key, false).getForward(0).getKeyValue().key;
+        return ceiling instanceof TombKey ? null : ceiling;
+    }
+
+    /**
+     * Returns a cursor over the values whose keys are in the given range. The first node in the range is found by descending
+     * the levels of the skip list, as in a lookup.
+     */
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, final Comparable toKey, final boolean toInclusive) {
+        // to skip the entries equal to an exclusive fromKey, look for the last node with a key smaller than or equal to it
+        final SkipListNode start =
+                fromKey == null ? getHead().getForward(0) : findPredecessor(fromKey, !fromInclusive).getForward(0);
+
+        return new Cursor<T>() {
+
+            private SkipListNode iter = inRange(start) ? start : null;
+            private Comparable lastKey;
+            private boolean hasLastKey = false;
+
+            private boolean inRange(SkipListNode node) {
+                Comparable key = node.getKeyValue().key;
+                if (key instanceof TombKey) {
+                    return false;
+                } else if (toKey == null) {
+                    return true;
+                }
+                int cmp = key.compareTo(toKey);
+                return cmp < 0 || (cmp == 0 && toInclusive);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iter != null;
+            }
+
+            @Override
+            public T next() {
+                if (iter == null) {
+                    throw new NoSuchElementException();
+                }
+                KeyValue keyValue = iter.getKeyValue();
+                lastKey = keyValue.key;
+                hasLastKey = true;
+                SkipListNode following = iter.getForward(0);
+                iter = inRange(following) ? following : null;
+                return (T) keyValue.value;
+            }
+
+            @Override
+            public Comparable getKey() {
+                if (!hasLastKey) {
+                    throw new IllegalStateException();
+                }
+                return lastKey;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("This implementation does not allow element removal via the iterator");
+            }
+
+        };
+    }
+
     @Override
     public boolean remove(Comparable key) {
         return removeKey(key);
@@ -183,8 +274,18 @@ public class SkipList<T extends Serializable> extends SkipList_Base implements D
         return containsKey(key);
     }
 
+    /**
+     * Returns the number of elements in this list. This reads the size counters instead of going through the list, except for
+     * lists that were created before the size was maintained and were not changed since.
+     */
     @Override
     public int size() {
+        SizeStripe sizeStripes = getSizeStripes();
+        return sizeStripes == null ? countElements() : SizeStripe.sum(sizeStripes);
+    }
+
+    // goes through the whole list
+    private int countElements() {
         Iterator<T> iter = this.iterator();
         int size = 0;
         while (iter.hasNext()) {
@@ -194,6 +295,39 @@ public class SkipList<T extends Serializable> extends SkipList_Base implements D
         return size;
     }
 
+    // Must be invoked after the change to the list.  When there are no counters yet (either because this list is new, or
+    // because it was created before the size was maintained) the first counter starts with the current number of elements.
+    private void updateSize(int delta) {
+        SizeStripe sizeStripes = getSizeStripes();
+        if (sizeStripes == null) {
+            setSizeStripes(new SizeStripe(SizeStripe.currentIndex(), countElements(), null));
+        } else {
+            SizeStripe newSizeStripes = SizeStripe.add(sizeStripes, delta);
+            if (newSizeStripes != sizeStripes) {
+                setSizeStripes(newSizeStripes);
+            }
+        }
+    }
+
+    /**
+     * Completely deletes this <code>SkipList</code>, including its nodes and its size counters. Does not delete any
+     * {@link pt.ist.fenixframework.DomainObject} contained in the list.
+     */
+    public void delete() {
+        // every node, including the head and the tail, is in the bottom level
+        SkipListNode node = getHead();
+        setHead(null);
+        while (node != null) {
+            SkipListNode next = node.getForward(0);
+            node.deleteDomainObject();
+            node = next;
+        }
+        SizeStripe sizeStripes = getSizeStripes();
+        setSizeStripes(null);
+        SizeStripe.deleteAll(sizeStripes);
+        deleteDomainObject();
+    }
+
     @Override
     public void put(Comparable key, T value) {
         insert(key, value);
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.core.DmlFile;
 import pt.ist.fenixframework.core.Project;
+import pt.ist.fenixframework.core.SharedIdentityMap;
 import pt.ist.fenixframework.core.exception.ProjectException;
 import pt.ist.fenixframework.util.Converter;
 import pt.ist.fenixframework.util.FenixFrameworkThread;
@@ -127,6 +128,15 @@ public abstract class Config {
      */
     protected String jGroupsConfigFile = "fenix-framework-udp-jgroups.xml";
 
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum number of objects that each of the framework's caches
+     * (such as the {@link pt.ist.fenixframework.core.SharedIdentityMap}) keeps when they are not reachable otherwise. When it is
+     * set, the caches keep their most used objects, up to this number, and count their hits, misses and evictions. The default
+     * value for this parameter is <code>0</code>, which leaves the caches unbounded, with their objects softly referenced, so
+     * that the GC decides how many of them to keep.
+     */
+    protected int maxCachedObjects = 0;
+
     protected void checkRequired(Object obj, String fieldName) {
         if (obj == null) {
             missingRequired(fieldName);
@@ -160,6 +170,7 @@ public abstract class Config {
      */
     protected final void initialize() {
         checkConfig();
+        SharedIdentityMap.getCache().setMaxRetainedObjects(maxCachedObjects);
         init();
     }
 
@@ -317,6 +328,14 @@ public abstract class Config {
         }
     }
 
+    protected void maxCachedObjectsFromString(String value) {
+        try {
+            maxCachedObjects = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
     protected abstract void init();
 
     /**
@@ -352,6 +371,10 @@ public abstract class Config {
         return expectedInitialNodes;
     }
 
+    public int getMaxCachedObjects() {
+        return maxCachedObjects;
+    }
+
     public String getJGroupsConfigFile() {
         return jGroupsConfigFile;
     }
@@ -3,6 +3,8 @@ package pt.ist.fenixframework;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 
@@ -404,6 +406,36 @@ public class FenixFramework {
         return getConfig().getBackEnd().getDomainObject(externalId);
     }
 
+    /**
+     * Get the {@link DomainObject}s with the given external identifiers. The result is the same as invoking
+     * {@link #getDomainObject(String)} for each of them, but backends that must go to their storage to get the objects can get
+     * them all at once.
+     * 
+     * @param externalIds The external identifiers of the domain objects to get
+     * @return The domain objects requested, in the order of the given external identifiers, with <code>null</code> for each
+     *         <code>null</code> identifier
+     * 
+     */
+    public static <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds) {
+        return getConfig().getBackEnd().getDomainObjects(externalIds);
+    }
+
+    /**
+     * Loads the given {@link DomainObject}s, and the objects reachable from them through each of the given role paths, before
+     * they are used. A role path is a sequence of role names separated by dots (e.g. <code>"students.grades"</code>), which are
+     * followed from each of the objects. Backends that load the objects lazily from their storage load them here with a bounded
+     * number of queries per role, instead of one (or more) for each object, when it is first accessed. Otherwise, this method
+     * does nothing.
+     * 
+     * This method must be invoked within a transaction, and the objects are loaded as seen by that transaction.
+     * 
+     * @param objects The objects from which the role paths are followed, in which <code>null</code> elements are ignored
+     * @param rolePaths The role paths to follow
+     */
+    public static void prefetch(Collection<? extends DomainObject> objects, String... rolePaths) {
+        getConfig().getBackEnd().prefetch(objects, rolePaths);
+    }
+
     public static TransactionManager getTransactionManager() {
         return getConfig().getBackEnd().getTransactionManager();
     }
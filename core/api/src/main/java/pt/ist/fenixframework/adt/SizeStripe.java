@@ -0,0 +1,67 @@
+package pt.ist.fenixframework.adt;
+
+import pt.ist.fenixframework.NoDomainMetaObjects;
+
+/**
+ * The number of elements in a collection (the B+Trees, linked lists and skip lists of the ADT modules) is kept in a chain of
+ * these counters, so that reading the size does not need to go through the whole collection.
+ * Each thread updates the counter with its own index, which means that concurrent insertions and removals seldom write the same
+ * counter. Only the sum of all the counters is meaningful: a single counter may even be negative.
+ *
+ * Counters are created lazily, the first time a thread with a given index changes the collection. The owner of a chain must
+ * delete it, with {@link #deleteAll(SizeStripe)}, when the owner itself is deleted.
+ */
+@NoDomainMetaObjects
+public class SizeStripe extends SizeStripe_Base {
+
+    // the maximum number of counters per collection
+    static final int NUMBER_OF_STRIPES = 8;
+
+    public SizeStripe(int index, int count, SizeStripe next) {
+        super();
+        setIndex(index);
+        setCount(count);
+        setNext(next);
+    }
+
+    public static int currentIndex() {
+        return (int) (Thread.currentThread().getId() % NUMBER_OF_STRIPES);
+    }
+
+    /** Returns the sum of the counters in the chain that starts at the given stripe */
+    public static int sum(SizeStripe first) {
+        int total = 0;
+        for (SizeStripe stripe = first; stripe != null; stripe = stripe.getNext()) {
+            total += stripe.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Adds the given delta to the current thread's counter, creating it if needed.
+     *
+     * @return The (possibly new) first stripe of the chain
+     */
+    public static SizeStripe add(SizeStripe first, int delta) {
+        int index = currentIndex();
+        for (SizeStripe stripe = first; stripe != null; stripe = stripe.getNext()) {
+            if (stripe.getIndex() == index) {
+                stripe.setCount(stripe.getCount() + delta);
+                return first;
+            }
+        }
+        return new SizeStripe(index, delta, first);
+    }
+
+    /** Deletes all the stripes in the chain that starts at the given stripe */
+    public static void deleteAll(SizeStripe first) {
+        SizeStripe stripe = first;
+        while (stripe != null) {
+            SizeStripe next = stripe.getNext();
+            stripe.setNext(null);
+            stripe.deleteDomainObject();
+            stripe = next;
+        }
+    }
+
+}
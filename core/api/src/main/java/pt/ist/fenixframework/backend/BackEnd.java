@@ -1,5 +1,8 @@
 package pt.ist.fenixframework.backend;
 
+import java.util.Collection;
+import java.util.List;
+
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
 import pt.ist.fenixframework.TransactionManager;
@@ -28,6 +31,16 @@ public interface BackEnd {
      */
     public <T extends DomainObject> T getDomainObject(String externalId);
 
+    /**
+     * @see pt.ist.fenixframework.FenixFramework#getDomainObjects(Collection)
+     */
+    public <T extends DomainObject> List<T> getDomainObjects(Collection<String> externalIds);
+
+    /**
+     * @see pt.ist.fenixframework.FenixFramework#prefetch(Collection, String...)
+     */
+    public void prefetch(Collection<? extends DomainObject> objects, String... rolePaths);
+
     /**
      * @see pt.ist.fenixframework.FenixFramework#getTransactionManager()
      */
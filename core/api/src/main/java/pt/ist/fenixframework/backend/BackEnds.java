@@ -0,0 +1,43 @@
+package pt.ist.fenixframework.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import pt.ist.fenixframework.DomainObject;
+
+/**
+ * Implementations of {@link BackEnd} methods that are shared by several back ends.
+ */
+public final class BackEnds {
+
+    private BackEnds() {
+    }
+
+    /**
+     * Gets each of the given objects with {@link BackEnd#getDomainObject(String)}. This suits the back ends whose
+     * <code>getDomainObject</code> does not go to their storage, and those that cannot get many objects at once.
+     *
+     * @return The domain objects, in the order of the given external identifiers, with <code>null</code> for each
+     *         <code>null</code> identifier
+     *
+     * @see pt.ist.fenixframework.FenixFramework#getDomainObjects(Collection)
+     */
+    public static <T extends DomainObject> List<T> getDomainObjects(BackEnd backEnd, Collection<String> externalIds) {
+        List<T> objects = new ArrayList<T>(externalIds.size());
+        for (String externalId : externalIds) {
+            objects.add(externalId == null ? null : backEnd.<T> getDomainObject(externalId));
+        }
+        return objects;
+    }
+
+    /**
+     * Loads nothing. This suits the back ends that keep their objects in memory, and those that go to their storage once for
+     * each object or slot anyway, for which loading the objects up front saves no round trips.
+     *
+     * @see pt.ist.fenixframework.FenixFramework#prefetch(Collection, String...)
+     */
+    public static void prefetchNothing(Collection<? extends DomainObject> objects, String... rolePaths) {
+    }
+
+}
@@ -0,0 +1,196 @@
+package pt.ist.fenixframework.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps strong references to at most a fixed number of objects, choosing which ones to keep with a generalized CLOCK policy.
+ * The caches that only hold their objects through weak references use it to keep their most used objects, so that the number
+ * of objects that they retain is bounded, instead of depending on the GC's heuristics for soft references.
+ *
+ * Each retained object has a small counter, which is incremented on each hit, up to {@link #MAX_COUNT}. When an object must be
+ * evicted to make room for another, the clock hand goes around the slots, decrementing the counters it finds, and evicts the
+ * first object whose counter is already zero. The objects are admitted with a zero counter, so that a scan over many objects
+ * that are used only once evicts mostly the objects of that same scan, rather than the ones that are used repeatedly.
+ *
+ * The retention does not know how to find the slot of an object. Each object is retained on behalf of an owner (typically, the
+ * cache entry that maps to the object), which keeps the object's slot. Hits do not lock: they only bump the counter of the slot
+ * if it still holds the same object. The admissions and evictions lock the retention.
+ */
+public final class ClockRetention<T> {
+
+    /** The owner of a retained object, which keeps the slot where the object is */
+    public interface Owner {
+        /** Returns the last slot given to this owner, or a negative number if there is none */
+        public int getRetentionSlot();
+
+        public void setRetentionSlot(int slot);
+    }
+
+    /** The maximum value of the counter of each object. Thus, an object that is hit often survives this many sweeps. */
+    static final int MAX_COUNT = 3;
+
+    private final Object[] objects;
+    private final Owner[] owners;
+    private final byte[] counts;
+    // the number of slots in use, which only grows until it reaches the capacity.  Guarded by this retention's lock.
+    private int used = 0;
+    // the next slot to visit when looking for an object to evict.  Guarded by this retention's lock.
+    private int hand = 0;
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+
+    public ClockRetention(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.objects = new Object[capacity];
+        this.owners = new Owner[capacity];
+        this.counts = new byte[capacity];
+    }
+
+    public int getCapacity() {
+        return this.objects.length;
+    }
+
+    /**
+     * Records a hit on the given object. If the object is retained, its counter is incremented. Otherwise (e.g. it was evicted
+     * but remained reachable), the object is retained again.
+     */
+    public void hit(Owner owner, T object) {
+        this.hits.increment();
+        int slot = owner.getRetentionSlot();
+        // The slot may have been given to another object in the meantime, in which case the object must be admitted again.
+        // These reads and the increment are not locked, so they race with other hits and with the clock hand: an increment may
+        // be lost, or go to an object that has just taken the slot, or take the counter one or two above MAX_COUNT.  Either
+        // way, only the choice of the next victims is a bit off.  The objects and owners themselves only change under the
+        // lock, and admit checks the slot again, so a hit never leaves an object retained twice or an owner with a wrong slot.
+        if (slot >= 0 && this.objects[slot] == object) {
+            if (this.counts[slot] < MAX_COUNT) {
+                this.counts[slot]++;
+            }
+        } else {
+            admit(owner, object);
+        }
+    }
+
+    /** Records a miss, i.e., a lookup of an object that was not cached */
+    public void miss() {
+        this.misses.increment();
+    }
+
+    /** Retains the given object, evicting another one, if needed */
+    public synchronized void admit(Owner owner, T object) {
+        int slot = owner.getRetentionSlot();
+        if (slot >= 0 && this.objects[slot] == object) {
+            return;
+        }
+
+        if (this.used < this.objects.length) {
+            slot = this.used++;
+        } else {
+            slot = findVictim();
+            this.owners[slot].setRetentionSlot(-1);
+            this.evictions.increment();
+        }
+        this.objects[slot] = object;
+        this.owners[slot] = owner;
+        this.counts[slot] = 0;
+        owner.setRetentionSlot(slot);
+    }
+
+    // terminates after at most MAX_COUNT + 1 turns of the clock, when every counter has been decremented to zero
+    private int findVictim() {
+        while (true) {
+            int slot = this.hand;
+            this.hand = (slot + 1) % this.objects.length;
+            if (this.counts[slot] == 0) {
+                return slot;
+            }
+            this.counts[slot]--;
+        }
+    }
+
+    /** Releases all the retained objects */
+    public synchronized void clear() {
+        for (int i = 0; i < this.used; i++) {
+            this.owners[i].setRetentionSlot(-1);
+            this.owners[i] = null;
+            this.objects[i] = null;
+            this.counts[i] = 0;
+        }
+        this.used = 0;
+        this.hand = 0;
+    }
+
+    /** Adds the objects currently retained to the given collection */
+    public void addRetainedObjectsTo(Collection<? super T> collection) {
+        addRetainedObjectsTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds up to <code>max</code> of the objects currently retained to the given collection. The objects are copied under the
+     * lock, and only added to the collection after it is released, so that admissions do not wait for the collection.
+     */
+    public void addRetainedObjectsTo(Collection<? super T> collection, int max) {
+        Object[] retained;
+        synchronized (this) {
+            retained = Arrays.copyOf(this.objects, Math.min(this.used, max));
+        }
+        for (Object retainedObject : retained) {
+            // admit only ever stores objects of type T
+            @SuppressWarnings("unchecked")
+            T object = (T) retainedObject;
+            collection.add(object);
+        }
+    }
+
+    /** Returns the number of objects currently retained */
+    public synchronized int size() {
+        return this.used;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ClockRetention[capacity=" + getCapacity() + ", size=" + size() + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    // Hits are counted on every lookup, by every thread, so each thread increments one of several cells, each in its own cache
+    // line, instead of contending on a single counter.
+    private static final class StripedCounter {
+        private static final int STRIPES = 16;
+        // the distance between the cells, in longs, so that each one is in a different cache line
+        private static final int PADDING = 8;
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+        void increment() {
+            int stripe = (int) (Thread.currentThread().getId() % STRIPES);
+            this.cells.incrementAndGet(stripe * PADDING);
+        }
+
+        long get() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += this.cells.get(i * PADDING);
+            }
+            return sum;
+        }
+    }
+}
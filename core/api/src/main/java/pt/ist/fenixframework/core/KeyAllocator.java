@@ -0,0 +1,69 @@
+package pt.ist.fenixframework.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out the object keys of a domain class, i.e., the lower part of the OIDs of its instances, without making the threads
+ * that create objects of the same class wait for each other.
+ *
+ * The keys are reserved in blocks, with a single atomic increment of the last reserved key, and then handed out from the block.
+ * Instead of keeping one block per thread, which would take memory for each pair of thread and class for as long as the thread
+ * lives, the allocator keeps a fixed number of blocks, and each thread takes its keys from the block of its stripe. The keys of
+ * a block that are not used (e.g., because the server stopped) are simply skipped: the keys need only be unique, not
+ * contiguous. {@link #getLastKey()} is never below any key handed out, so a new allocator that starts from it never hands out
+ * the same key again.
+ */
+public final class KeyAllocator {
+
+    // the number of keys reserved at once
+    static final int BLOCK_SIZE = 32;
+    private static final int STRIPES = 8;
+    // the distance between the blocks, in longs, so that each one is in a different cache line
+    private static final int PADDING = 8;
+    // a block whose next key is above its last key, which is where every stripe starts
+    private static final long EMPTY_BLOCK = 1L;
+
+    private final AtomicInteger lastKey;
+    // each block holds the next key to hand out in its lower 32 bits and the last key reserved for it in the upper 32 bits
+    private final AtomicLongArray blocks = new AtomicLongArray(STRIPES * PADDING);
+
+    /** Creates an allocator whose first key is the one after the given key */
+    public KeyAllocator(int lastKey) {
+        this.lastKey = new AtomicInteger(lastKey);
+        for (int i = 0; i < STRIPES; i++) {
+            this.blocks.set(i * PADDING, EMPTY_BLOCK);
+        }
+    }
+
+    /** Returns the maximum key reserved so far, which is the one to persist so that no key is ever handed out twice */
+    public int getLastKey() {
+        return this.lastKey.get();
+    }
+
+    public int nextKey() {
+        int index = (int) (Thread.currentThread().getId() % STRIPES) * PADDING;
+        while (true) {
+            long block = this.blocks.get(index);
+            int next = (int) block;
+            int last = (int) (block >>> 32);
+            if (next <= last) {
+                if (this.blocks.compareAndSet(index, block, block + 1)) {
+                    return next;
+                }
+            } else {
+                int newLast = this.lastKey.addAndGet(BLOCK_SIZE);
+                int newNext = newLast - BLOCK_SIZE + 1;
+                // if another thread of the same stripe reserved a block first, the keys of this one are skipped
+                if (this.blocks.compareAndSet(index, block, ((long) newLast << 32) | (newNext + 1))) {
+                    return newNext;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeyAllocator[lastKey=" + getLastKey() + "]";
+    }
+}
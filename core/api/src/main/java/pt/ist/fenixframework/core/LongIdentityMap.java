@@ -0,0 +1,284 @@
+package pt.ist.fenixframework.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent map from primitive <code>long</code> OIDs to softly referenced domain objects, used by the
+ * {@link SharedIdentityMap} for the backends whose OIDs are longs. Unlike a <code>ConcurrentHashMap</code>, it does not box the
+ * keys, nor does it create a node per mapping: each mapping is only the soft reference itself (which holds the key), in a slot
+ * of an open-addressing table.
+ *
+ * The map is split in segments, each with its own table. Lookups do not lock: they probe the table until they find the key or
+ * an empty slot. The changes lock the segment. Removed mappings leave a marker in their slot, so that lookups keep probing past
+ * it, and the markers are dropped when the table is rebuilt. A lookup that races with a change may miss a mapping that is
+ * being added, but never returns a wrong object: the callers then go through {@link #cache}, which decides under the lock.
+ *
+ * The objects are softly referenced, unless the map is told to use weak references, which is what the
+ * {@link SharedIdentityMap} does when the number of objects that it retains is bounded.
+ */
+final class LongIdentityMap {
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** A reference to a cached object, which also holds the object's key */
+    interface Entry {
+        long key();
+
+        AbstractDomainObject get();
+    }
+
+    static final class SoftEntry extends SoftReference<AbstractDomainObject> implements Entry {
+        private final long key;
+
+        SoftEntry(AbstractDomainObject object, long key, ReferenceQueue<? super AbstractDomainObject> q) {
+            super(object, q);
+            this.key = key;
+        }
+
+        @Override
+        public long key() {
+            return this.key;
+        }
+    }
+
+    static final class WeakEntry extends WeakReference<AbstractDomainObject> implements Entry, ClockRetention.Owner {
+        private final long key;
+        private int retentionSlot = -1;
+
+        WeakEntry(AbstractDomainObject object, long key, ReferenceQueue<? super AbstractDomainObject> q) {
+            super(object, q);
+            this.key = key;
+        }
+
+        @Override
+        public long key() {
+            return this.key;
+        }
+
+        @Override
+        public int getRetentionSlot() {
+            return this.retentionSlot;
+        }
+
+        @Override
+        public void setRetentionSlot(int slot) {
+            this.retentionSlot = slot;
+        }
+    }
+
+    // marks the slots whose entries were removed
+    private static final Entry REMOVED = new SoftEntry(null, 0L, null);
+
+    private final Segment[] segments;
+    // whether the new entries are weak, rather than soft, references
+    private volatile boolean weakEntries = false;
+
+    LongIdentityMap() {
+        this.segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < this.segments.length; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    // OIDs usually differ only in their lower bits, so these must be spread to the bits that choose the segment
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Segment segmentFor(int hash) {
+        return this.segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    void setWeakEntries(boolean weakEntries) {
+        this.weakEntries = weakEntries;
+    }
+
+    /** Returns the object cached with the given key, or <code>null</code> if there is none (or it was GCed already) */
+    AbstractDomainObject lookup(long key) {
+        Entry entry = getEntry(key);
+        return entry == null ? null : entry.get();
+    }
+
+    /** Returns the entry with the given key, or <code>null</code> if there is none */
+    Entry getEntry(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Caches the given object, unless another object is already cached with the same key. In either case, returns the object
+     * that was left in the cache.
+     */
+    AbstractDomainObject cache(AbstractDomainObject obj, long key, ReferenceQueue<? super AbstractDomainObject> queue) {
+        int hash = hash(key);
+        return segmentFor(hash).cache(obj, key, hash, queue, this.weakEntries);
+    }
+
+    /** Removes the given entry, if it is still in the map */
+    void remove(Entry entry) {
+        int hash = hash(entry.key());
+        segmentFor(hash).remove(entry, hash);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /** Adds the objects currently in the map to the given collection */
+    void addCachedObjectsTo(Collection<? super AbstractDomainObject> objects) {
+        addCachedObjectsTo(objects, Integer.MAX_VALUE);
+    }
+
+    /** Adds up to <code>max</code> of the objects currently in the map to the given collection, and returns how many it added */
+    int addCachedObjectsTo(Collection<? super AbstractDomainObject> objects, int max) {
+        int added = 0;
+        for (Segment segment : this.segments) {
+            AtomicReferenceArray<Entry> table = segment.table;
+            for (int i = 0; i < table.length() && added < max; i++) {
+                Entry entry = table.get(i);
+                AbstractDomainObject obj = entry == null ? null : entry.get();
+                if (obj != null) {
+                    objects.add(obj);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    private static final class Segment {
+        // replaced (never resized in place) when it is rebuilt, so that lookups can go on with the previous one
+        volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<Entry>(INITIAL_CAPACITY);
+        // the number of slots with entries
+        volatile int count = 0;
+        // the number of slots with entries or removal markers.  Guarded by this segment's lock.
+        private int used = 0;
+
+        Entry get(long key, int hash) {
+            AtomicReferenceArray<Entry> tab = this.table;
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            while (true) {
+                Entry entry = tab.get(index);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.key() == key && entry != REMOVED) {
+                    return entry;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        synchronized AbstractDomainObject cache(AbstractDomainObject obj, long key, int hash,
+                ReferenceQueue<? super AbstractDomainObject> queue, boolean weak) {
+            AtomicReferenceArray<Entry> tab = this.table;
+            // the table is never left more than 3/4 full, so that the probing always finds an empty slot
+            if (this.used >= (tab.length() >> 2) * 3) {
+                tab = rebuild();
+            }
+
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            int free = -1;
+            Entry entry;
+            while ((entry = tab.get(index)) != null) {
+                if (entry == REMOVED) {
+                    if (free < 0) {
+                        free = index;
+                    }
+                } else if (entry.key() == key) {
+                    AbstractDomainObject objInCache = entry.get();
+                    if (objInCache != null) {
+                        return objInCache;
+                    }
+                    // the object in cache was GCed already, so its entry is replaced
+                    tab.set(index, newEntry(obj, key, queue, weak));
+                    return obj;
+                }
+                index = (index + 1) & mask;
+            }
+
+            if (free >= 0) {
+                index = free;
+            } else {
+                this.used++;
+            }
+            tab.set(index, newEntry(obj, key, queue, weak));
+            this.count++;
+            return obj;
+        }
+
+        private static Entry newEntry(AbstractDomainObject obj, long key, ReferenceQueue<? super AbstractDomainObject> queue,
+                boolean weak) {
+            return weak ? new WeakEntry(obj, key, queue) : new SoftEntry(obj, key, queue);
+        }
+
+        synchronized void remove(Entry toRemove, int hash) {
+            AtomicReferenceArray<Entry> tab = this.table;
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            Entry entry;
+            while ((entry = tab.get(index)) != null) {
+                if (entry == toRemove) {
+                    tab.set(index, REMOVED);
+                    this.count--;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        // copies the entries whose objects were not GCed to a new table, which doubles in size only when half of the current
+        // one has entries.  Otherwise, the rebuild only drops the removal markers.
+        private AtomicReferenceArray<Entry> rebuild() {
+            AtomicReferenceArray<Entry> oldTable = this.table;
+            int capacity = oldTable.length();
+            if (this.count >= capacity / 2) {
+                capacity <<= 1;
+            }
+
+            AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<Entry>(capacity);
+            int mask = capacity - 1;
+            int newCount = 0;
+            for (int i = 0; i < oldTable.length(); i++) {
+                Entry entry = oldTable.get(i);
+                if (entry == null || entry == REMOVED || entry.get() == null) {
+                    continue;
+                }
+                int index = hash(entry.key()) & mask;
+                while (newTable.get(index) != null) {
+                    index = (index + 1) & mask;
+                }
+                newTable.set(index, entry);
+                newCount++;
+            }
+
+            this.used = newCount;
+            this.count = newCount;
+            this.table = newTable;
+            return newTable;
+        }
+
+        synchronized void clear() {
+            this.table = new AtomicReferenceArray<Entry>(INITIAL_CAPACITY);
+            this.used = 0;
+            this.count = 0;
+        }
+    }
+}
@@ -1,18 +1,44 @@
 package pt.ist.fenixframework.core;
 
+import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The identity map shared by all the threads. The objects whose OIDs are {@link Long}s (as in the JVSTM-based backends) are
+ * kept in a {@link LongIdentityMap}, which is keyed by the primitive longs. Those backends should use {@link #lookup(long)}, so
+ * that the OIDs are not boxed on each lookup. The objects with any other type of OID are kept in a
+ * <code>ConcurrentHashMap</code>.
+ *
+ * By default, the objects are softly referenced, so the number of objects that stay cached depends on the GC's heuristics.
+ * Alternatively, the number of cached objects may be bounded (see {@link #setMaxRetainedObjects(int)}). The objects are then
+ * weakly referenced, and a {@link ClockRetention} keeps the objects that are looked up most often, up to the given number.
+ * The objects that are evicted from the retention remain cached while they are reachable, as each OID must always map to the
+ * same object.
+ */
 public class SharedIdentityMap implements IdentityMap {
     private final static SharedIdentityMap instance = new SharedIdentityMap();
 
     private static final ReferenceQueue<AbstractDomainObject> refQueue = new ReferenceQueue<AbstractDomainObject>();
 
+    // The maximum number of GCed entries removed by each call to cache().  After a large GC, the cleanup is thus spread among
+    // many calls, instead of being paid by a single thread.  Lookups do no cleanup at all.
+    private static final int MAX_GCED_ENTRIES_PER_CALL = 64;
+
     private final ConcurrentHashMap<Object, CacheEntry> cache;
+    private final LongIdentityMap longCache;
+    // null while the number of retained objects is unbounded
+    private volatile ClockRetention<AbstractDomainObject> retention = null;
 
     public SharedIdentityMap() {
         this.cache = new ConcurrentHashMap<Object, CacheEntry>();
+        this.longCache = new LongIdentityMap();
     }
 
     public static SharedIdentityMap getCache() {
@@ -27,24 +53,113 @@ public class SharedIdentityMap implements IdentityMap {
                 System.out.println(value.getExternalId());
             }
         }
+        List<AbstractDomainObject> longKeyedObjects = new ArrayList<AbstractDomainObject>();
+        this.longCache.addCachedObjectsTo(longKeyedObjects);
+        for (AbstractDomainObject value : longKeyedObjects) {
+            System.out.println(value.getExternalId());
+        }
         System.out.println("\n  == SharedIdentityMap contents [END] == \n");
     }
 
+    /**
+     * Adds the objects currently cached to the given collection. When the number of retained objects is bounded, only the
+     * retained objects, which are the most used ones, are added.
+     */
+    public void addCachedObjectsTo(Collection<? super AbstractDomainObject> objects) {
+        addCachedObjectsTo(objects, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds up to <code>max</code> of the objects currently cached to the given collection, as
+     * {@link #addCachedObjectsTo(Collection)}. When the number of retained objects is not bounded, there is no telling which
+     * cached objects are used the most, so the first ones found are added.
+     */
+    public void addCachedObjectsTo(Collection<? super AbstractDomainObject> objects, int max) {
+        ClockRetention<AbstractDomainObject> retention = this.retention;
+        if (retention != null) {
+            retention.addRetainedObjectsTo(objects, max);
+            return;
+        }
+        int added = 0;
+        Iterator<CacheEntry> entries = this.cache.values().iterator();
+        while (added < max && entries.hasNext()) {
+            AbstractDomainObject obj = entries.next().get();
+            if (obj != null) {
+                objects.add(obj);
+                added++;
+            }
+        }
+        this.longCache.addCachedObjectsTo(objects, max - added);
+    }
+
     public int size() {
-        return this.cache.size();
+        return this.cache.size() + this.longCache.size();
+    }
+
+    /**
+     * Bounds the number of objects that this map keeps cached when they are not reachable otherwise. Only the objects cached
+     * after this call are subject to the bound.
+     *
+     * @param maxObjects The maximum number of objects retained, or <code>0</code> to leave it to the GC (the default)
+     */
+    public synchronized void setMaxRetainedObjects(int maxObjects) {
+        ClockRetention<AbstractDomainObject> previous = this.retention;
+        if (previous != null) {
+            previous.clear();
+        }
+        this.retention = maxObjects > 0 ? new ClockRetention<AbstractDomainObject>(maxObjects) : null;
+        this.longCache.setWeakEntries(maxObjects > 0);
+    }
+
+    /**
+     * Returns the retention that bounds the number of cached objects (with its counters), or <code>null</code> if there is none
+     */
+    public ClockRetention<AbstractDomainObject> getRetention() {
+        return this.retention;
     }
 
     @Override
     public AbstractDomainObject cache(AbstractDomainObject obj) {
         processQueue();
+        ClockRetention<AbstractDomainObject> retention = this.retention;
         Object key = obj.getOid();
-        CacheEntry newEntry = new CacheEntry(obj, key, this.refQueue);
+        if (key instanceof Long) {
+            long longKey = ((Long) key).longValue();
+            AbstractDomainObject cached = this.longCache.cache(obj, longKey, this.refQueue);
+            if (retention != null) {
+                admit(retention, this.longCache.getEntry(longKey), cached);
+            }
+            return cached;
+        }
+        CacheEntry newEntry =
+                retention != null ? new WeakCacheEntry(obj, key, this.refQueue) : new SoftCacheEntry(obj, key, this.refQueue);
+
+        AbstractDomainObject cached = cacheNewEntry(newEntry, obj);
+        if (retention != null) {
+            admit(retention, this.cache.get(key), cached);
+        }
+        return cached;
+    }
 
-        return cacheNewEntry(newEntry, obj);
+    // the entries created before the retention was set are soft references, and are left alone
+    private static void admit(ClockRetention<AbstractDomainObject> retention, Object entry, AbstractDomainObject obj) {
+        if (entry instanceof ClockRetention.Owner) {
+            retention.admit((ClockRetention.Owner) entry, obj);
+        }
+    }
+
+    private static AbstractDomainObject hitOrMiss(ClockRetention<AbstractDomainObject> retention, Object entry,
+            AbstractDomainObject obj) {
+        if (obj == null) {
+            retention.miss();
+        } else if (entry instanceof ClockRetention.Owner) {
+            retention.hit((ClockRetention.Owner) entry, obj);
+        }
+        return obj;
     }
 
     private AbstractDomainObject cacheNewEntry(CacheEntry newEntry, AbstractDomainObject obj) {
-        CacheEntry entryInCache = putIfAbsent(this.cache, newEntry.key, newEntry);
+        CacheEntry entryInCache = putIfAbsent(this.cache, newEntry.key(), newEntry);
 
         if (entryInCache == newEntry) {
             return obj;
@@ -62,30 +177,47 @@ public class SharedIdentityMap implements IdentityMap {
 
     @Override
     public AbstractDomainObject lookup(Object key) {
-        processQueue();
+        if (key instanceof Long) {
+            return lookup(((Long) key).longValue());
+        }
         CacheEntry entry = this.cache.get(key);
+        AbstractDomainObject result = null;
         if (entry != null) {
-            AbstractDomainObject result = entry.get();
-            if (result != null) {
-                return result;
-            } else {
+            result = entry.get();
+            if (result == null) {
                 removeEntry(entry);
-                return null;
             }
-        } else {
-            return null;
         }
+        ClockRetention<AbstractDomainObject> retention = this.retention;
+        return retention == null ? result : hitOrMiss(retention, entry, result);
+    }
+
+    /**
+     * Looks up an object whose OID is a {@link Long}, without boxing the OID.
+     */
+    public AbstractDomainObject lookup(long oid) {
+        ClockRetention<AbstractDomainObject> retention = this.retention;
+        if (retention == null) {
+            return this.longCache.lookup(oid);
+        }
+        LongIdentityMap.Entry entry = this.longCache.getEntry(oid);
+        return hitOrMiss(retention, entry, entry == null ? null : entry.get());
     }
 
     private void removeEntry(CacheEntry entry) {
-        this.cache.remove(entry.key, entry);
+        this.cache.remove(entry.key(), entry);
     }
 
     /**
      * This method is invoked when shutting down. It clears the cache contents.
      */
     public void shutdown() {
+        ClockRetention<AbstractDomainObject> retention = this.retention;
+        if (retention != null) {
+            retention.clear();
+        }
         this.cache.clear();
+        this.longCache.clear();
     }
 
     /* This method stores the new value if an older one didn't exist already.  In either case it returns the value that was left
@@ -100,20 +232,63 @@ public class SharedIdentityMap implements IdentityMap {
         return ((oldValue == null) ? value : oldValue);
     }
 
+    // removes at most MAX_GCED_ENTRIES_PER_CALL entries.  Polling an empty queue does not lock it.
     private void processQueue() {
-        CacheEntry gcedEntry = (CacheEntry) refQueue.poll();
-        while (gcedEntry != null) {
-            removeEntry(gcedEntry);
-            gcedEntry = (CacheEntry) refQueue.poll();
+        for (int i = 0; i < MAX_GCED_ENTRIES_PER_CALL; i++) {
+            Reference<? extends AbstractDomainObject> gcedEntry = refQueue.poll();
+            if (gcedEntry == null) {
+                return;
+            }
+            if (gcedEntry instanceof CacheEntry) {
+                removeEntry((CacheEntry) gcedEntry);
+            } else {
+                this.longCache.remove((LongIdentityMap.Entry) gcedEntry);
+            }
         }
     }
 
-    private static class CacheEntry extends SoftReference<AbstractDomainObject> {
+    private interface CacheEntry {
+        Object key();
+
+        AbstractDomainObject get();
+    }
+
+    private static class SoftCacheEntry extends SoftReference<AbstractDomainObject> implements CacheEntry {
         private final Object key;
 
-        CacheEntry(AbstractDomainObject object, Object key, ReferenceQueue q) {
+        SoftCacheEntry(AbstractDomainObject object, Object key, ReferenceQueue q) {
             super(object, q);
             this.key = key;
         }
+
+        @Override
+        public Object key() {
+            return this.key;
+        }
+    }
+
+    private static class WeakCacheEntry extends WeakReference<AbstractDomainObject> implements CacheEntry, ClockRetention.Owner {
+        private final Object key;
+        private int retentionSlot = -1;
+
+        WeakCacheEntry(AbstractDomainObject object, Object key, ReferenceQueue q) {
+            super(object, q);
+            this.key = key;
+        }
+
+        @Override
+        public Object key() {
+            return this.key;
+        }
+
+        @Override
+        public int getRetentionSlot() {
+            return this.retentionSlot;
+        }
+
+        @Override
+        public void setRetentionSlot(int slot) {
+            this.retentionSlot = slot;
+        }
     }
 }
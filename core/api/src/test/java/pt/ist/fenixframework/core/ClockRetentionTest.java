@@ -0,0 +1,230 @@
+package pt.ist.fenixframework.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ClockRetentionTest {
+
+    // the cache entry of an object, as seen by the retention
+    private static final class Entry implements ClockRetention.Owner {
+        private final String object;
+        private int slot = -1;
+
+        Entry(String object) {
+            this.object = object;
+        }
+
+        @Override
+        public int getRetentionSlot() {
+            return this.slot;
+        }
+
+        @Override
+        public void setRetentionSlot(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private static List<Entry> entries(String prefix, int count) {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(prefix + i));
+        }
+        return entries;
+    }
+
+    private static Set<String> retained(ClockRetention<String> retention) {
+        Set<String> retained = new HashSet<String>();
+        retention.addRetainedObjectsTo(retained);
+        return retained;
+    }
+
+    @Test
+    public void retainedObjectsUpToAMaximum() {
+        ClockRetention<String> retention = new ClockRetention<String>(4);
+        List<Entry> entries = entries("object", 3);
+        for (Entry entry : entries) {
+            retention.admit(entry, entry.object);
+        }
+
+        List<String> some = new ArrayList<String>();
+        retention.addRetainedObjectsTo(some, 2);
+        assertEquals(2, some.size());
+        assertTrue(retained(retention).containsAll(some));
+
+        List<String> all = new ArrayList<String>();
+        retention.addRetainedObjectsTo(all, 10);
+        assertEquals(retained(retention), new HashSet<String>(all));
+        assertEquals(3, all.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new ClockRetention<String>(0);
+    }
+
+    @Test
+    public void evictionOrder() {
+        ClockRetention<String> retention = new ClockRetention<String>(4);
+        List<Entry> entries = entries("object", 7);
+        for (int i = 0; i < 4; i++) {
+            retention.admit(entries.get(i), entries.get(i).object);
+            assertEquals(i, entries.get(i).slot);
+        }
+        assertEquals(4, retention.size());
+        assertEquals(0, retention.getEvictionCount());
+
+        // object1 is hit twice and object3 once
+        retention.hit(entries.get(1), entries.get(1).object);
+        retention.hit(entries.get(1), entries.get(1).object);
+        retention.hit(entries.get(3), entries.get(3).object);
+
+        // the hand starts at object0, which was never hit
+        retention.admit(entries.get(4), entries.get(4).object);
+        assertEquals(-1, entries.get(0).slot);
+        assertEquals(0, entries.get(4).slot);
+
+        // object1 is spared once, and object2 is evicted
+        retention.admit(entries.get(5), entries.get(5).object);
+        assertEquals(-1, entries.get(2).slot);
+        assertEquals(2, entries.get(5).slot);
+
+        // object3 is spared once, and the hand goes around to object4, which was admitted with a zero counter
+        retention.admit(entries.get(6), entries.get(6).object);
+        assertEquals(-1, entries.get(4).slot);
+        assertEquals(0, entries.get(6).slot);
+
+        Set<String> expected = new HashSet<String>();
+        for (int i : new int[] { 1, 3, 5, 6 }) {
+            expected.add(entries.get(i).object);
+        }
+        assertEquals(expected, retained(retention));
+        assertEquals(3, retention.getEvictionCount());
+        assertEquals(4, retention.size());
+    }
+
+    @Test
+    public void scanResistance() {
+        int capacity = 100;
+        int hotCount = 20;
+        int scanSlots = capacity - hotCount;
+        ClockRetention<String> retention = new ClockRetention<String>(capacity);
+
+        List<Entry> hot = entries("hot", hotCount);
+        for (Entry entry : hot) {
+            retention.admit(entry, entry.object);
+            for (int i = 0; i < ClockRetention.MAX_COUNT; i++) {
+                retention.hit(entry, entry.object);
+            }
+        }
+
+        // each turn of the clock evicts the objects of the scan, and only decrements the counters of the hot objects, so they
+        // survive a scan that fills the remaining slots MAX_COUNT + 1 times
+        List<Entry> scan = entries("scan", scanSlots * (ClockRetention.MAX_COUNT + 1));
+        for (Entry entry : scan) {
+            retention.admit(entry, entry.object);
+        }
+        for (Entry entry : hot) {
+            assertTrue(entry.slot >= 0);
+        }
+        Set<String> expected = new HashSet<String>();
+        for (Entry entry : hot) {
+            expected.add(entry.object);
+        }
+        for (Entry entry : scan.subList(scan.size() - scanSlots, scan.size())) {
+            expected.add(entry.object);
+        }
+        assertEquals(expected, retained(retention));
+        assertEquals(scanSlots * ClockRetention.MAX_COUNT, retention.getEvictionCount());
+
+        // by now, the counters of the hot objects are down to zero, and the next admission evicts one of them
+        Entry last = new Entry("last");
+        retention.admit(last, last.object);
+        assertEquals(-1, hot.get(0).slot);
+    }
+
+    @Test
+    public void counters() {
+        ClockRetention<String> retention = new ClockRetention<String>(2);
+        List<Entry> entries = entries("object", 3);
+        retention.admit(entries.get(0), entries.get(0).object);
+        retention.admit(entries.get(1), entries.get(1).object);
+        // admitting a retained object again does nothing
+        retention.admit(entries.get(1), entries.get(1).object);
+        retention.hit(entries.get(0), entries.get(0).object);
+        retention.miss();
+        retention.miss();
+        assertEquals(1, retention.getHitCount());
+        assertEquals(2, retention.getMissCount());
+        assertEquals(0, retention.getEvictionCount());
+
+        // a hit on an object that is not retained admits it
+        retention.hit(entries.get(2), entries.get(2).object);
+        assertEquals(2, retention.getHitCount());
+        assertEquals(1, retention.getEvictionCount());
+        assertEquals(-1, entries.get(1).slot);
+        assertTrue(entries.get(2).slot >= 0);
+
+        retention.clear();
+        assertEquals(0, retention.size());
+        assertTrue(retained(retention).isEmpty());
+        for (Entry entry : entries) {
+            assertEquals(-1, entry.slot);
+        }
+    }
+
+    @Test
+    public void concurrentHits() throws InterruptedException {
+        final int capacity = 64;
+        final ClockRetention<String> retention = new ClockRetention<String>(capacity);
+        final List<Entry> entries = entries("object", 4 * capacity);
+        int numberOfThreads = 8;
+        final int hitsPerThread = 20000;
+
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < hitsPerThread; i++) {
+                        Entry entry = entries.get((i * 31 + seed * 7) % entries.size());
+                        retention.hit(entry, entry.object);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // the lost updates of the counters do not leave the objects or their owners inconsistent
+        assertEquals(numberOfThreads * hitsPerThread, retention.getHitCount());
+        assertEquals(capacity, retention.size());
+        Set<String> retained = retained(retention);
+        assertEquals(capacity, retained.size());
+        int owned = 0;
+        for (Entry entry : entries) {
+            if (entry.slot >= 0) {
+                owned++;
+                assertTrue(retained.contains(entry.object));
+            } else {
+                assertFalse(retained.contains(entry.object));
+            }
+        }
+        assertEquals(capacity, owned);
+    }
+
+}
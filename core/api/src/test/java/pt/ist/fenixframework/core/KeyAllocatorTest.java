@@ -0,0 +1,95 @@
+package pt.ist.fenixframework.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class KeyAllocatorTest {
+
+    private static final int NUMBER_OF_THREADS = 20;
+    private static final int KEYS_PER_THREAD = 5000;
+
+    @Test
+    public void keysOfOneThread() {
+        KeyAllocator keys = new KeyAllocator(0);
+        assertEquals(0, keys.getLastKey());
+        for (int key = 1; key <= KeyAllocator.BLOCK_SIZE; key++) {
+            assertEquals(key, keys.nextKey());
+            assertEquals(KeyAllocator.BLOCK_SIZE, keys.getLastKey());
+        }
+        assertEquals(KeyAllocator.BLOCK_SIZE + 1, keys.nextKey());
+        assertEquals(2 * KeyAllocator.BLOCK_SIZE, keys.getLastKey());
+
+        keys = new KeyAllocator(1000);
+        assertEquals(1001, keys.nextKey());
+    }
+
+    @Test
+    public void concurrentKeysAreUnique() throws InterruptedException {
+        KeyAllocator keys = new KeyAllocator(0);
+        Set<Integer> handedOut = new HashSet<Integer>();
+        for (List<Integer> threadKeys : takeKeysConcurrently(keys)) {
+            // each thread gets increasing keys, even from a block shared with other threads
+            for (int i = 1; i < threadKeys.size(); i++) {
+                assertTrue(threadKeys.get(i) > threadKeys.get(i - 1));
+            }
+            for (Integer key : threadKeys) {
+                assertTrue("Duplicate key " + key, handedOut.add(key));
+                assertTrue(key > 0);
+                assertTrue(key <= keys.getLastKey());
+            }
+        }
+        assertEquals(NUMBER_OF_THREADS * KEYS_PER_THREAD, handedOut.size());
+    }
+
+    @Test
+    public void restartFromTheLastKey() throws InterruptedException {
+        // the last key is what the repositories store, and what the next server starts from
+        KeyAllocator keys = new KeyAllocator(0);
+        int maxKey = 0;
+        for (int run = 0; run < 3; run++) {
+            int lastKey = keys.getLastKey();
+            for (List<Integer> threadKeys : takeKeysConcurrently(keys)) {
+                for (Integer key : threadKeys) {
+                    assertTrue(key > lastKey);
+                    maxKey = Math.max(maxKey, key);
+                }
+            }
+            assertTrue(keys.getLastKey() >= maxKey);
+            keys = new KeyAllocator(keys.getLastKey());
+        }
+    }
+
+    private static List<List<Integer>> takeKeysConcurrently(final KeyAllocator keys) throws InterruptedException {
+        List<List<Integer>> keysByThread = new ArrayList<List<Integer>>();
+        // more threads than stripes, so that some of them take keys from the same block
+        Thread[] threads = new Thread[NUMBER_OF_THREADS];
+        for (int t = 0; t < NUMBER_OF_THREADS; t++) {
+            final List<Integer> threadKeys = new ArrayList<Integer>(KEYS_PER_THREAD);
+            keysByThread.add(threadKeys);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                        threadKeys.add(keys.nextKey());
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return keysByThread;
+    }
+
+}
@@ -0,0 +1,147 @@
+package pt.ist.fenixframework.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LongIdentityMapTest {
+
+    private static final class CachedObject extends AbstractDomainObjectAdapter {
+        @Override
+        protected void ensureOid() {
+        }
+    }
+
+    private final ReferenceQueue<AbstractDomainObject> queue = new ReferenceQueue<AbstractDomainObject>();
+
+    @Test
+    public void cacheAndLookup() {
+        LongIdentityMap map = new LongIdentityMap();
+        Map<Long, AbstractDomainObject> expected = new HashMap<Long, AbstractDomainObject>();
+        // OIDs that differ only in their lower bits, or only in their higher bits, and the extremes
+        List<Long> keys = new ArrayList<Long>();
+        for (long i = 0; i < 5000; i++) {
+            keys.add((1L << 32) + i);
+            keys.add(i << 40);
+        }
+        keys.add(Long.MIN_VALUE);
+        keys.add(Long.MAX_VALUE);
+        keys.add(-1L);
+        for (Long key : keys) {
+            AbstractDomainObject obj = new CachedObject();
+            if (!expected.containsKey(key)) {
+                assertSame(obj, map.cache(obj, key, this.queue));
+                expected.put(key, obj);
+            }
+        }
+        checkMap(map, expected);
+
+        // another object with the same key is not cached
+        Long key = keys.get(0);
+        assertSame(expected.get(key), map.cache(new CachedObject(), key, this.queue));
+        assertNull(map.lookup(12345L));
+        checkMap(map, expected);
+    }
+
+    @Test
+    public void rebuildsAfterRemovals() {
+        LongIdentityMap map = new LongIdentityMap();
+        Map<Long, AbstractDomainObject> expected = new HashMap<Long, AbstractDomainObject>();
+        Random random = new Random(13);
+
+        // many more removals than the size of the tables, so that these must be rebuilt to drop the removal markers, or else the
+        // probing would never find an empty slot
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(300);
+            if (expected.containsKey(key) && random.nextBoolean()) {
+                map.remove(map.getEntry(key));
+                expected.remove(key);
+                assertNull(map.lookup(key));
+            } else if (!expected.containsKey(key)) {
+                AbstractDomainObject obj = new CachedObject();
+                assertSame(obj, map.cache(obj, key, this.queue));
+                expected.put(key, obj);
+            }
+            if (i % 10000 == 0) {
+                checkMap(map, expected);
+            }
+        }
+        checkMap(map, expected);
+
+        // removing an entry that was already removed changes nothing
+        Long key = expected.keySet().iterator().next();
+        LongIdentityMap.Entry entry = map.getEntry(key);
+        map.remove(entry);
+        map.remove(entry);
+        expected.remove(key);
+        checkMap(map, expected);
+    }
+
+    @Test
+    public void collectedObjectsAreReplaced() {
+        LongIdentityMap map = new LongIdentityMap();
+        AbstractDomainObject obj = new CachedObject();
+        map.cache(obj, 42L, this.queue);
+
+        // as if the object had been GCed
+        ((Reference<?>) map.getEntry(42L)).clear();
+        assertNull(map.lookup(42L));
+        AbstractDomainObject other = new CachedObject();
+        assertSame(other, map.cache(other, 42L, this.queue));
+        assertSame(other, map.lookup(42L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void weakEntries() {
+        LongIdentityMap map = new LongIdentityMap();
+        map.cache(new CachedObject(), 1L, this.queue);
+        assertTrue(map.getEntry(1L) instanceof LongIdentityMap.SoftEntry);
+
+        map.setWeakEntries(true);
+        map.cache(new CachedObject(), 2L, this.queue);
+        assertTrue(map.getEntry(1L) instanceof LongIdentityMap.SoftEntry);
+        assertTrue(map.getEntry(2L) instanceof LongIdentityMap.WeakEntry);
+        assertTrue(map.getEntry(2L) instanceof ClockRetention.Owner);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.lookup(1L));
+        assertNull(map.lookup(2L));
+    }
+
+    private static void checkMap(LongIdentityMap map, Map<Long, AbstractDomainObject> expected) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, AbstractDomainObject> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), map.lookup(entry.getKey()));
+            assertEquals(entry.getKey().longValue(), map.getEntry(entry.getKey()).key());
+        }
+        List<AbstractDomainObject> cached = new ArrayList<AbstractDomainObject>();
+        map.addCachedObjectsTo(cached);
+        assertEquals(expected.size(), cached.size());
+        assertEquals(new HashSet<AbstractDomainObject>(expected.values()), new HashSet<AbstractDomainObject>(cached));
+
+        // up to a maximum
+        int max = expected.size() / 2;
+        List<AbstractDomainObject> someCached = new ArrayList<AbstractDomainObject>();
+        assertEquals(max, map.addCachedObjectsTo(someCached, max));
+        assertEquals(max, someCached.size());
+        assertTrue(expected.values().containsAll(someCached));
+    }
+
+}
@@ -17,7 +17,10 @@ import pt.ist.fenixframework.dml.runtime.RelationAwareSet;
 public abstract class CodeGenerator {
     public static final String ABSTRACT_BACKEND_ID_CLASS = "BackEndId";
     public static final String COLLECTION_CLASS_NAME_KEY = "collectionClassName";
+    public static final String OID_COLLECTION_CLASS_NAME_KEY = "oidCollectionClassName";
     public static final String DEFAULT_DOMAIN_BASED_MAP = "pt.ist.fenixframework.dml.runtime.StubDomainBasedMap";
+    /** The collection whose keys are primitive longs, which only fits the generators whose OIDs are longs */
+    public static final String LONG_KEYED_DOMAIN_BASED_MAP = "pt.ist.fenixframework.adt.bplustree.LongBPlusTree";
 
     protected static class PrimitiveToWrapperEntry {
         public final String primitiveType;
@@ -43,6 +46,7 @@ public abstract class CodeGenerator {
     private final File destDirectory;
     private final File destDirectoryBase;
     private String collectionToUse;
+    private final String oidCollectionToUse;
 
     public CodeGenerator(CompilerArgs compArgs, DomainModel domainModel) {
         this.compArgs = compArgs;
@@ -57,6 +61,8 @@ public abstract class CodeGenerator {
         } else {
             this.collectionToUse = compArgs.getParams().get(COLLECTION_CLASS_NAME_KEY);
         }
+        String oidCollectionName = compArgs.getParams().get(OID_COLLECTION_CLASS_NAME_KEY);
+        this.oidCollectionToUse = (oidCollectionName == null || oidCollectionName.isEmpty()) ? null : oidCollectionName;
     }
 
     public boolean isDefaultCodeGenerator() {
@@ -75,6 +81,28 @@ public abstract class CodeGenerator {
         return collectionToUse;
     }
 
+    /**
+     * Returns the collection to use in the relations whose keys are the OIDs of the related objects (i.e., those that are not
+     * indexed). Unless the <code>oidCollectionClassName</code> parameter is given, it is the same as
+     * {@link #getCollectionToUse()}.
+     */
+    public String getOidCollectionToUse() {
+        String collection = oidCollectionToUse == null ? getCollectionToUse() : oidCollectionToUse;
+        if (collection.equals(LONG_KEYED_DOMAIN_BASED_MAP) && !hasLongOids()) {
+            throw new Error("Can't use " + LONG_KEYED_DOMAIN_BASED_MAP + " as the OID collection of " + getClass().getName()
+                    + ", whose OIDs are not longs");
+        }
+        return collection;
+    }
+
+    /**
+     * Whether the OIDs of the domain objects generated by this generator are always <code>long</code>s, so that the relations
+     * keyed by them may use the {@link #LONG_KEYED_DOMAIN_BASED_MAP}. Defaults to <code>false</code>.
+     */
+    protected boolean hasLongOids() {
+        return false;
+    }
+
     public DomainModel getDomainModel() {
         return domainModel;
     }
@@ -672,7 +700,8 @@ public abstract class CodeGenerator {
     }
 
     protected String getDefaultCollectionFor(Role role) {
-        return makeGenericType(getCollectionToUse(), role.getType().getFullName());
+        String collection = role.isIndexed() ? getCollectionToUse() : getOidCollectionToUse();
+        return makeGenericType(collection, role.getType().getFullName());
     }
 
     protected String getDefaultCollectionGetterFor(Role role) {
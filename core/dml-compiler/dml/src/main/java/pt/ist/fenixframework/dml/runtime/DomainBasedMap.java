@@ -22,6 +22,44 @@ public interface DomainBasedMap<T extends Serializable> extends DomainObject, It
     @Override
     public Iterator<T> iterator();
 
+    /**
+     * Returns the greatest key in this map that is less than or equal to the given key, or <code>null</code> if there is no
+     * such key.
+     */
+    public Comparable floorKey(Comparable key);
+
+    /**
+     * Returns the least key in this map that is greater than or equal to the given key, or <code>null</code> if there is no
+     * such key.
+     */
+    public Comparable ceilingKey(Comparable key);
+
+    /**
+     * Returns a {@link Cursor} over the values whose keys lie within the given range, in ascending key order. A
+     * <code>null</code> bound means that the range is unbounded on that side. Implementations should position the cursor
+     * without going through the entries that precede <code>fromKey</code> whenever their structure allows it, and should
+     * stop reading as soon as <code>toKey</code> is passed.
+     * 
+     * @param fromKey The lower bound of the range, or <code>null</code> to start at the first entry
+     * @param fromInclusive Whether an entry with key <code>fromKey</code> is to be included
+     * @param toKey The upper bound of the range, or <code>null</code> to go until the last entry
+     * @param toInclusive Whether an entry with key <code>toKey</code> is to be included
+     */
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive);
+
+    /**
+     * An {@link Iterator} over a key range of a DomainBasedMap that also exposes the key of the last returned value. A scan
+     * can be resumed later by requesting a new cursor that starts (exclusively) at that key.
+     */
+    public interface Cursor<Y extends Serializable> extends Iterator<Y> {
+        /**
+         * Returns the key of the value most recently returned by {@link #next()}.
+         * 
+         * @throws IllegalStateException if {@link #next()} was not yet invoked
+         */
+        public Comparable getKey();
+    }
+
     /**
      * This interface provides to the {@link RelationAwareSet} a means to ask for a instance of its internal DomainBasedMap,
      * when it is not yet loaded. An implementation of this interface should be provided (by the code generator) when creating
@@ -62,4 +62,19 @@ public class StubDomainBasedMap<T extends Serializable> implements DomainBasedMa
         throw STUB_EXCEPTION;
     }
 
+    @Override
+    public Comparable floorKey(Comparable key) {
+        throw STUB_EXCEPTION;
+    }
+
+    @Override
+    public Comparable ceilingKey(Comparable key) {
+        throw STUB_EXCEPTION;
+    }
+
+    @Override
+    public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+        throw STUB_EXCEPTION;
+    }
+
 }
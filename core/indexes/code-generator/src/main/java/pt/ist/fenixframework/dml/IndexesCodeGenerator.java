@@ -19,9 +19,9 @@ import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
  */
 public class IndexesCodeGenerator extends TxIntrospectorCodeGenerator {
 
-    // Unfortunately, depending on a DML entity cannot be done explicitly because LinkedList extends a _Base class which 
-    // will not be compiled when this code generator is invoked (ultimately, to compile the LinkedList itself)
-    private static final String LINKED_LIST_FULL_CLASS = "pt.ist.fenixframework.adt.linkedlist.LinkedList";
+    // The type of the collections holding the values of each key, in indexes with multiplicity many.  It is the interface, and
+    // not a DML entity, because the buckets may be of different types (see RelationMulValuesIndexedAwareSet)
+    private static final String BUCKET_FULL_CLASS = DomainBasedMap.class.getCanonicalName();
 
     public IndexesCodeGenerator(CompilerArgs compArgs, DomainModel domainModel) {
         super(compArgs, domainModel);
@@ -93,7 +93,7 @@ public class IndexesCodeGenerator extends TxIntrospectorCodeGenerator {
     @Override
     protected String getDefaultCollectionFor(Role role) {
         if (role.isIndexed() && role.getIndexCardinality() == Role.MULTIPLICITY_MANY) {
-            return makeGenericType(getCollectionToUse(), makeGenericType(LINKED_LIST_FULL_CLASS, role.getType().getFullName()));
+            return makeGenericType(getCollectionToUse(), makeGenericType(BUCKET_FULL_CLASS, role.getType().getFullName()));
         } else {
             return super.getDefaultCollectionFor(role);
         }
@@ -103,7 +103,7 @@ public class IndexesCodeGenerator extends TxIntrospectorCodeGenerator {
     protected String getDefaultCollectionGetterFor(Role role) {
         if (role.isIndexed() && role.getIndexCardinality() == Role.MULTIPLICITY_MANY) {
             return makeGenericType(DomainBasedMap.Getter.class.getCanonicalName(),
-                    makeGenericType(LINKED_LIST_FULL_CLASS, getTypeFullName(role.getType())));
+                    makeGenericType(BUCKET_FULL_CLASS, getTypeFullName(role.getType())));
         } else {
             return super.getDefaultCollectionGetterFor(role);
         }
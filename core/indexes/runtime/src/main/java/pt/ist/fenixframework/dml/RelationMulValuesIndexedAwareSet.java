@@ -3,7 +3,9 @@ package pt.ist.fenixframework.dml;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
 
+import pt.ist.fenixframework.adt.bplustree.BPlusTree;
 import pt.ist.fenixframework.adt.linkedlist.LinkedList;
 import pt.ist.fenixframework.core.AbstractDomainObject;
 import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
@@ -12,27 +14,31 @@ import pt.ist.fenixframework.dml.runtime.Relation;
 import pt.ist.fenixframework.dml.runtime.RelationAwareSet;
 import pt.ist.fenixframework.indexes.UnmodifiableDomainBaseSet;
 
+/**
+ * The set of objects of an indexed relation with multiplicity many, where several objects may have the same index key. The
+ * objects with each key are kept in a bucket, which is a {@link BPlusTree} of those objects by OID.
+ */
 public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E2 extends AbstractDomainObject> extends
         RelationAwareSet<E1, E2> {
 
     // All accesses to the internalMap should go through the getInternalMap() method!
-    private DomainBasedMap<LinkedList<E2>> multiValueMap;
-    protected final DomainBasedMap.Getter<LinkedList<E2>> multiValueMapGetter;
+    private DomainBasedMap<DomainBasedMap<E2>> multiValueMap;
+    protected final DomainBasedMap.Getter<DomainBasedMap<E2>> multiValueMapGetter;
 
     public RelationMulValuesIndexedAwareSet(E1 owner, Relation<E1, E2> relation, KeyFunction<? extends Comparable<?>, E2> mapKey,
-            DomainBasedMap<LinkedList<E2>> multiValueMap, DomainBasedMap.Getter<LinkedList<E2>> multiValueMapGetter) {
+            DomainBasedMap<DomainBasedMap<E2>> multiValueMap, DomainBasedMap.Getter<DomainBasedMap<E2>> multiValueMapGetter) {
         super(owner, relation, (DomainBasedMap<E2>) null, mapKey);
         this.multiValueMap = multiValueMap;
         this.multiValueMapGetter = multiValueMapGetter;
     }
 
-    public RelationMulValuesIndexedAwareSet(E1 owner, Relation<E1, E2> relation, DomainBasedMap<LinkedList<E2>> multiValueMap,
+    public RelationMulValuesIndexedAwareSet(E1 owner, Relation<E1, E2> relation, DomainBasedMap<DomainBasedMap<E2>> multiValueMap,
             KeyFunction<? extends Comparable<?>, E2> mapKey) {
         this(owner, relation, mapKey, multiValueMap, null);
     }
 
     public RelationMulValuesIndexedAwareSet(E1 owner, Relation<E1, E2> relation,
-            DomainBasedMap.Getter<LinkedList<E2>> multiValueMapGetter, KeyFunction<? extends Comparable<?>, E2> mapKey) {
+            DomainBasedMap.Getter<DomainBasedMap<E2>> multiValueMapGetter, KeyFunction<? extends Comparable<?>, E2> mapKey) {
         this(owner, relation, mapKey, null, multiValueMapGetter);
     }
 
@@ -43,8 +49,8 @@ public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E
      * @return The reference to the map to use
      */
     // This method replicates behavior equivalent to that of the getInternalMap() in the super class.  Please see comments there.  
-    protected DomainBasedMap<LinkedList<E2>> getMultiValueMap() {
-        DomainBasedMap<LinkedList<E2>> localRef = multiValueMap;
+    protected DomainBasedMap<DomainBasedMap<E2>> getMultiValueMap() {
+        DomainBasedMap<DomainBasedMap<E2>> localRef = multiValueMap;
         if (localRef == null) {
             localRef = reloadMultiValueMap();
             // here we assume that reloadMultiValueMap will always return the same instance, so at most we're just setting the
@@ -55,7 +61,7 @@ public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E
     }
 
     // This method replicates behavior equivalent to that of the reloadInternalMap() in the super class.  Please see comments there.  
-    private DomainBasedMap<LinkedList<E2>> reloadMultiValueMap() {
+    private DomainBasedMap<DomainBasedMap<E2>> reloadMultiValueMap() {
         return multiValueMapGetter.get();
     }
 
@@ -72,15 +78,33 @@ public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E
     }
 
     protected DomainBasedMap<E2> checkIfExists(Comparable<?> key) {
-        LinkedList<E2> subMap = getMultiValueMap().get(key);
+        DomainBasedMap<E2> subMap = getMultiValueMap().get(key);
         if (subMap == null) {
             // Note that this Collection is attached here, we can make it dynamic, but is it worth it?
-            subMap = new LinkedList<E2>();
+            subMap = new BPlusTree<E2>();
             getMultiValueMap().put(key, subMap);
+        } else if (subMap instanceof LinkedList) {
+            subMap = convertBucket(key, (LinkedList<E2>) subMap);
         }
         return subMap;
     }
 
+    // The buckets created before they were B+Trees are LinkedLists, where each operation takes linear time.  They are replaced
+    // by an equivalent B+Tree when they are first changed, and then deleted.
+    private DomainBasedMap<E2> convertBucket(Comparable<?> key, LinkedList<E2> oldSubMap) {
+        TreeMap<Comparable, E2> elements = new TreeMap<Comparable, E2>();
+        for (E2 elem : oldSubMap) {
+            elements.put(elem.getOid(), elem);
+        }
+        BPlusTree<E2> subMap = new BPlusTree<E2>();
+        subMap.putAll(elements);
+        // not every map overwrites the previous entry on put (e.g. a LinkedList does not)
+        getMultiValueMap().remove(key);
+        getMultiValueMap().put(key, subMap);
+        oldSubMap.delete();
+        return subMap;
+    }
+
     @Override
     public E2 get(Comparable<?> key) {
         throw new UnsupportedOperationException();
@@ -94,8 +118,8 @@ public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E
     public boolean contains(Object o) {
         if (o instanceof AbstractDomainObject) {
             E2 obj = (E2) o;
-            DomainBasedMap<E2> subMap = checkIfExists(mapKey.getKey(obj));
-            return subMap.contains(obj.getOid());
+            DomainBasedMap<E2> subMap = getMultiValueMap().get(mapKey.getKey(obj));
+            return subMap != null && subMap.contains(obj.getOid());
         } else {
             return false;
         }
@@ -116,12 +140,12 @@ public class RelationMulValuesIndexedAwareSet<E1 extends AbstractDomainObject, E
     }
 
     protected class RelationMulValuesIndexedAwareIterator implements Iterator<E2> {
-        private final Iterator<LinkedList<E2>> keyIterator;
+        private final Iterator<DomainBasedMap<E2>> keyIterator;
         private Iterator<E2> iterator;
         private E2 current = null;
         private boolean canRemove = false;
 
-        RelationMulValuesIndexedAwareIterator(DomainBasedMap<LinkedList<E2>> multiValueMap) {
+        RelationMulValuesIndexedAwareIterator(DomainBasedMap<DomainBasedMap<E2>> multiValueMap) {
             this.keyIterator = multiValueMap.iterator();
             this.iterator = new EmptyIterator();
         }
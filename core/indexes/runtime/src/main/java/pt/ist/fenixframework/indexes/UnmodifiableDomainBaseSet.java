@@ -133,7 +133,22 @@ public class UnmodifiableDomainBaseSet<T extends AbstractDomainObject> implement
 
         @Override
         public Iterator<T> iterator() {
-            return new Iterator<T>() {
+            return cursor(null, true, null, true);
+        }
+
+        @Override
+        public Comparable floorKey(Comparable key) {
+            return null;
+        }
+
+        @Override
+        public Comparable ceilingKey(Comparable key) {
+            return null;
+        }
+
+        @Override
+        public Cursor<T> cursor(Comparable fromKey, boolean fromInclusive, Comparable toKey, boolean toInclusive) {
+            return new Cursor<T>() {
                 @Override
                 public boolean hasNext() {
                     return false;
@@ -144,6 +159,11 @@ public class UnmodifiableDomainBaseSet<T extends AbstractDomainObject> implement
                     throw new NoSuchElementException();
                 }
 
+                @Override
+                public Comparable getKey() {
+                    throw new IllegalStateException();
+                }
+
                 @Override
                 public void remove() {
                     throw new UnsupportedOperationException();
@@ -0,0 +1,153 @@
+package pt.ist.fenixframework.backend.jvstm.pstm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.core.Externalization;
+
+public class OffHeapValueStoreTest {
+
+    private static void write(OffHeapValueStore store, String vboxId, int version, Object value) {
+        store.write(vboxId, version, Externalization.externalizeObject(value));
+    }
+
+    private static void assertValue(OffHeapValueStore store, String vboxId, int version, Object value) {
+        VersionedValue stored = store.read(vboxId, Integer.MAX_VALUE);
+        Assert.assertNotNull("No value for " + vboxId, stored);
+        Assert.assertEquals(version, stored.getVersion());
+        Assert.assertEquals(value, stored.getValue());
+    }
+
+    @Test
+    public void versions() {
+        OffHeapValueStore store = new OffHeapValueStore(1024 * 1024, 64 * 1024);
+        write(store, "a:slot", 10, "first");
+        write(store, "b:slot", 11, null);
+        assertValue(store, "a:slot", 10, "first");
+        assertValue(store, "b:slot", 11, null);
+
+        // a transaction older than the stored value must go to the repository
+        Assert.assertNull(store.read("a:slot", 9));
+        Assert.assertNotNull(store.read("a:slot", 10));
+
+        write(store, "a:slot", 12, "second");
+        assertValue(store, "a:slot", 12, "second");
+        Assert.assertNull(store.read("a:slot", 11));
+        Assert.assertEquals(2, store.size());
+
+        store.remove("a:slot");
+        Assert.assertNull(store.read("a:slot", Integer.MAX_VALUE));
+        assertValue(store, "b:slot", 11, null);
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void equalHashCodes() {
+        // "Aa" and "BB" have the same hashCode, and so do all the ids built from them with the same length
+        OffHeapValueStore store = new OffHeapValueStore(1024 * 1024, 64 * 1024);
+        List<String> ids = new ArrayList<String>();
+        for (String first : new String[] { "Aa", "BB" }) {
+            for (String second : new String[] { "Aa", "BB" }) {
+                for (String third : new String[] { "Aa", "BB" }) {
+                    ids.add(first + second + third);
+                }
+            }
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            Assert.assertEquals(ids.get(0).hashCode(), ids.get(i).hashCode());
+            write(store, ids.get(i), i, "value" + i);
+        }
+        store.remove(ids.get(3));
+        for (int i = 0; i < ids.size(); i++) {
+            if (i == 3) {
+                Assert.assertNull(store.read(ids.get(i), Integer.MAX_VALUE));
+            } else {
+                assertValue(store, ids.get(i), i, "value" + i);
+            }
+        }
+        Assert.assertEquals(ids.size() - 1, store.size());
+    }
+
+    @Test
+    public void manyBoxes() {
+        // enough boxes to grow the index several times
+        OffHeapValueStore store = new OffHeapValueStore(8 * 1024 * 1024, 1024 * 1024);
+        int count = 50000;
+        for (int i = 0; i < count; i++) {
+            write(store, "box" + i, i, i);
+        }
+        for (int i = 0; i < count; i += 2) {
+            store.remove("box" + i);
+        }
+        Assert.assertEquals(count / 2, store.size());
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                Assert.assertNull(store.read("box" + i, Integer.MAX_VALUE));
+            } else {
+                assertValue(store, "box" + i, i, i);
+            }
+        }
+    }
+
+    @Test
+    public void reusedBuffers() {
+        // a ring of four small buffers, which are reused many times
+        OffHeapValueStore store = new OffHeapValueStore(4 * 1024, 1024);
+        Random random = new Random(7);
+        Map<String, Integer> latest = new HashMap<String, Integer>();
+        LinkedList<String> recent = new LinkedList<String>();
+        for (int version = 0; version < 50000; version++) {
+            String vboxId = (random.nextBoolean() ? "Aa" : "BB") + random.nextInt(200) + ":slot";
+            if (random.nextInt(10) == 0) {
+                store.remove(vboxId);
+                latest.remove(vboxId);
+                recent.remove(vboxId);
+            } else {
+                write(store, vboxId, version, version);
+                latest.put(vboxId, version);
+                recent.remove(vboxId);
+                recent.addFirst(vboxId);
+                if (recent.size() > 10) {
+                    recent.removeLast();
+                }
+            }
+
+            // the values of the last writes are still there, and any other value that is still there is the latest one
+            for (String id : recent) {
+                assertValue(store, id, latest.get(id), latest.get(id));
+            }
+            if (version % 1000 == 0) {
+                int present = 0;
+                for (int i = 0; i < 200; i++) {
+                    for (String prefix : new String[] { "Aa", "BB" }) {
+                        String id = prefix + i + ":slot";
+                        VersionedValue stored = store.read(id, Integer.MAX_VALUE);
+                        if (stored != null) {
+                            present++;
+                            Assert.assertEquals(latest.get(id), stored.getValue());
+                        }
+                    }
+                }
+                Assert.assertEquals(present, store.size());
+            }
+        }
+    }
+
+    @Test
+    public void valuesLargerThanABuffer() {
+        OffHeapValueStore store = new OffHeapValueStore(4 * 1024, 1024);
+        write(store, "box", 1, "small");
+        write(store, "box", 2, new String(new char[2000]));
+        // the previous value is no longer the latest, so it must not be returned
+        Assert.assertNull(store.read("box", Integer.MAX_VALUE));
+        Assert.assertEquals(0, store.size());
+    }
+
+}
@@ -0,0 +1,77 @@
+package test.backend.jvstm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.fenixframework.FenixFramework;
+import test.backend.jvstm.domain.Counter;
+
+public class GetDomainObjectsTest {
+
+    @Test
+    public void objectsInTheOrderOfTheIds() {
+        List<Counter> counters = createCounters(5);
+        List<String> ids = new ArrayList<String>();
+        // reversed and with a repeated id
+        for (int i = counters.size() - 1; i >= 0; i--) {
+            ids.add(counters.get(i).getExternalId());
+        }
+        ids.add(counters.get(2).getExternalId());
+
+        List<Counter> objects = FenixFramework.getDomainObjects(ids);
+        Assert.assertEquals(ids.size(), objects.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Assert.assertSame(FenixFramework.getDomainObject(ids.get(i)), objects.get(i));
+        }
+        Assert.assertSame(counters.get(4), objects.get(0));
+        Assert.assertSame(counters.get(2), objects.get(5));
+    }
+
+    @Test
+    public void noIds() {
+        Assert.assertTrue(FenixFramework.getDomainObjects(Collections.<String> emptyList()).isEmpty());
+    }
+
+    @Test
+    public void nullIds() {
+        Counter counter = createCounters(1).get(0);
+        List<DomainObject> objects = FenixFramework.getDomainObjects(Arrays.asList(null, counter.getExternalId(), null));
+        Assert.assertEquals(Arrays.asList(null, counter, null), objects);
+    }
+
+    @Test
+    public void unknownIds() {
+        // the id of an object that was never created, with a class id that no domain class has
+        String unknownId = Long.toHexString(0xFFFFL << 32 | 1);
+        try {
+            FenixFramework.getDomainObject(unknownId);
+            Assert.fail("There is no class for " + unknownId);
+        } catch (RuntimeException e) {
+            // expected
+        }
+        try {
+            FenixFramework.getDomainObjects(Arrays.asList(createCounters(1).get(0).getExternalId(), unknownId));
+            Assert.fail("There is no class for " + unknownId);
+        } catch (RuntimeException e) {
+            // expected, just as getDomainObject
+        }
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private List<Counter> createCounters(int count) {
+        List<Counter> counters = new ArrayList<Counter>(count);
+        for (int i = 0; i < count; i++) {
+            counters.add(new Counter());
+        }
+        return counters;
+    }
+
+}
@@ -0,0 +1,109 @@
+package test.backend.jvstm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.backend.jvstm.pstm.DomainClassInfo;
+import test.backend.jvstm.domain.Counter;
+
+public class OidAllocationTest {
+
+    private static final int MAX_THREADS = 16;
+    private static final int TXS_PER_THREAD = 50;
+    private static final int OBJECTS_PER_TX = 20;
+
+    @Test
+    public void concurrentObjectsGetUniqueOids() throws InterruptedException {
+        final Set<Long> oids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final Set<Long> duplicates = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+        // more threads than the stripes of the key allocator, so that some of them share their blocks of keys
+        Thread[] threads = new Thread[MAX_THREADS];
+        for (int i = 0; i < MAX_THREADS; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int tx = 0; tx < TXS_PER_THREAD; tx++) {
+                        for (Long oid : createCounters(OBJECTS_PER_TX)) {
+                            if (!oids.add(oid)) {
+                                duplicates.add(oid);
+                            }
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertTrue("Duplicate OIDs: " + duplicates, duplicates.isEmpty());
+        Assert.assertEquals(MAX_THREADS * TXS_PER_THREAD * OBJECTS_PER_TX, oids.size());
+        for (Long oid : oids) {
+            Assert.assertEquals(Counter.class, DomainClassInfo.mapOidToClass(oid));
+        }
+    }
+
+    @Test
+    public void getNextOidForIsUniqueAcrossThreads() throws InterruptedException {
+        final int oidsPerThread = 10000;
+        final List<List<Long>> oidsByThread = new ArrayList<List<Long>>();
+        Thread[] threads = new Thread[MAX_THREADS];
+        for (int i = 0; i < MAX_THREADS; i++) {
+            final List<Long> oids = new ArrayList<Long>(oidsPerThread);
+            oidsByThread.add(oids);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < oidsPerThread; j++) {
+                            oids.add(DomainClassInfo.getNextOidFor(Counter.class));
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<Long> all = new HashSet<Long>();
+        for (List<Long> oids : oidsByThread) {
+            Assert.assertEquals(oidsPerThread, oids.size());
+            for (int j = 0; j < oids.size(); j++) {
+                Assert.assertTrue(all.add(oids.get(j)));
+                // each thread gets its keys in increasing order
+                if (j > 0) {
+                    Assert.assertTrue(oids.get(j) > oids.get(j - 1));
+                }
+            }
+        }
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private List<Long> createCounters(int count) {
+        List<Long> oids = new ArrayList<Long>(count);
+        for (int i = 0; i < count; i++) {
+            oids.add((Long) new Counter().getOid());
+        }
+        return oids;
+    }
+
+}
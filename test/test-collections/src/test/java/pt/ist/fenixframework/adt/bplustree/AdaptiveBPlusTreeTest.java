@@ -0,0 +1,156 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+
+/**
+ * Checks that the {@link AdaptiveBPlusTree} moves its entries to a tree when it grows past
+ * {@link AdaptiveBPlusTree#MAX_INLINE_ELEMENTS}, back inline when it shrinks below {@link AdaptiveBPlusTree#MIN_TREE_ELEMENTS},
+ * and that it keeps its contents across the moves.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveBPlusTreeTest {
+
+    private static final int MAX_INLINE = AdaptiveBPlusTree.MAX_INLINE_ELEMENTS;
+    private static final int MIN_TREE = AdaptiveBPlusTree.MIN_TREE_ELEMENTS;
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void thresholds() {
+        assertEquals(64, MAX_INLINE);
+        assertEquals(32, MIN_TREE);
+
+        AdaptiveBPlusTree<String> map = new AdaptiveBPlusTree<String>();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int key = 0; key < MAX_INLINE; key++) {
+            put(map, expected, key);
+            assertTrue(map.isInline());
+        }
+        checkMap(map, expected);
+
+        // overwriting an entry, or removing and adding one, does not go over the threshold
+        put(map, expected, 0);
+        remove(map, expected, 1);
+        put(map, expected, 1);
+        assertTrue(map.isInline());
+
+        put(map, expected, MAX_INLINE);
+        assertFalse(map.isInline());
+        assertTrue(map.getInlineEntries().isEmpty());
+        assertEquals(MAX_INLINE + 1, map.getTree().size());
+        checkMap(map, expected);
+
+        // the tree is kept down to MIN_TREE entries, so that a map whose size hovers around MAX_INLINE stays a tree
+        for (int key = MAX_INLINE; expected.size() > MIN_TREE; key--) {
+            remove(map, expected, key);
+            assertFalse(map.isInline());
+        }
+        put(map, expected, 1000);
+        remove(map, expected, 1000);
+        assertFalse(map.isInline());
+        checkMap(map, expected);
+
+        remove(map, expected, 0);
+        assertTrue(map.isInline());
+        assertNull(map.getTree());
+        assertEquals(MIN_TREE - 1, map.getInlineEntries().size());
+        checkMap(map, expected);
+
+        // and inline it stays, up to MAX_INLINE entries again
+        for (int key = 2000; expected.size() < MAX_INLINE; key++) {
+            put(map, expected, key);
+            assertTrue(map.isInline());
+        }
+        put(map, expected, -1);
+        assertFalse(map.isInline());
+        checkMap(map, expected);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void randomOperations() {
+        AdaptiveBPlusTree<String> map = new AdaptiveBPlusTree<String>();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        Random random = new Random(5);
+        int moves = 0;
+        boolean wasInline = true;
+        // the size drifts up past MAX_INLINE and down below MIN_TREE, several times
+        int targetSize = 2 * MAX_INLINE;
+        for (int i = 0; i < 5000; i++) {
+            if (expected.size() >= 2 * MAX_INLINE) {
+                targetSize = MIN_TREE / 2;
+            } else if (expected.size() <= MIN_TREE / 2) {
+                targetSize = 2 * MAX_INLINE;
+            }
+            int key = random.nextInt(4 * MAX_INLINE);
+            if (random.nextInt(100) < (expected.size() < targetSize ? 70 : 30)) {
+                put(map, expected, key);
+            } else {
+                remove(map, expected, key);
+            }
+
+            if (map.isInline()) {
+                assertTrue(expected.size() <= MAX_INLINE);
+                assertNull(map.getTree());
+            } else {
+                assertTrue(expected.size() >= MIN_TREE);
+                assertTrue(map.getInlineEntries().isEmpty());
+            }
+            if (map.isInline() != wasInline) {
+                moves++;
+                wasInline = map.isInline();
+                checkMap(map, expected);
+            }
+        }
+        assertTrue(moves > 4);
+        checkMap(map, expected);
+    }
+
+    private static void put(AdaptiveBPlusTree<String> map, TreeMap<Integer, String> expected, int key) {
+        String value = "v" + key + "-" + expected.size();
+        assertTrue(map.insert(key, value));
+        expected.put(key, value);
+    }
+
+    private static void remove(AdaptiveBPlusTree<String> map, TreeMap<Integer, String> expected, int key) {
+        assertEquals(expected.remove(key) != null, map.removeKey(key));
+    }
+
+    private static void checkMap(AdaptiveBPlusTree<String> map, TreeMap<Integer, String> expected) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        Iterator<String> iter = map.iterator();
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), iter.next());
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertTrue(map.containsKey(entry.getKey()));
+        }
+        assertFalse(iter.hasNext());
+        if (!expected.isEmpty()) {
+            assertEquals(expected.firstKey(), map.ceilingKey(Integer.MIN_VALUE));
+            assertEquals(expected.lastKey(), map.floorKey(Integer.MAX_VALUE));
+        }
+    }
+
+}
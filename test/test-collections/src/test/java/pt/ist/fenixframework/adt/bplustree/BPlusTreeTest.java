@@ -0,0 +1,237 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+
+/**
+ * Checks the {@link BPlusTree} against a {@link TreeMap}, and checks the structure of its nodes after the splits and merges of
+ * the leaves, whose entries are {@link ImmutableTreeMap}s.
+ */
+@RunWith(JUnit4.class)
+public class BPlusTreeTest {
+
+    // enough keys for a root whose sub-nodes are inner nodes
+    private static final int NUMBER_OF_KEYS = BPlusTree.MAX_NUMBER_OF_ELEMENTS * BPlusTree.MAX_NUMBER_OF_ELEMENTS;
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void splitAtLowerBoundPlusOne() {
+        BPlusTree<String> tree = new BPlusTree<String>();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int key = 0; key < BPlusTree.MAX_NUMBER_OF_ELEMENTS; key++) {
+            tree.insert(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+        assertTrue(tree.getRoot() instanceof LeafNode);
+
+        tree.insert(BPlusTree.MAX_NUMBER_OF_ELEMENTS, "last");
+        expected.put(BPlusTree.MAX_NUMBER_OF_ELEMENTS, "last");
+        InnerNode root = (InnerNode) tree.getRoot();
+        TreeMap<Comparable, AbstractNode> subNodes = root.getSubNodes();
+        assertEquals(2, subNodes.size());
+        assertEquals(BPlusTree.LOWER_BOUND + 1, subNodes.firstKey());
+        assertSame(BPlusTree.LAST_KEY, subNodes.lastKey());
+        LeafNode left = (LeafNode) subNodes.firstEntry().getValue();
+        LeafNode right = (LeafNode) subNodes.lastEntry().getValue();
+        assertEquals(BPlusTree.LOWER_BOUND + 1, left.shallowSize());
+        assertEquals(BPlusTree.LOWER_BOUND + 1, right.shallowSize());
+        assertSame(right, left.getNext());
+        assertSame(left, right.getPrevious());
+        checkTree(tree, expected);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void boundaryKeys() {
+        BPlusTree<String> tree = new BPlusTree<String>();
+        assertNull(tree.get(0));
+        assertFalse(tree.removeKey(0));
+        assertNull(tree.floorKey(0));
+        assertNull(tree.ceilingKey(0));
+
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int key = 0; key < NUMBER_OF_KEYS / 10; key++) {
+            tree.insert(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+        // the smallest and biggest keys go to the first and last leaves, the latter being mapped to the LAST_KEY
+        tree.insert(Integer.MIN_VALUE, "min");
+        tree.insert(Integer.MAX_VALUE, "max");
+        expected.put(Integer.MIN_VALUE, "min");
+        expected.put(Integer.MAX_VALUE, "max");
+        checkTree(tree, expected);
+        assertEquals("min", tree.getIndex(0));
+        assertEquals("max", tree.getIndex(expected.size() - 1));
+        assertEquals(Integer.MAX_VALUE, tree.floorKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, tree.ceilingKey(Integer.MIN_VALUE));
+
+        // the keys in the inner nodes are the smallest keys of the next sub-nodes
+        InnerNode root = (InnerNode) tree.getRoot();
+        for (Comparable key : new ArrayList<Comparable>(root.getSubNodes().keySet())) {
+            if (key != BPlusTree.LAST_KEY) {
+                assertTrue(tree.containsKey(key));
+                assertTrue(tree.removeKey(key));
+                expected.remove(key);
+            }
+        }
+        checkTree(tree, expected);
+
+        assertTrue(tree.removeKey(Integer.MAX_VALUE));
+        assertTrue(tree.removeKey(Integer.MIN_VALUE));
+        expected.remove(Integer.MAX_VALUE);
+        expected.remove(Integer.MIN_VALUE);
+        checkTree(tree, expected);
+    }
+
+    @Test
+    public void lastKeyExternalization() {
+        TreeMap<Comparable, Serializable> subNodes =
+                new TreeMap<Comparable, Serializable>(BPlusTree.COMPARATOR_SUPPORTING_LAST_KEY);
+        subNodes.put(Integer.MIN_VALUE, "min");
+        subNodes.put(Integer.MAX_VALUE, "max");
+        subNodes.put(BPlusTree.LAST_KEY, "last");
+        assertSame(BPlusTree.LAST_KEY, subNodes.lastKey());
+
+        TreeMap<Comparable, Serializable> copy = AbstractNode.internalizeTreeMap(AbstractNode.externalizeTreeMap(subNodes));
+        assertEquals(subNodes, copy);
+        assertSame(BPlusTree.LAST_KEY, copy.lastKey());
+        assertEquals(Integer.MAX_VALUE, copy.lowerKey(BPlusTree.LAST_KEY));
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void randomOperations() {
+        BPlusTree<String> tree = new BPlusTree<String>();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        Random random = new Random(11);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+            keys.add(key);
+        }
+        Collections.shuffle(keys, random);
+        for (Integer key : keys) {
+            assertTrue(tree.insert(key, "v" + key));
+            expected.put(key, "v" + key);
+        }
+        checkTree(tree, expected);
+        InnerNode root = (InnerNode) tree.getRoot();
+        assertTrue(root.getSubNodes().firstEntry().getValue() instanceof InnerNode);
+
+        for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            Integer key = random.nextInt(NUMBER_OF_KEYS);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, tree.removeKey(key));
+            } else {
+                assertTrue(tree.insert(key, "v" + i));
+                expected.put(key, "v" + i);
+            }
+        }
+        checkTree(tree, expected);
+
+        // empty it again, in random order
+        keys = new ArrayList<Integer>(expected.keySet());
+        while (!keys.isEmpty()) {
+            Integer key = keys.remove(random.nextInt(keys.size()));
+            assertTrue(tree.removeKey(key));
+            expected.remove(key);
+            if (keys.size() % 5000 == 0) {
+                checkTree(tree, expected);
+            }
+        }
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.getRoot() instanceof LeafNode);
+    }
+
+    // checks the contents of the tree, and the structure of its nodes
+    static void checkTree(BPlusTree<String> tree, TreeMap<Integer, String> expected) {
+        assertEquals(expected.size(), tree.size());
+        Iterator<String> iter = tree.iterator();
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), iter.next());
+            assertEquals(entry.getValue(), tree.get(entry.getKey()));
+        }
+        assertFalse(iter.hasNext());
+
+        AbstractNode root = tree.getRoot();
+        assertNull(root.getParent());
+        List<LeafNode> leaves = new ArrayList<LeafNode>();
+        checkNode(root, true, null, null, leaves, new int[] { -1 }, 0);
+
+        assertNull(leaves.get(0).getPrevious());
+        for (int i = 0; i < leaves.size() - 1; i++) {
+            assertSame(leaves.get(i + 1), leaves.get(i).getNext());
+            assertSame(leaves.get(i), leaves.get(i + 1).getPrevious());
+        }
+        assertNull(leaves.get(leaves.size() - 1).getNext());
+    }
+
+    // all the keys of the node must be in [min, max), where a null bound is open
+    private static void checkNode(AbstractNode node, boolean isRoot, Comparable min, Comparable max, List<LeafNode> leaves,
+            int[] leafDepth, int depth) {
+        if (node instanceof LeafNode) {
+            LeafNode leaf = (LeafNode) node;
+            assertTrue(leaf.shallowSize() <= BPlusTree.MAX_NUMBER_OF_ELEMENTS);
+            if (!isRoot) {
+                assertTrue(leaf.shallowSize() >= BPlusTree.LOWER_BOUND);
+            }
+            for (Object key : leaf.getEntries().keySet()) {
+                checkKeyInRange((Comparable) key, min, max);
+            }
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = depth;
+            }
+            assertEquals(leafDepth[0], depth);
+            leaves.add(leaf);
+            return;
+        }
+
+        // the i-th sub-node holds the keys in [(i-1)-th key, i-th key), and the last one is mapped to the LAST_KEY
+        TreeMap<Comparable, AbstractNode> subNodes = ((InnerNode) node).getSubNodes();
+        assertTrue(subNodes.size() <= BPlusTree.MAX_NUMBER_OF_ELEMENTS);
+        assertTrue(subNodes.size() >= (isRoot ? 2 : BPlusTree.LOWER_BOUND_WITH_LAST_KEY));
+        assertSame(BPlusTree.LAST_KEY, subNodes.lastKey());
+        Comparable subMin = min;
+        for (Map.Entry<Comparable, AbstractNode> entry : subNodes.entrySet()) {
+            Comparable key = entry.getKey();
+            Comparable subMax = key == BPlusTree.LAST_KEY ? max : key;
+            if (key != BPlusTree.LAST_KEY) {
+                checkKeyInRange(key, min, max);
+            }
+            assertSame(node, entry.getValue().getParent());
+            checkNode(entry.getValue(), false, subMin, subMax, leaves, leafDepth, depth + 1);
+            subMin = key;
+        }
+    }
+
+    private static void checkKeyInRange(Comparable key, Comparable min, Comparable max) {
+        assertTrue(min == null || key.compareTo(min) >= 0);
+        assertTrue(max == null || key.compareTo(max) < 0);
+    }
+
+}
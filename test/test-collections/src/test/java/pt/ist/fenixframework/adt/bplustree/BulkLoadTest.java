@@ -0,0 +1,163 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+
+/**
+ * Checks that a {@link BPlusTree} built bottom-up by {@link BPlusTree#putAll(Map, float)} has the same contents as one built by
+ * inserting the entries one at a time, that its nodes are valid B+Tree nodes, and that it can be changed afterwards.
+ */
+@RunWith(JUnit4.class)
+public class BulkLoadTest {
+
+    // around the sizes of one leaf, two leaves, and one and two levels of inner nodes
+    private static final int[] SIZES = { 1, BPlusTree.LOWER_BOUND - 1, BPlusTree.LOWER_BOUND, BPlusTree.LOWER_BOUND + 1,
+            BPlusTree.MAX_NUMBER_OF_ELEMENTS, BPlusTree.MAX_NUMBER_OF_ELEMENTS + 1, 2 * BPlusTree.LOWER_BOUND + 2, 1000,
+            BPlusTree.LOWER_BOUND * BPlusTree.MAX_NUMBER_OF_ELEMENTS,
+            BPlusTree.MAX_NUMBER_OF_ELEMENTS * BPlusTree.LOWER_BOUND_WITH_LAST_KEY + 1 };
+
+    private static final float[] FILL_FACTORS = { 0.01f, 0.5f, BPlusTree.DEFAULT_FILL_FACTOR, 1f };
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    public void sizesAndFillFactors() {
+        for (int size : SIZES) {
+            for (float fillFactor : FILL_FACTORS) {
+                checkBulkLoad(size, fillFactor);
+            }
+        }
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private void checkBulkLoad(int size, float fillFactor) {
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int i = 0; i < size; i++) {
+            expected.put(i * 2, "v" + i);
+        }
+        BPlusTree<String> bulk = new BPlusTree<String>();
+        bulk.putAll(expected, fillFactor);
+        BPlusTreeTest.checkTree(bulk, expected);
+
+        BPlusTree<String> incremental = new BPlusTree<String>();
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            incremental.insert(entry.getKey(), entry.getValue());
+        }
+        Iterator<String> bulkIter = bulk.iterator();
+        Iterator<String> incrementalIter = incremental.iterator();
+        while (incrementalIter.hasNext()) {
+            assertEquals(incrementalIter.next(), bulkIter.next());
+        }
+        assertFalse(bulkIter.hasNext());
+        for (int index = 0; index < size; index += 1 + size / 50) {
+            assertEquals(incremental.getIndex(index), bulk.getIndex(index));
+        }
+        for (int key = -1; key <= 2 * size; key += 1 + size / 50) {
+            assertEquals(incremental.floorKey(key), bulk.floorKey(key));
+            assertEquals(incremental.ceilingKey(key), bulk.ceilingKey(key));
+        }
+
+        // the bulk-built tree can be changed like any other, in the middle (odd keys) and at both ends
+        Random random = new Random(size);
+        for (int i = 0; i < size / 2 + 1; i++) {
+            int key = random.nextInt(2 * size + 2) - 1;
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(key) != null, bulk.removeKey(key));
+            } else {
+                bulk.insert(key, "new" + key);
+                expected.put(key, "new" + key);
+            }
+        }
+        BPlusTreeTest.checkTree(bulk, expected);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void unsortedEntries() {
+        // a HashMap, and a TreeMap in reverse order, must be sorted before building the tree
+        Map<Integer, String> hashMap = new HashMap<Integer, String>();
+        TreeMap<Integer, String> reversed = new TreeMap<Integer, String>(Collections.<Integer> reverseOrder());
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int i = 0; i < 1000; i++) {
+            int key = (i * 7919) % 10007;
+            hashMap.put(key, "v" + key);
+            reversed.put(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+
+        BPlusTree<String> fromHashMap = new BPlusTree<String>();
+        fromHashMap.putAll(hashMap);
+        BPlusTreeTest.checkTree(fromHashMap, expected);
+
+        BPlusTree<String> fromReversed = new BPlusTree<String>();
+        fromReversed.putAll(reversed);
+        BPlusTreeTest.checkTree(fromReversed, expected);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void putAllOnNonEmptyTree() {
+        BPlusTree<String> tree = new BPlusTree<String>();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int key = 0; key < 1000; key += 3) {
+            tree.insert(key, "old" + key);
+            expected.put(key, "old" + key);
+        }
+
+        // the entries are inserted one at a time, overwriting the previous ones for the same keys
+        TreeMap<Integer, String> more = new TreeMap<Integer, String>();
+        for (int key = 0; key < 1000; key += 2) {
+            more.put(key, "new" + key);
+        }
+        tree.putAll(more);
+        expected.putAll(more);
+        BPlusTreeTest.checkTree(tree, expected);
+
+        tree.putAll(new TreeMap<Integer, String>());
+        BPlusTreeTest.checkTree(tree, expected);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @Atomic(mode = TxMode.WRITE)
+    public void invalidFillFactor() {
+        new BPlusTree<String>().putAll(new TreeMap<Integer, String>(), 0f);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void nullValuesAreRejected() {
+        BPlusTree<String> tree = new BPlusTree<String>();
+        Map<Integer, String> entries = new HashMap<Integer, String>();
+        entries.put(1, "one");
+        entries.put(2, null);
+        try {
+            tree.putAll(entries);
+            fail("The null value was accepted");
+        } catch (UnsupportedOperationException e) {
+            // nothing was inserted
+            assertTrue(tree.isEmpty());
+        }
+    }
+
+}
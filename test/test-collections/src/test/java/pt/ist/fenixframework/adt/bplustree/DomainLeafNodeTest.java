@@ -0,0 +1,107 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.core.AbstractDomainObject;
+import test.Book;
+
+/**
+ * Checks the compact form of the OIDs of the {@link DomainLeafNode}s: the first OID is zig-zag encoded and the others are the
+ * differences to the previous one, and the domain objects are looked up only when their entries are read.
+ */
+@RunWith(JUnit4.class)
+public class DomainLeafNodeTest {
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    public void oidRoundTrips() {
+        checkRoundTrip();
+        checkRoundTrip(0L);
+        checkRoundTrip(-1L);
+        checkRoundTrip(Long.MIN_VALUE);
+        checkRoundTrip(Long.MAX_VALUE);
+        // the difference between these overflows, and is written as a negative number
+        checkRoundTrip(Long.MIN_VALUE, Long.MAX_VALUE);
+        checkRoundTrip(Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE);
+        checkRoundTrip(-1000L, -31L, -32L, -33L, 31L, 32L, 33L, 1L << 40, (1L << 40) + 1);
+
+        List<Long> oids = new ArrayList<Long>();
+        long oid = -(1L << 50);
+        for (int i = 0; i < 1000; i++) {
+            oids.add(oid);
+            oid += i * i * 31L + 1;
+        }
+        checkRoundTrip(oids.toArray(new Long[oids.size()]));
+    }
+
+    @Test
+    public void consecutiveOidsTakeOneCharacterEach() {
+        long first = 1L << 32;
+        Long[] oids = new Long[100];
+        for (int i = 0; i < oids.length; i++) {
+            oids[i] = first + i;
+        }
+        String encoded = DomainLeafNode.externalizeDomainObjectMap(mapOf(oids));
+        String encodedFirst = DomainLeafNode.externalizeDomainObjectMap(mapOf(first));
+        assertEquals(encodedFirst.length() + oids.length - 1, encoded.length());
+
+        // a small negative first OID is short as well
+        assertTrue(DomainLeafNode.externalizeDomainObjectMap(mapOf(-1L)).length() <= 2);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void domainObjectsAreResolved() {
+        TreeMap<Comparable, AbstractDomainObject> books = new TreeMap<Comparable, AbstractDomainObject>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book(i, i);
+            books.put(book.getOid(), book);
+        }
+        ImmutableTreeMap map = ImmutableTreeMap.fromMap(books);
+        String encoded = DomainLeafNode.externalizeDomainObjectMap(map);
+        ImmutableTreeMap copy = DomainLeafNode.internalizeDomainObjectMap(encoded);
+
+        // both forms, with the OIDs or with the external ids of the objects, give back the same objects
+        assertEquals(books.keySet(), copy.keySet());
+        for (Comparable oid : books.keySet()) {
+            assertSame(books.get(oid), copy.get(oid));
+        }
+    }
+
+    private static ImmutableTreeMap<Comparable, Serializable> mapOf(Long... oids) {
+        TreeMap<Comparable, Serializable> map = new TreeMap<Comparable, Serializable>();
+        for (Long oid : oids) {
+            // the values are not written, because their OIDs are the keys
+            map.put(oid, "unused");
+        }
+        return ImmutableTreeMap.fromMap(map);
+    }
+
+    private static void checkRoundTrip(Long... oids) {
+        ImmutableTreeMap<Comparable, Serializable> map = mapOf(oids);
+        String encoded = DomainLeafNode.externalizeDomainObjectMap(map);
+        assertEquals('#', encoded.charAt(0));
+        // only the keys are compared, because reading the values would look up the objects
+        assertEquals(map.keySet(), DomainLeafNode.internalizeDomainObjectMap(encoded).keySet());
+    }
+
+}
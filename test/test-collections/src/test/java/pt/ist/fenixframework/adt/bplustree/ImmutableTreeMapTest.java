@@ -0,0 +1,168 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks the {@link ImmutableTreeMap} against a {@link TreeMap}, and checks that the updates never change the previous versions
+ * of the map.
+ */
+@RunWith(JUnit4.class)
+public class ImmutableTreeMapTest {
+
+    private static final int NUMBER_OF_OPERATIONS = 5000;
+    private static final int KEY_RANGE = 1000;
+
+    @Test
+    public void randomUpdates() {
+        Random random = new Random(7);
+        ImmutableTreeMap<Integer, String> map = ImmutableTreeMap.empty();
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+
+        List<ImmutableTreeMap<Integer, String>> versions = new ArrayList<ImmutableTreeMap<Integer, String>>();
+        List<TreeMap<Integer, String>> expectedVersions = new ArrayList<TreeMap<Integer, String>>();
+        for (int i = 0; i < NUMBER_OF_OPERATIONS; i++) {
+            Integer key = random.nextInt(KEY_RANGE);
+            if (random.nextInt(3) == 0) {
+                ImmutableTreeMap<Integer, String> newMap = map.removeKey(key);
+                if (!expected.containsKey(key)) {
+                    assertSame(map, newMap);
+                }
+                map = newMap;
+                expected.remove(key);
+            } else {
+                map = map.addKeyValue(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+            if (i % 500 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<Integer, String>(expected));
+            }
+        }
+        checkMap(expected, map);
+
+        // the older versions are still as they were
+        for (int i = 0; i < versions.size(); i++) {
+            checkMap(expectedVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void boundaryKeys() {
+        ImmutableTreeMap<Integer, String> map = ImmutableTreeMap.empty();
+        assertTrue(map.isEmpty());
+        assertNull(map.firstEntry());
+        assertNull(map.lastEntry());
+        assertNull(map.floorEntry(0));
+        assertNull(map.ceilingEntry(0));
+        assertFalse(map.entryIterator(null, true).hasNext());
+
+        map = map.addKeyValue(Integer.MIN_VALUE, "min").addKeyValue(Integer.MAX_VALUE, "max").addKeyValue(0, "zero");
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), map.firstKey());
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), map.lastKey());
+        assertEquals("min", map.floorEntry(-1).getValue());
+        assertEquals("max", map.ceilingEntry(1).getValue());
+        assertEquals("zero", map.floorEntry(0).getValue());
+        assertEquals("zero", map.ceilingEntry(0).getValue());
+        assertEquals("max", map.getIndex(2).getValue());
+
+        map = map.removeSmallestKeyValue().removeBiggestKeyValue();
+        assertEquals(1, map.size());
+        assertEquals(Integer.valueOf(0), map.firstKey());
+        assertTrue(map.removeKey(0).isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBounds() {
+        ImmutableTreeMap.<Integer, String> empty().addKeyValue(1, "one").getIndex(1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValuesAreRejected() {
+        ImmutableTreeMap.<Integer, String> empty().addKeyValue(1, null);
+    }
+
+    @Test
+    public void splitAndMerge() {
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (int i = 0; i < BPlusTree.MAX_NUMBER_OF_ELEMENTS + 1; i++) {
+            expected.put(i * 2, "v" + i);
+        }
+        ImmutableTreeMap<Integer, String> map = ImmutableTreeMap.fromMap(expected);
+        checkMap(expected, map);
+
+        // as when a leaf is split
+        int splitIndex = BPlusTree.LOWER_BOUND + 1;
+        ImmutableTreeMap<Integer, String> left = map.leftPart(splitIndex);
+        ImmutableTreeMap<Integer, String> right = map.rightPart(splitIndex);
+        Integer splitKey = map.getIndex(splitIndex).getKey();
+        checkMap(expected.headMap(splitKey, false), left);
+        checkMap(expected.tailMap(splitKey, true), right);
+
+        // as when two leaves are merged, in either order
+        checkMap(expected, left.mergeWith(right));
+        checkMap(expected, right.mergeWith(left));
+        checkMap(expected, map.mergeWith(ImmutableTreeMap.<Integer, String> empty()));
+        checkMap(expected, ImmutableTreeMap.<Integer, String> empty().mergeWith(map));
+
+        // the entries of this map take precedence
+        ImmutableTreeMap<Integer, String> other = ImmutableTreeMap.<Integer, String> empty().addKeyValue(0, "other");
+        assertEquals("v0", map.mergeWith(other).get(0));
+        assertEquals("other", other.mergeWith(map).get(0));
+    }
+
+    // checks all the read operations of the map against the expected contents
+    static void checkMap(Map<Integer, String> expectedMap, ImmutableTreeMap<Integer, String> map) {
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>(expectedMap);
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        assertEquals(expected, map);
+
+        int index = 0;
+        Iterator<Map.Entry<Integer, String>> iter = map.entrySet().iterator();
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            Map.Entry<Integer, String> actual = iter.next();
+            assertEquals(entry.getKey(), actual.getKey());
+            assertEquals(entry.getValue(), actual.getValue());
+            assertEquals(entry.getKey(), map.getIndex(index++).getKey());
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertFalse(iter.hasNext());
+
+        if (expected.isEmpty()) {
+            return;
+        }
+        assertEquals(expected.firstKey(), map.firstKey());
+        assertEquals(expected.lastKey(), map.lastKey());
+        for (int key = expected.firstKey() - 1; key <= expected.lastKey() + 1; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals(expected.floorEntry(key), map.floorEntry(key));
+            assertEquals(expected.ceilingEntry(key), map.ceilingEntry(key));
+            checkIterator(expected.tailMap(key, true), map.entryIterator(key, true));
+            checkIterator(expected.tailMap(key, false), map.entryIterator(key, false));
+        }
+    }
+
+    private static void checkIterator(Map<Integer, String> expected, Iterator<Map.Entry<Integer, String>> iter) {
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertTrue(iter.hasNext());
+            assertEquals(entry, iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+}
@@ -0,0 +1,258 @@
+package pt.ist.fenixframework.adt.bplustree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap.Cursor;
+
+/**
+ * Checks the {@link LongBPlusTree} against a {@link TreeMap}, and checks the structure of its nodes after the splits, borrows
+ * and merges.
+ */
+@RunWith(JUnit4.class)
+public class LongBPlusTreeTest {
+
+    // enough keys for more leaves than fit in a single inner node, so that the root's sub-nodes are inner nodes
+    private static final int NUMBER_OF_KEYS = (LongBPlusTree.MAX_NUMBER_OF_KEYS + 1) * (LongBPlusTree.MAX_NUMBER_OF_KEYS + 1);
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void splitAtLowerBoundPlusOne() {
+        LongBPlusTree<String> tree = new LongBPlusTree<String>();
+        for (long key = 0; key < LongBPlusTree.MAX_NUMBER_OF_KEYS; key++) {
+            tree.insert(key, "v" + key);
+        }
+        assertTrue(tree.getRoot() instanceof LongLeafNode);
+
+        tree.insert((long) LongBPlusTree.MAX_NUMBER_OF_KEYS, "last");
+        LongAbstractNode root = tree.getRoot();
+        assertTrue(root instanceof LongInnerNode);
+        assertEquals(1, root.shallowSize());
+        assertEquals(LongBPlusTree.LOWER_BOUND + 1, root.getEntries().firstKey());
+        LongLeafNode left = (LongLeafNode) root.getEntries().values[0];
+        LongLeafNode right = (LongLeafNode) root.getEntries().values[1];
+        assertEquals(LongBPlusTree.LOWER_BOUND + 1, left.shallowSize());
+        assertEquals(LongBPlusTree.LOWER_BOUND, right.shallowSize());
+        assertSame(right, left.getNext());
+        checkTree(tree, contentsOf(tree));
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void insertAndRemove() {
+        LongBPlusTree<String> tree = new LongBPlusTree<String>();
+        TreeMap<Long, String> expected = new TreeMap<Long, String>();
+
+        List<Long> keys = new ArrayList<Long>();
+        for (long i = 0; i < NUMBER_OF_KEYS; i++) {
+            // negative keys as well, and gaps between the keys for the floor and ceiling lookups
+            keys.add(i * 3 - NUMBER_OF_KEYS);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (Long key : keys) {
+            assertTrue(tree.insert(key.longValue(), "v" + key));
+            expected.put(key, "v" + key);
+        }
+        checkTree(tree, expected);
+        LongAbstractNode firstSubNode = (LongAbstractNode) tree.getRoot().getEntries().values[0];
+        assertTrue(firstSubNode instanceof LongInnerNode);
+
+        // overwriting does not change the size
+        Long someKey = keys.get(0);
+        assertTrue(tree.insert(someKey.longValue(), "other"));
+        expected.put(someKey, "other");
+        assertEquals(expected.size(), tree.size());
+
+        // removing every other key leaves the nodes at the lower bound, so they borrow from their siblings or merge with them
+        int i = 0;
+        for (Long key : new ArrayList<Long>(expected.keySet())) {
+            if (i++ % 2 == 0) {
+                assertTrue(tree.removeKey(key.longValue()));
+                expected.remove(key);
+            }
+        }
+        assertFalse(tree.removeKey(Long.MAX_VALUE));
+        checkTree(tree, expected);
+
+        // removing a range from the middle empties whole nodes
+        NavigableMap<Long, String> middle = expected.subMap(expected.firstKey() / 2, true, expected.lastKey() / 2, true);
+        for (Long key : new ArrayList<Long>(middle.keySet())) {
+            assertTrue(tree.removeKey(key.longValue()));
+        }
+        middle.clear();
+        checkTree(tree, expected);
+
+        // the tree collapses back to a single leaf
+        while (expected.size() > 1) {
+            Long key = expected.firstKey();
+            assertTrue(tree.removeKey(key.longValue()));
+            expected.remove(key);
+        }
+        checkTree(tree, expected);
+        assertTrue(tree.getRoot() instanceof LongLeafNode);
+        assertTrue(tree.removeKey(expected.firstKey().longValue()));
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void floorCeilingAndCursors() {
+        LongBPlusTree<String> tree = new LongBPlusTree<String>();
+        TreeMap<Long, String> expected = new TreeMap<Long, String>();
+        for (long key = 0; key < NUMBER_OF_KEYS; key += 2) {
+            tree.insert(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+
+        assertNull(tree.floorKey(-1L));
+        assertEquals(0L, tree.floorKey(1L));
+        assertEquals(2L, tree.floorKey(2L));
+        assertEquals(2L, tree.ceilingKey(1L));
+        assertEquals(2L, tree.ceilingKey(2L));
+        assertNull(tree.ceilingKey(expected.lastKey() + 1));
+
+        long[][] ranges = { { -10, 10 }, { 0, 0 }, { 1, 3 }, { 400, 402 }, { 401, 403 }, { 100, 5000 },
+                { expected.lastKey() - 10, expected.lastKey() + 10 }, { 10, 5 } };
+        boolean[] inclusive = { true, false };
+        for (long[] range : ranges) {
+            for (boolean fromInclusive : inclusive) {
+                for (boolean toInclusive : inclusive) {
+                    if (range[0] > range[1]) {
+                        assertFalse(tree.cursor(range[0], fromInclusive, range[1], toInclusive).hasNext());
+                        continue;
+                    }
+                    checkCursor(expected.subMap(range[0], fromInclusive, range[1], toInclusive),
+                            tree.cursor(range[0], fromInclusive, range[1], toInclusive));
+                }
+            }
+        }
+        checkCursor(expected.headMap(400L, false), tree.cursor(null, true, 400L, false));
+        checkCursor(expected.tailMap(400L, false), tree.cursor(400L, false, null, true));
+        checkCursor(expected, tree.cursor(null, true, null, true));
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void externalizationRoundTrip() {
+        LongBPlusTree<Serializable> tree = new LongBPlusTree<Serializable>();
+        for (long key = 0; key <= LongBPlusTree.MAX_NUMBER_OF_KEYS; key++) {
+            tree.insert(key, key % 3 == 0 ? Long.valueOf(-key) : key % 3 == 1 ? "v" + key : new Date(key));
+        }
+        LongAbstractNode root = tree.getRoot();
+        // an inner node, whose values are its sub-nodes, and a leaf with several kinds of values
+        checkRoundTrip(root.getEntries());
+        checkRoundTrip(((LongAbstractNode) root.getEntries().values[0]).getEntries());
+        checkRoundTrip(LongKeyArray.EMPTY);
+        checkRoundTrip(new LongKeyArray(new long[] { Long.MIN_VALUE, -1, 0, Long.MAX_VALUE }, new Object[] { "a", "b", "c",
+                "d" }));
+    }
+
+    private static void checkRoundTrip(LongKeyArray array) {
+        LongKeyArray copy = LongAbstractNode.internalizeLongKeyArray(LongAbstractNode.externalizeLongKeyArray(array));
+        assertTrue(Arrays.equals(array.keys, copy.keys));
+        assertTrue(Arrays.equals(array.values, copy.values));
+    }
+
+    private static void checkCursor(Map<Long, String> expected, Cursor<String> cursor) {
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertTrue(cursor.hasNext());
+            assertEquals(entry.getValue(), cursor.next());
+            assertEquals(entry.getKey(), cursor.getKey());
+        }
+        assertFalse(cursor.hasNext());
+    }
+
+    private static TreeMap<Long, String> contentsOf(LongBPlusTree<String> tree) {
+        TreeMap<Long, String> contents = new TreeMap<Long, String>();
+        Cursor<String> cursor = tree.cursor(null, true, null, true);
+        while (cursor.hasNext()) {
+            String value = cursor.next();
+            contents.put((Long) cursor.getKey(), value);
+        }
+        return contents;
+    }
+
+    // checks the contents of the tree, and that its nodes are sorted and within bounds, with all the leaves at the same depth
+    private static void checkTree(LongBPlusTree<String> tree, TreeMap<Long, String> expected) {
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected, contentsOf(tree));
+        Iterator<String> iter = tree.iterator();
+        for (String value : expected.values()) {
+            assertEquals(value, iter.next());
+        }
+        assertFalse(iter.hasNext());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.get(entry.getKey().longValue()));
+        }
+
+        List<LongLeafNode> leaves = new ArrayList<LongLeafNode>();
+        checkNode(tree.getRoot(), true, Long.MIN_VALUE, Long.MAX_VALUE, leaves, new int[] { -1 }, 0);
+        for (int i = 0; i < leaves.size() - 1; i++) {
+            assertSame(leaves.get(i + 1), leaves.get(i).getNext());
+        }
+        assertNull(leaves.get(leaves.size() - 1).getNext());
+    }
+
+    // all the keys of the node must be in [min, max)
+    private static void checkNode(LongAbstractNode node, boolean isRoot, long min, long max, List<LongLeafNode> leaves,
+            int[] leafDepth, int depth) {
+        LongKeyArray entries = node.getEntries();
+        assertTrue(entries.size() <= LongBPlusTree.MAX_NUMBER_OF_KEYS);
+        if (!isRoot) {
+            assertTrue(entries.size() >= LongBPlusTree.LOWER_BOUND);
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            assertTrue(entries.keys[i] >= min && entries.keys[i] < max);
+            if (i > 0) {
+                assertTrue(entries.keys[i - 1] < entries.keys[i]);
+            }
+        }
+
+        if (node instanceof LongLeafNode) {
+            assertEquals(entries.size(), entries.values.length);
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = depth;
+            }
+            assertEquals(leafDepth[0], depth);
+            leaves.add((LongLeafNode) node);
+            return;
+        }
+
+        assertEquals(entries.size() + 1, entries.values.length);
+        for (int i = 0; i < entries.values.length; i++) {
+            long subMin = i == 0 ? min : entries.keys[i - 1];
+            long subMax = i == entries.size() ? max : entries.keys[i];
+            checkNode((LongAbstractNode) entries.values[i], false, subMin, subMax, leaves, leafDepth, depth + 1);
+        }
+    }
+
+}
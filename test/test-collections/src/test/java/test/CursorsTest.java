@@ -0,0 +1,149 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.adt.bplustree.AdaptiveBPlusTree;
+import pt.ist.fenixframework.adt.bplustree.BPlusTree;
+import pt.ist.fenixframework.adt.bplustree.BPlusTreeArray;
+import pt.ist.fenixframework.adt.linkedlist.LinkedList;
+import pt.ist.fenixframework.adt.skiplist.SkipList;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap.Cursor;
+
+/**
+ * Checks the floor and ceiling lookups and the range cursors of every {@link DomainBasedMap} against a {@link TreeMap}, with
+ * inclusive, exclusive and open bounds, on keys that are and are not in the map.
+ */
+@RunWith(JUnit4.class)
+public class CursorsTest {
+
+    // enough for several leaves in the B+Trees. The keys are even, so that the odd ones are missing.
+    private static final int NUMBER_OF_KEYS = 500;
+    private static final int MAX_KEY = 2 * (NUMBER_OF_KEYS - 1);
+
+    private static final Integer[] BOUNDS = { null, -5, -1, 0, 1, 2, 3, 201, 202, 400, 401, MAX_KEY - 1, MAX_KEY, MAX_KEY + 1,
+            MAX_KEY + 5 };
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void bPlusTree() {
+        checkMap(new BPlusTree<String>(), NUMBER_OF_KEYS);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void bPlusTreeArray() {
+        checkMap(new BPlusTreeArray<String>(), NUMBER_OF_KEYS);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void linkedList() {
+        checkMap(new LinkedList<String>(), NUMBER_OF_KEYS);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void skipList() {
+        checkMap(new SkipList<String>(), NUMBER_OF_KEYS);
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void adaptiveBPlusTree() {
+        AdaptiveBPlusTree<String> inline = new AdaptiveBPlusTree<String>();
+        checkMap(inline, 20);
+        assertTrue(inline.isInline());
+
+        AdaptiveBPlusTree<String> tree = new AdaptiveBPlusTree<String>();
+        checkMap(tree, NUMBER_OF_KEYS);
+        assertFalse(tree.isInline());
+    }
+
+    @Test
+    @Atomic(mode = TxMode.WRITE)
+    public void emptyMaps() {
+        checkMap(new BPlusTree<String>(), 0);
+        checkMap(new BPlusTreeArray<String>(), 0);
+        checkMap(new LinkedList<String>(), 0);
+        checkMap(new SkipList<String>(), 0);
+        checkMap(new AdaptiveBPlusTree<String>(), 0);
+    }
+
+    // fills the map with the first numberOfKeys even keys, and checks it
+    private static void checkMap(DomainBasedMap<String> map, int numberOfKeys) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < numberOfKeys; i++) {
+            keys.add(2 * i);
+        }
+        // inserted out of order, so that the lists do not just append
+        Collections.shuffle(keys, new Random(numberOfKeys));
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        for (Integer key : keys) {
+            map.put(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+
+        for (int key = -2; key <= MAX_KEY + 2; key++) {
+            assertEquals(expected.floorKey(key), map.floorKey(key));
+            assertEquals(expected.ceilingKey(key), map.ceilingKey(key));
+        }
+
+        boolean[] inclusive = { true, false };
+        for (Integer from : BOUNDS) {
+            for (Integer to : BOUNDS) {
+                for (boolean fromInclusive : inclusive) {
+                    for (boolean toInclusive : inclusive) {
+                        checkCursor(expectedRange(expected, from, fromInclusive, to, toInclusive),
+                                map.cursor(from, fromInclusive, to, toInclusive));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<Integer, String> expectedRange(NavigableMap<Integer, String> expected, Integer from,
+            boolean fromInclusive, Integer to, boolean toInclusive) {
+        if (from != null && to != null) {
+            return from > to ? new TreeMap<Integer, String>() : expected.subMap(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            return expected.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            return expected.headMap(to, toInclusive);
+        }
+        return expected;
+    }
+
+    private static void checkCursor(Map<Integer, String> expected, Cursor<String> cursor) {
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertTrue(cursor.hasNext());
+            assertEquals(entry.getValue(), cursor.next());
+            assertEquals(entry.getKey(), cursor.getKey());
+        }
+        assertFalse(cursor.hasNext());
+    }
+
+}
@@ -0,0 +1,182 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.backend.jvstmojb.dml.runtime.FunctionalSet;
+
+/**
+ * Checks the {@link FunctionalSet} against a {@link HashSet}, with elements whose hashes are equal or share many bits, so
+ * that they go down to the collision nodes and the deepest levels of the trie.
+ */
+@RunWith(JUnit4.class)
+public class FunctionalSetTest {
+
+    // An element with a chosen hash, as seen by the trie after it spreads the bits of the hashCode
+    private static class Element {
+        private final int id;
+        private final int spreadHash;
+
+        Element(int id, int spreadHash) {
+            this.id = id;
+            this.spreadHash = spreadHash;
+        }
+
+        @Override
+        public int hashCode() {
+            // the inverse of the trie's spreading of the higher bits, which keeps them unchanged
+            return spreadHash ^ (spreadHash >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Element && ((Element) obj).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return "Element " + id + " (" + Integer.toHexString(spreadHash) + ")";
+        }
+    }
+
+    @Test
+    public void equalHashes() {
+        List<Element> elements = new ArrayList<Element>();
+        for (int i = 0; i < 50; i++) {
+            elements.add(new Element(i, 0xCAFEBABE));
+        }
+        checkAddAndRemove(elements, new Random(1));
+    }
+
+    @Test
+    public void hashesThatDifferOnlyInTheHighestBits() {
+        List<Element> elements = new ArrayList<Element>();
+        int id = 0;
+        for (int high = 0; high < 4; high++) {
+            // the last level of the trie only has the two highest bits, including the sign bit
+            for (int i = 0; i < 5; i++) {
+                elements.add(new Element(id++, (high << 30) | 0x12345));
+            }
+            elements.add(new Element(id++, (high << 30) | 0x12346));
+        }
+        checkAddAndRemove(elements, new Random(2));
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(3);
+        FunctionalSet<Object> set = FunctionalSet.EMPTY;
+        Set<Object> expected = new HashSet<Object>();
+        List<FunctionalSet<Object>> versions = new ArrayList<FunctionalSet<Object>>();
+        List<Set<Object>> expectedVersions = new ArrayList<Set<Object>>();
+        for (int i = 0; i < 20000; i++) {
+            // few distinct hashes, so that there are many collisions, mixed with elements of another type
+            int id = random.nextInt(2000);
+            Object element = random.nextBoolean() ? new Element(id, (id % 64) << (id % 27)) : Integer.valueOf(id - 1000);
+            if (random.nextInt(3) == 0) {
+                set = set.remove(element);
+                expected.remove(element);
+            } else {
+                set = set.add(element);
+                expected.add(element);
+            }
+            if (i % 2000 == 0) {
+                versions.add(set);
+                expectedVersions.add(new HashSet<Object>(expected));
+            }
+        }
+        checkSet(expected, set);
+        for (int i = 0; i < versions.size(); i++) {
+            checkSet(expectedVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void unchangedSets() {
+        FunctionalSet<Object> empty = FunctionalSet.EMPTY;
+        assertEquals(0, empty.size());
+        assertFalse(empty.iterator().hasNext());
+        assertFalse(empty.contains(null));
+        assertSame(empty, empty.remove(null));
+        assertSame(empty, empty.remove("absent"));
+
+        Element element = new Element(1, 7);
+        FunctionalSet<Object> set = empty.add(element).add(new Element(2, 7)).add("other");
+        assertSame(set, set.add(element));
+        assertSame(set, set.add(new Element(2, 7)));
+        assertSame(set, set.remove(new Element(3, 7)));
+        assertSame(set, set.remove("absent"));
+        assertSame(set, set.remove(null));
+        assertEquals(3, set.size());
+        assertEquals(0, empty.size());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void indexOutOfBounds() {
+        ((FunctionalSet<Object>) FunctionalSet.EMPTY).add("one").get(1);
+    }
+
+    // adds all the elements and then removes them, in random orders, checking all the versions of the set
+    private static void checkAddAndRemove(List<Element> elements, Random random) {
+        List<Element> toAdd = new ArrayList<Element>(elements);
+        Collections.shuffle(toAdd, random);
+        FunctionalSet<Object> set = FunctionalSet.EMPTY;
+        Set<Object> expected = new HashSet<Object>();
+        List<FunctionalSet<Object>> versions = new ArrayList<FunctionalSet<Object>>();
+        for (Element element : toAdd) {
+            versions.add(set);
+            set = set.add(element);
+            expected.add(element);
+            checkSet(expected, set);
+        }
+
+        List<Element> toRemove = new ArrayList<Element>(elements);
+        Collections.shuffle(toRemove, random);
+        for (Element element : toRemove) {
+            set = set.remove(element);
+            expected.remove(element);
+            checkSet(expected, set);
+            assertFalse(set.contains(element));
+        }
+
+        // the removals did not change the versions built while adding
+        for (int i = 0; i < versions.size(); i++) {
+            checkSet(new HashSet<Object>(toAdd.subList(0, i)), versions.get(i));
+        }
+    }
+
+    // checks the contents of the set, and that the iteration and the indexes go through each element once, in the same order
+    private static void checkSet(Set<Object> expected, FunctionalSet<Object> set) {
+        assertEquals(expected.size(), set.size());
+        for (Object element : expected) {
+            assertTrue(set.contains(element));
+        }
+
+        Set<Object> seen = new HashSet<Object>();
+        Iterator<Object> iter = set.iterator();
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(iter.hasNext());
+            Object element = iter.next();
+            assertSame(element, set.get(i));
+            assertTrue(seen.add(element));
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(expected, seen);
+    }
+
+}
@@ -0,0 +1,124 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.adt.bplustree.BPlusTree;
+import pt.ist.fenixframework.adt.linkedlist.LinkedList;
+import pt.ist.fenixframework.adt.skiplist.SkipList;
+import pt.ist.fenixframework.dml.runtime.DomainBasedMap;
+
+/**
+ * Checks that the size of the collections, which is kept in striped counters, stays exact when several threads insert and
+ * remove elements concurrently.
+ */
+@RunWith(JUnit4.class)
+public class SizeStripesTest {
+
+    private static final int NUMBER_OF_THREADS = 8;
+    private static final int KEYS_PER_THREAD = 100;
+
+    @AfterClass
+    public static void shutdown() {
+        FenixFramework.shutdown();
+    }
+
+    // inserts its keys, each in its own transaction, and then removes the even ones
+    private static class Changer implements Runnable {
+        private final DomainBasedMap<String> map;
+        private final int firstKey;
+
+        Changer(DomainBasedMap<String> map, int firstKey) {
+            this.map = map;
+            this.firstKey = firstKey;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                put(firstKey + i);
+            }
+            for (int i = 0; i < KEYS_PER_THREAD; i += 2) {
+                remove(firstKey + i);
+            }
+        }
+
+        @Atomic(mode = TxMode.WRITE)
+        private void put(int key) {
+            map.put(key, "value" + key);
+        }
+
+        @Atomic(mode = TxMode.WRITE)
+        private void remove(int key) {
+            map.remove(key);
+        }
+    }
+
+    @Test
+    public void bPlusTreeSize() throws InterruptedException {
+        checkConcurrentSize(createBPlusTree());
+    }
+
+    @Test
+    public void linkedListSize() throws InterruptedException {
+        checkConcurrentSize(createLinkedList());
+    }
+
+    @Test
+    public void skipListSize() throws InterruptedException {
+        checkConcurrentSize(createSkipList());
+    }
+
+    private void checkConcurrentSize(DomainBasedMap<String> map) throws InterruptedException {
+        Thread[] threads = new Thread[NUMBER_OF_THREADS];
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            threads[i] = new Thread(new Changer(map, i * KEYS_PER_THREAD));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(NUMBER_OF_THREADS * KEYS_PER_THREAD / 2, getSize(map));
+        assertEquals(NUMBER_OF_THREADS * KEYS_PER_THREAD / 2, countElements(map));
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private DomainBasedMap<String> createBPlusTree() {
+        return new BPlusTree<String>();
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private DomainBasedMap<String> createLinkedList() {
+        return new LinkedList<String>();
+    }
+
+    @Atomic(mode = TxMode.WRITE)
+    private DomainBasedMap<String> createSkipList() {
+        return new SkipList<String>();
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private int getSize(DomainBasedMap<String> map) {
+        return map.size();
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private int countElements(DomainBasedMap<String> map) {
+        int count = 0;
+        for (String value : map) {
+            count++;
+        }
+        return count;
+    }
+
+}